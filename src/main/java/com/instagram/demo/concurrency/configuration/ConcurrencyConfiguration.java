@@ -0,0 +1,64 @@
+package com.instagram.demo.concurrency.configuration;
+
+import com.google.gson.Gson;
+import com.instagram.demo.concurrency.filter.ConnectionPoolBulkheadFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Configures the execution of requests when they run on virtual threads ({@code spring.threads.virtual.enabled}).
+ * Virtual threads make blocking on JDBC cheap, but remove the implicit limit set by the size of the Tomcat thread pool,
+ * so a {@link ConnectionPoolBulkheadFilter} sized from the Hikari pool is registered in front of every other filter,
+ * including the security filters, which already read the database.
+ * Whatever the threads, the tasks submitted to the application task executor run with the thread-local context
+ * of the request that submitted them, as registered in the Micrometer {@code ContextRegistry}.
+ */
+@Configuration
+public class ConcurrencyConfiguration {
+    /**
+     * Logger instance for logging messages related to ConcurrencyConfiguration class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyConfiguration.class);
+
+    /**
+     * Size Hikari gives the pool when {@code spring.datasource.hikari.maximum-pool-size} is not set.
+     */
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    @Bean
+    TaskDecorator contextPropagatingTaskDecorator() {
+        return new ContextPropagatingTaskDecorator();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "concurrency.bulkhead.enabled", havingValue = "true")
+    FilterRegistrationBean<ConnectionPoolBulkheadFilter> connectionPoolBulkheadFilter(
+            DataSource dataSource,
+            Gson gson,
+            @Value("${concurrency.bulkhead.permits-per-connection:1}") int permitsPerConnection,
+            @Value("${concurrency.bulkhead.acquire-timeout:1000}") long acquireTimeout) throws SQLException {
+        // The pool is started lazily, until then an unset size reads as -1
+        int maximumPoolSize = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        int connections = maximumPoolSize > 0 ? maximumPoolSize : DEFAULT_POOL_SIZE;
+        int permits = connections * permitsPerConnection;
+        logger.info("Processing at most {} concurrent requests for {} pooled connections", permits, connections);
+
+        FilterRegistrationBean<ConnectionPoolBulkheadFilter> registration = new FilterRegistrationBean<>(
+                new ConnectionPoolBulkheadFilter(permits, acquireTimeout, gson)
+        );
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+}
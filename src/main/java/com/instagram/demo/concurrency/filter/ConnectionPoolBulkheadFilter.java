@@ -0,0 +1,85 @@
+package com.instagram.demo.concurrency.filter;
+
+import com.google.gson.Gson;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of requests processed concurrently to what the JDBC connection pool can serve.
+ * With virtual threads, Tomcat no longer caps the number of in-flight requests, and thousands of them would otherwise
+ * queue inside the pool until its connection timeout. Requests beyond the permits wait at most
+ * the acquire timeout, then are rejected with {@link HttpStatus#SERVICE_UNAVAILABLE} and a {@code Retry-After} header.
+ * Actuator endpoints are never limited, so that the application can still be monitored while saturated.
+ */
+public class ConnectionPoolBulkheadFilter extends OncePerRequestFilter {
+    /**
+     * Logger instance for logging messages related to ConnectionPoolBulkheadFilter class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPoolBulkheadFilter.class);
+
+    /**
+     * Permits of the requests being processed.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Maximum time in milliseconds a request waits for a permit.
+     */
+    private final long acquireTimeout;
+
+    /**
+     * Gson instance for JSON serialization of the rejection message.
+     */
+    private final Gson gson;
+
+    public ConnectionPoolBulkheadFilter(int permits, long acquireTimeout, Gson gson) {
+        this.permits = new Semaphore(permits, true);
+        this.acquireTimeout = acquireTimeout;
+        this.gson = gson;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+
+        if (!acquired) {
+            logger.debug("Rejected {} {}, no permit within {} ms", request.getMethod(), request.getRequestURI(), acquireTimeout);
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write(gson.toJson("The server is busy, please retry"));
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator/");
+    }
+}
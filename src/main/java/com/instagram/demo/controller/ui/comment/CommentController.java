@@ -7,8 +7,10 @@ import com.instagram.demo.data.repository.PostRepository;
 import com.instagram.demo.data.schema.Comment;
 import com.instagram.demo.data.schema.Person;
 import com.instagram.demo.data.schema.Post;
+import com.instagram.demo.service.cache.CacheInvalidator;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
+import jakarta.validation.Validator;
 import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -16,6 +18,9 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Controller class for managing operations related to comments.
  * This controller provides endpoints for creating comments on posts.
@@ -39,6 +44,16 @@ public class CommentController {
      */
     private final PersonRepository personRepository;
 
+    /**
+     * Invalidator of the cached post details holding the comment counts.
+     */
+    private final CacheInvalidator cacheInvalidator;
+
+    /**
+     * Validator of the comment contents, which are updated without loading the comment entity.
+     */
+    private final Validator validator;
+
     /**
      * Creates a new comment on a post.
      *
@@ -50,6 +65,7 @@ public class CommentController {
      * If the post or user is not found, the response status is {@link org.springframework.http.HttpStatus#NOT_FOUND}, and the message in the response body indicates the reason for failure.
      * If an unexpected error occurs during the operation, the response status is {@link org.springframework.http.HttpStatus#INTERNAL_SERVER_ERROR}, and the message in the response body indicates the error.
      */
+    @Transactional
     @PostMapping(path = "{postId}")
     ResponseEntity<String> createComment(@RequestBody String comment,
                                          @PathVariable Long postId,
@@ -68,6 +84,8 @@ public class CommentController {
                     );
 
             commentRepository.save(new Comment(person, comment, post));
+            postRepository.incrementCommentCount(postId, 1);
+            cacheInvalidator.evictPostDetails(List.of(postId));
 
             return ResponseEntity
                     .status(HttpStatus.CREATED)
@@ -103,19 +121,16 @@ public class CommentController {
                                                        @RequestBody String updatedContent,
                                                        Authentication authentication) {
         try {
-            Comment comment = commentRepository.findById(commentId)
-                    .orElseThrow(() -> new EntityNotFoundException("Comment not found"));
-
-            // Check if the authenticated user is the author of the comment
-            if (!comment.getAuthor().getUsername().equals(authentication.getName())) {
+            if (!validator.validateValue(Comment.class, "comment", updatedContent).isEmpty()) {
                 return ResponseEntity
-                        .status(HttpStatus.FORBIDDEN)
-                        .body(new Gson().toJson("You are not authorized to update this comment"));
+                        .status(HttpStatus.BAD_REQUEST)
+                        .body(new Gson().toJson("Invalid comment content"));
             }
 
-            // Update the comment's content
-            comment.setComment(updatedContent);
-            commentRepository.save(comment);
+            // Update the comment's content if the authenticated user is the author of the comment
+            if (commentRepository.updateOwnedComment(commentId, authentication.getName(), updatedContent) == 0) {
+                return notOwned(commentId, "You are not authorized to update this comment");
+            }
 
             return ResponseEntity
                     .status(HttpStatus.OK)
@@ -144,21 +159,18 @@ public class CommentController {
      * - If an unexpected error occurs during the deletion process, returns ResponseEntity with
      * HTTP status INTERNAL_SERVER_ERROR (500) along with a generic error message.
      */
+    @Transactional
     @DeleteMapping("{commentId}")
     public ResponseEntity<String> deleteComment(@PathVariable Long commentId,
                                                 Authentication authentication) {
         try {
-            Comment comment = commentRepository.findById(commentId)
-                    .orElseThrow(() -> new EntityNotFoundException("Comment not found"));
-
-            // Check if the authenticated user is the author of the comment
-            if (!comment.getAuthor().getUsername().equals(authentication.getName())) {
-                return ResponseEntity
-                        .status(HttpStatus.FORBIDDEN)
-                        .body(new Gson().toJson("You are not authorized to delete this comment"));
+            // Delete the comment and decrement the count of its post if the authenticated user is its author
+            Optional<Long> postId = commentRepository.deleteOwnedComment(commentId, authentication.getName());
+            if (postId.isEmpty()) {
+                return notOwned(commentId, "You are not authorized to delete this comment");
             }
 
-            commentRepository.delete(comment);
+            cacheInvalidator.evictPostDetails(List.of(postId.get()));
             return ResponseEntity
                     .status(HttpStatus.OK)
                     .body(new Gson().toJson("Comment successfully deleted"));
@@ -172,4 +184,22 @@ public class CommentController {
                     .body(new Gson().toJson("An error occurred"));
         }
     }
+
+    /**
+     * Tells a missing comment from a comment written by someone else, once a statement restricted to the comments
+     * of the authenticated user affected none.
+     *
+     * @param commentId        The ID of the comment.
+     * @param forbiddenMessage The message returned if the comment exists.
+     * @return A response with status {@link HttpStatus#FORBIDDEN}.
+     * @throws EntityNotFoundException if the comment does not exist.
+     */
+    private ResponseEntity<String> notOwned(Long commentId, String forbiddenMessage) {
+        if (!commentRepository.existsById(commentId)) {
+            throw new EntityNotFoundException("Comment not found");
+        }
+        return ResponseEntity
+                .status(HttpStatus.FORBIDDEN)
+                .body(new Gson().toJson(forbiddenMessage));
+    }
 }
@@ -2,10 +2,14 @@ package com.instagram.demo.controller.ui.person;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.instagram.demo.data.projection.person.PersonFeed;
 import com.instagram.demo.data.projection.person.PersonSuggestion;
 import com.instagram.demo.data.repository.PersonRepository;
 import com.instagram.demo.data.repository.PostRepository;
 import com.instagram.demo.data.schema.Person;
+import com.instagram.demo.service.cache.CacheInvalidator;
+import com.instagram.demo.service.suggestion.SuggestionService;
+import com.instagram.demo.service.timeline.HomeTimelineService;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
@@ -44,6 +48,21 @@ public class PersonController {
      */
     private final PersonRepository personRepository;
 
+    /**
+     * Service maintaining the materialized home timelines.
+     */
+    private final HomeTimelineService homeTimelineService;
+
+    /**
+     * Service suggesting people to follow.
+     */
+    private final SuggestionService suggestionService;
+
+    /**
+     * Invalidator of the cached profiles, counts and posts.
+     */
+    private final CacheInvalidator cacheInvalidator;
+
     /**
      * Gson instance for JSON serialization and deserialization.
      */
@@ -54,9 +73,15 @@ public class PersonController {
      */
     private final PasswordEncoder passwordEncoder;
 
+    /**
+     * Suggests three people for the authenticated user to follow, drawn at random from their precomputed candidates.
+     *
+     * @param authentication The authentication object containing details about the currently logged-in user.
+     * @return A list of {@link PersonSuggestion} representing up to three people not followed by the user.
+     */
     @GetMapping("suggestions")
     List<PersonSuggestion> personSuggestions(Authentication authentication) {
-        return personRepository.findThreeRandomUsersNotFollowedByUser(authentication.getName());
+        return suggestionService.suggest(authentication.getName(), 3);
     }
 
     /**
@@ -110,37 +135,33 @@ public class PersonController {
     @Transactional
     @PostMapping("follow/{username}")
     public ResponseEntity<String> followPerson(@PathVariable String username, Authentication authentication) {
-        Optional<Person> loggedInUserOptional = personRepository
-                .findFirstByUsername(authentication.getName());
-        Optional<Person> targetUserOptional = personRepository
-                .findFirstByUsername(username);
+        Optional<PersonFeed> loggedInUserOptional = personRepository
+                .findIdByUsername(authentication.getName());
+        Optional<PersonFeed> targetUserOptional = personRepository
+                .findIdByUsername(username);
 
         if (loggedInUserOptional.isPresent() && targetUserOptional.isPresent()) {
-            Person loggedInUser = loggedInUserOptional.get();
-            Person targetUser = targetUserOptional.get();
+            Long loggedInUserId = loggedInUserOptional.get().getId();
+            Long targetUserId = targetUserOptional.get().getId();
 
-            if (loggedInUser.equals(targetUser)) {
+            if (loggedInUserId.equals(targetUserId)) {
                 return ResponseEntity
                         .badRequest()
                         .body(gson.toJson("You cannot follow yourself."));
             }
 
-            if (loggedInUser.getFollowees().contains(targetUser)) {
-                // If already following, then unfollow
-                loggedInUser.getFollowees().remove(targetUser);
-                targetUser.getFollowers().remove(loggedInUser);
+            // Delete the followship if it exists, insert it otherwise, without loading either person
+            long toggled = personRepository.toggleFollow(loggedInUserId, targetUserId);
+            cacheInvalidator.evictPersonStats(authentication.getName(), username);
 
-                personRepository.save(loggedInUser);
-                personRepository.save(targetUser);
+            if (toggled < 0) {
+                homeTimelineService.onUnfollow(loggedInUserId, targetUserId);
+                suggestionService.onUnfollow(authentication.getName());
 
                 return ResponseEntity.ok(gson.toJson("Followship removed successfully"));
             } else {
-                // If not following, then follow
-                loggedInUser.getFollowees().add(targetUser);
-                targetUser.getFollowers().add(loggedInUser);
-
-                personRepository.save(loggedInUser);
-                personRepository.save(targetUser);
+                homeTimelineService.onFollow(loggedInUserId, targetUserId);
+                suggestionService.onFollow(authentication.getName(), username);
 
                 return new ResponseEntity<>(
                         gson.toJson("Followship created successfully"),
@@ -170,10 +191,11 @@ public class PersonController {
                     registerUserCredentials.firstname(),
                     registerUserCredentials.lastname()
             ));
+            cacheInvalidator.evictPerson(savedPerson.getUsername());
             return ResponseEntity.status(HttpStatus.CREATED).body(savedPerson);
         } catch (Exception e) {
             // Log the exception
-            logger.error("Error occurred while registering user: " + e.getMessage());
+            logger.error("Error occurred while registering user: {}", e.getMessage());
             // Return ResponseEntity with error message
             return ResponseEntity
                     .status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -201,14 +223,14 @@ public class PersonController {
                     .findFirstByUsername(authenticatedUsername)
                     .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
-            logger.debug(authenticatedUser.toString());
+            logger.debug("Editing {}", authenticatedUser);
             Optional<Person> unavailableUser = personRepository
                     .findFirstByUsername(editUserRequestBody.username());
 
             // Check if the authenticated user is the same as the user being edited
             if (unavailableUser.isPresent()
                     && !unavailableUser.get().getUsername().equals(authenticatedUsername)) {
-                logger.debug(unavailableUser.toString());
+                logger.debug("Username {} already taken by {}", editUserRequestBody.username(), unavailableUser.get());
                 return ResponseEntity
                         .status(HttpStatus.FORBIDDEN)
                         .body(gson.toJson("The username is already taken by another user"));
@@ -222,10 +244,16 @@ public class PersonController {
             authenticatedUser.setLastname(editUserRequestBody.lastname());
             authenticatedUser.setBio(editUserRequestBody.bio());
 
-            logger.debug(authenticatedUser.toString());
+            logger.debug("Saving {}", authenticatedUser);
             // Save the updated user
             personRepository.save(authenticatedUser);
 
+            // Evict the profile under both usernames, and the posts showing the photo of the user
+            cacheInvalidator.evictPerson(authenticatedUsername);
+            cacheInvalidator.evictPerson(authenticatedUser.getUsername());
+            cacheInvalidator.evictPostDetails(postRepository.findIdsByUploaderUsername(authenticatedUser.getUsername()));
+            suggestionService.evictPerson(authenticatedUsername);
+
             // Return success response
             return ResponseEntity.ok(gson.toJson(gson.toJson("User updated successfully")));
         } catch (UsernameNotFoundException e) {
@@ -251,15 +279,24 @@ public class PersonController {
         try {
             // Retrieve authenticated username
             String authenticatedUsername = authentication.getName();
-            logger.debug(authenticatedUsername);
+            logger.debug("Deleting {}", authenticatedUsername);
 
             // Find the person by username
             Person person = personRepository
                     .findFirstByUsername(authenticatedUsername)
                     .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
+            // Evict the person, the counts of their followers and followees, and the posts they liked or commented
+            cacheInvalidator.evictPerson(authenticatedUsername);
+            cacheInvalidator.evictPersonStats(personRepository.findConnectedUsernamesById(person.getId()));
+            cacheInvalidator.evictAllPostDetails();
+            suggestionService.evictPerson(authenticatedUsername);
+
             // Delete the person
+            homeTimelineService.onPersonDeleted(person.getId());
             personRepository.deleteFolloweesAndFollowersById(person.getId());
+            postRepository.decrementLikeCountsByLikerId(person.getId());
+            postRepository.decrementCommentCountsByAuthorId(person.getId());
             personRepository.deleteLikesById(person.getId());
             personRepository.delete(person);
 
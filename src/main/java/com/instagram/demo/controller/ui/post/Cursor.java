@@ -0,0 +1,68 @@
+package com.instagram.demo.controller.ui.post;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Represents a keyset pagination cursor.
+ * A cursor points right after the last element of a page, identified by its {@code (date, id)} pair,
+ * so the next page is read with a {@code WHERE (date, id) < (:date, :id)} range scan instead of an {@code OFFSET}.
+ * Cursors are exchanged with clients as opaque URL-safe Base64 strings.
+ *
+ * @param date The date of the last element of the previous page.
+ * @param id   The ID of the last element of the previous page, used to break ties between equal dates.
+ */
+record Cursor(LocalDateTime date, Long id) {
+    /**
+     * Cursor pointing before the first element, used when the client does not send any cursor.
+     */
+    static final Cursor FIRST = new Cursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
+    /**
+     * Separator between the date and the ID in the encoded form.
+     */
+    private static final String SEPARATOR = "_";
+
+    /**
+     * Encodes the cursor as an opaque string.
+     *
+     * @return The URL-safe Base64 representation of the cursor.
+     */
+    String encode() {
+        return Base64
+                .getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((date + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor sent by a client.
+     *
+     * @param encoded The opaque cursor string, or {@code null} to start from the first element.
+     * @return The decoded cursor, or {@link #FIRST} if {@code encoded} is null or blank.
+     * @throws ResponseStatusException with status {@link HttpStatus#BAD_REQUEST} if the cursor is malformed
+     *                                 or its date lies outside the years 1 to 9999.
+     */
+    static Cursor decode(String encoded) {
+        if (encoded == null || encoded.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf(SEPARATOR);
+            LocalDateTime date = LocalDateTime.parse(decoded.substring(0, separator));
+            // Dates the database cannot store would fail the query instead
+            if (date.getYear() < 1 || date.isAfter(FIRST.date())) {
+                throw new IllegalArgumentException("Cursor date out of range");
+            }
+            return new Cursor(date, Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.instagram.demo.controller.ui.post;
+
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Represents a page of a keyset-paginated listing.
+ * Unlike a {@link org.springframework.data.domain.Page}, it carries no total count,
+ * which spares the {@code COUNT(*)} query issued for every page.
+ *
+ * @param content    The elements of the page.
+ * @param nextCursor The cursor to send back to retrieve the next page, or {@code null} if this is the last page.
+ * @param <T>        The type of the elements.
+ */
+record CursorPage<T>(List<T> content, String nextCursor) {
+    /**
+     * Builds a cursor page from a slice.
+     *
+     * @param slice    The slice returned by a keyset query.
+     * @param cursorOf Function extracting the {@link Cursor} of an element.
+     * @param <T>      The type of the elements.
+     * @return A cursor page pointing after the last element of the slice if there is a next one.
+     */
+    static <T> CursorPage<T> of(Slice<T> slice, Function<T, Cursor> cursorOf) {
+        List<T> content = slice.getContent();
+        String nextCursor = slice.hasNext() && !content.isEmpty()
+                ? cursorOf.apply(content.get(content.size() - 1)).encode()
+                : null;
+        return new CursorPage<>(content, nextCursor);
+    }
+
+    /**
+     * Maps the elements of the page while keeping its cursor.
+     *
+     * @param mapper Function mapping each element.
+     * @param <U>    The type of the mapped elements.
+     * @return A cursor page containing the mapped elements and the same next cursor.
+     */
+    <U> CursorPage<U> map(Function<T, U> mapper) {
+        return new CursorPage<>(content.stream().map(mapper).toList(), nextCursor);
+    }
+}
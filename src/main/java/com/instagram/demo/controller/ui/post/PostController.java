@@ -2,79 +2,34 @@ package com.instagram.demo.controller.ui.post;
 
 import com.google.gson.Gson;
 import com.instagram.demo.data.projection.comment.CommentProjection;
-import com.instagram.demo.data.projection.person.PersonFeed;
-import com.instagram.demo.data.projection.post.PostFeedProjection;
 import com.instagram.demo.data.repository.CommentRepository;
 import com.instagram.demo.data.repository.PersonRepository;
 import com.instagram.demo.data.repository.PostRepository;
 import com.instagram.demo.data.schema.Person;
 import com.instagram.demo.data.schema.Post;
+import com.instagram.demo.service.cache.CacheInvalidator;
+import com.instagram.demo.service.like.LikeAggregator;
+import com.instagram.demo.service.timeline.HomeTimelineService;
+import com.instagram.demo.service.trending.TrendingHashtagService;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
+import jakarta.validation.Validator;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashSet;
-import java.util.Optional;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
-
-/**
- * Represents a preview of a post.
- * This record contains essential information about a post that is suitable for displaying in a preview format.
- *
- * @param id            The ID of the post.
- * @param image         The URL or path to the image associated with the post.
- * @param likesCount    The number of likes received by the post.
- * @param commentCounts The number of comments made on the post.
- */
-record PostPreview(Long id, String image, Long likesCount, Long commentCounts) {
-}
-
-/**
- * Represents a detailed response for a post.
- * This record contains comprehensive information about a post, including its image, description, hashtags, comments, and likes.
- *
- * @param photo        The URL or path to the uploader's photo.
- * @param hashtags     The set of hashtags associated with the post.
- * @param image        The URL or path to the image associated with the post.
- * @param timeUntilNow The time elapsed since the post was made.
- * @param description  The description or caption of the post.
- * @param comments     The page containing comments associated with the post.
- * @param likesCount   The total number of likes received by the post.
- */
-record PostResponse(String photo,
-                    Set<String> hashtags,
-                    String image,
-                    Long timeUntilNow,
-                    String description,
-                    Page<CommentProjection> comments,
-                    Long likesCount,
-                    Boolean like) {
-}
-
-/**
- * Represents a post for feed.
- * This record contains information about a post suitable for displaying in a feed.
- *
- * @param postFeedProjection The projection of the post.
- * @param likesCount         The number of likes received by the post.
- * @param commentCounts      The number of comments made on the post.
- */
-record PostFeed(PostFeedProjection postFeedProjection,
-                Long likesCount,
-                Long commentCounts,
-                Boolean like) {
-}
 
 /**
  * Controller class for managing operations related to posts.
@@ -90,6 +45,11 @@ public class PostController {
      */
     private static final Logger logger = LoggerFactory.getLogger(PostController.class);
 
+    /**
+     * Maximum number of elements that can be requested in a single page.
+     */
+    static final int MAX_PAGE_SIZE = 50;
+
     /**
      * Repository for performing CRUD operations on posts.
      */
@@ -105,43 +65,90 @@ public class PostController {
      */
     private final PersonRepository personRepository;
 
+    /**
+     * Hydrator loading the counts and like statuses of a feed page in bulk.
+     */
+    private final PostFeedHydrator postFeedHydrator;
+
+    /**
+     * Assembler loading the details of a post concurrently.
+     */
+    private final PostDetailAssembler postDetailAssembler;
+
+    /**
+     * Service maintaining the materialized home timelines.
+     */
+    private final HomeTimelineService homeTimelineService;
+
+    /**
+     * Aggregator absorbing like toggles in memory and writing them behind.
+     */
+    private final LikeAggregator likeAggregator;
+
+    /**
+     * Service counting the hashtags posted and liked, to rank the trending ones.
+     */
+    private final TrendingHashtagService trendingHashtagService;
+
+    /**
+     * Invalidator of the cached profiles, counts and posts.
+     */
+    private final CacheInvalidator cacheInvalidator;
+
     /**
      * Gson instance used for JSON serialization and deserialization.
      */
     private final Gson gson;
 
+    /**
+     * Validator of the post details, which are updated without loading the post entity.
+     */
+    private final Validator validator;
+
     /**
      * Retrieves detailed information about a specific post by its ID.
-     * This endpoint returns an optional {@link PostResponse} object representing the post with the specified ID.
-     * If the post with the given ID exists, the method returns a populated {@link Optional} containing the post details;
-     * otherwise, it returns an empty {@link Optional}.
+     * This endpoint returns a {@link PostResponse} object representing the post with the specified ID.
+     * The post, its hashtags, its comments and its like status are loaded concurrently by {@link PostDetailAssembler}.
      *
      * @param postId     The ID of the post to retrieve.
      * @param pageNumber The page number for retrieving comments associated with the post. Page numbering starts from 0.
-     * @return An {@link Optional} containing a {@link PostResponse} object representing the detailed information about the post
-     * if the post with the specified ID exists; otherwise, an empty {@link Optional}.
+     * @return A {@link ResponseEntity} containing a {@link PostResponse} object representing the detailed information about the post
+     * if the post with the specified ID exists; otherwise, a response with status {@link HttpStatus#NOT_FOUND}.
      */
     @GetMapping("{postId}")
-    Optional<PostResponse> post(@PathVariable Long postId,
-                                @RequestParam(defaultValue = "0", required = false) Integer pageNumber,
-                                Authentication authentication) {
-        Pageable pageRequest = PageRequest.of(pageNumber, 2);
-        return postRepository
-                .findPostById(postId)
-                .map(postProjection ->
-                        new PostResponse(
-                                postProjection.getUploaderPhoto(),
-                                postRepository.findHashtagsByPostId(postId),
-                                postProjection.getImage(),
-                                postProjection.getTimeUntilNow(),
-                                postProjection.getDescription(),
-                                commentRepository.findByPostIdOrderByDateDesc(postId, pageRequest),
-                                personRepository.countLikersByPostId(postId),
-                                postRepository.existsLikedPostByUser(postId, authentication.getName())
-                        ));
+    ResponseEntity<PostResponse> post(@PathVariable Long postId,
+                                      @RequestParam(defaultValue = "0", required = false) Integer pageNumber,
+                                      Authentication authentication) {
+        return ResponseEntity.of(postDetailAssembler.assemble(postId, PageRequest.of(pageNumber, 2), authentication.getName()));
     }
 
 
+    /**
+     * Retrieves the comments of a post using keyset pagination.
+     * The comments are sorted by date in descending order, and each page is read as a range scan starting
+     * right after the cursor, so its cost does not depend on how deep the client has scrolled.
+     *
+     * @param postId   The ID of the post whose comments are to be retrieved.
+     * @param cursor   The cursor returned with the previous page, or none to retrieve the first page.
+     * @param pageSize The number of comments per page, capped at {@link #MAX_PAGE_SIZE}.
+     * @return A {@link CursorPage} containing {@link CommentProjection} objects and the cursor of the next page.
+     */
+    @GetMapping("{postId}/comments")
+    CursorPage<CommentProjection> comments(@PathVariable Long postId,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "2", required = false) Integer pageSize) {
+        Cursor after = Cursor.decode(cursor);
+        return CursorPage.of(
+                commentRepository.findByPostIdBefore(
+                        postId,
+                        after.date(),
+                        after.id(),
+                        PageRequest.ofSize(boundedPageSize(pageSize))
+                ),
+                comment -> new Cursor(comment.getDate(), comment.getId())
+        );
+    }
+
     /**
      * Updates an existing post with the provided details.
      *
@@ -160,31 +167,30 @@ public class PostController {
             // Obtain authenticated user's information
             String authenticatedUsername = authentication.getName();
 
-            // Retrieve the post from the database using its ID
-            Post post = postRepository
-                    .findById(postId)
-                    .orElseThrow(() -> new PostNotFoundException("Post not found"));
-
-            // Check if the authenticated user is the uploader of the post
-            if (!post.getUploader().getUsername().equals(authenticatedUsername)) {
+            // Missing hashtags remove them all, while a null hashtag is invalid
+            String[] hashtags = requestPostBody.hashtags() == null ? new String[0] : requestPostBody.hashtags();
+            if (!validator.validateValue(Post.class, "description", requestPostBody.description()).isEmpty()
+                    || !validator.validateValue(Post.class, "image", requestPostBody.image()).isEmpty()
+                    || Arrays.asList(hashtags).contains(null)
+                    || !validator.validateValue(Post.class, "hashtags", Set.copyOf(Arrays.asList(hashtags))).isEmpty()) {
                 return ResponseEntity
-                        .status(HttpStatus.FORBIDDEN)
-                        .body(gson.toJson("You are not authorized to edit this post"));
+                        .status(HttpStatus.BAD_REQUEST)
+                        .body(gson.toJson("Invalid description, image or hashtags"));
             }
 
-            // Update the post with the new details
-            post.setDescription(requestPostBody.description());
-            post.setImage(requestPostBody.image());
-            logger.debug(post.toString());
-
-            postRepository.deleteHashtagsByPostId(postId);
-            for (String hashtag : requestPostBody.hashtags()) {
-                logger.debug("hashtag=" + hashtag);
-                postRepository.insertHashtagsByPostId(postId, hashtag);
+            // Update the post with the new details if the authenticated user is the uploader of the post
+            if (postRepository.updateOwnedPost(postId, authenticatedUsername,
+                    requestPostBody.description(), requestPostBody.image()) == 0) {
+                return notOwned(postId, "You are not authorized to edit this post");
             }
+            logger.debug("Edited post {}", postId);
+
+            // Apply the difference between the current and the requested hashtags
+            List<String> addedHashtags = postRepository.replaceHashtags(postId, hashtags);
+            logger.debug("Added hashtags {} to post {}", addedHashtags, postId);
 
-            // Save the updated post
-            postRepository.save(post);
+            cacheInvalidator.evictPost(postId);
+            trendingHashtagService.recordHashtags(addedHashtags);
 
             // Return success response
             return ResponseEntity.status(HttpStatus.OK).body(gson.toJson("Post edited successfully"));
@@ -215,41 +221,96 @@ public class PostController {
                 .map(postPreviewProjection ->
                         new PostPreview(postPreviewProjection.getId(),
                                 postPreviewProjection.getImage(),
-                                personRepository.countLikersByPostId(postPreviewProjection.getId()),
-                                commentRepository.countByPostId(postPreviewProjection.getId())
+                                likeAggregator.likeCount(postPreviewProjection.getId(), postPreviewProjection.getLikeCount()),
+                                postPreviewProjection.getCommentCount()
+                        ));
+    }
+
+    /**
+     * Retrieves the post previews of a specific user using keyset pagination.
+     * The posts are sorted by date in descending order, and each page is read as a range scan starting
+     * right after the cursor, so its cost does not depend on how deep the client has scrolled.
+     *
+     * @param username The username of the user whose post previews are to be retrieved.
+     * @param cursor   The cursor returned with the previous page, or none to retrieve the first page.
+     * @param pageSize The number of previews per page, capped at {@link #MAX_PAGE_SIZE}.
+     * @return A {@link CursorPage} containing {@link PostPreview} objects and the cursor of the next page.
+     */
+    @GetMapping("preview/{username}/cursor")
+    CursorPage<PostPreview> postPreviewCursor(@PathVariable String username,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam(defaultValue = "3", required = false) Integer pageSize) {
+        Cursor after = Cursor.decode(cursor);
+        return CursorPage.of(
+                        postRepository.findPostsByUploaderUsernameBefore(
+                                username,
+                                after.date(),
+                                after.id(),
+                                PageRequest.ofSize(boundedPageSize(pageSize))
+                        ),
+                        postPreviewProjection -> new Cursor(postPreviewProjection.getDate(), postPreviewProjection.getId())
+                )
+                .map(postPreviewProjection ->
+                        new PostPreview(postPreviewProjection.getId(),
+                                postPreviewProjection.getImage(),
+                                likeAggregator.likeCount(postPreviewProjection.getId(), postPreviewProjection.getLikeCount()),
+                                postPreviewProjection.getCommentCount()
                         ));
     }
 
     /**
      * Retrieves a page of posts for the authenticated user's feed.
-     * This endpoint returns a paginated list of posts from users whom the authenticated user is following.
+     * This endpoint returns a paginated list of posts from users whom the authenticated user is following,
+     * served from the materialized home timeline maintained by {@link HomeTimelineService}.
      * The posts are sorted by date in descending order.
+     * Like counts, comment counts and like statuses are loaded for the whole page at once by {@link PostFeedHydrator},
+     * so larger pages do not cost additional round-trips to the database.
      *
      * @param authentication The authentication object representing the currently authenticated user.
      * @param pageNumber     The page number to retrieve. Page numbering starts from 0.
-     * @return A {@link org.springframework.data.domain.Page} containing {@link PostFeed} objects representing posts in the feed.
+     * @param pageSize       The number of posts per page, capped at {@link #MAX_PAGE_SIZE}.
+     * @return A {@link Slice} containing {@link PostFeed} objects representing posts in the feed, without any total count.
      * Each post is augmented with additional information such as the number of likers and comments.
      * @throws org.springframework.security.core.AuthenticationException if the user is not authenticated.
      */
     @GetMapping("feed")
-    Page<PostFeed> feed(Authentication authentication, @RequestParam Integer pageNumber) {
-        Pageable pageRequest = PageRequest.of(pageNumber, 1);
-        return postRepository.findByUploaderIdInOrderByDateDesc(
-                        personRepository.findByFollowersUsername(authentication.getName())
-                                .stream()
-                                .map(PersonFeed::getId)
-                                .collect(Collectors.toSet()),
-                        pageRequest)
-                .map(postFeedProjection -> new PostFeed(
-                                postFeedProjection,
-                                personRepository.countLikersByPostId(postFeedProjection.getId()),
-                                commentRepository.countByPostId(postFeedProjection.getId()),
-                                postRepository.existsLikedPostByUser(
-                                        postFeedProjection.getId(),
-                                        authentication.getName()
-                                )
-                        )
-                );
+    Slice<PostFeed> feed(Authentication authentication,
+                        @RequestParam Integer pageNumber,
+                        @RequestParam(defaultValue = "1", required = false) Integer pageSize) {
+        Pageable pageRequest = PageRequest.of(pageNumber, boundedPageSize(pageSize));
+        return postFeedHydrator.hydrate(
+                homeTimelineService.feed(authentication.getName(), pageRequest),
+                authentication.getName()
+        );
+    }
+
+    /**
+     * Retrieves the authenticated user's feed using keyset pagination.
+     * The posts are sorted by date in descending order, and each page is read as a range scan over the
+     * materialized timeline starting right after the cursor, so its cost does not depend on how deep the client has scrolled.
+     *
+     * @param authentication The authentication object representing the currently authenticated user.
+     * @param cursor         The cursor returned with the previous page, or none to retrieve the first page.
+     * @param pageSize       The number of posts per page, capped at {@link #MAX_PAGE_SIZE}.
+     * @return A {@link CursorPage} containing {@link PostFeed} objects and the cursor of the next page.
+     */
+    @GetMapping("feed/cursor")
+    CursorPage<PostFeed> feedCursor(Authentication authentication,
+                                    @RequestParam(required = false) String cursor,
+                                    @RequestParam(defaultValue = "1", required = false) Integer pageSize) {
+        Cursor after = Cursor.decode(cursor);
+        return CursorPage.of(
+                postFeedHydrator.hydrate(
+                        homeTimelineService.feedBefore(
+                                authentication.getName(),
+                                after.date(),
+                                after.id(),
+                                boundedPageSize(pageSize)
+                        ),
+                        authentication.getName()
+                ),
+                postFeed -> new Cursor(postFeed.postFeedProjection().getDate(), postFeed.postFeedProjection().getId())
+        );
     }
 
     /**
@@ -270,56 +331,34 @@ public class PostController {
     @PostMapping("like/{postId}")
     ResponseEntity<String> likePost(@PathVariable Long postId, Authentication authentication) {
         try {
-            Person person = personRepository
-                    .findFirstByUsername(authentication.getName())
-                    .orElseThrow(
-                            () -> new UsernameNotFoundException("User not found")
-                    );
-
-            Post post = postRepository
-                    .findById(postId)
-                    .orElseThrow(
-                            () -> new EntityNotFoundException("Post not found")
-                    );
-
-            // Initialize likers set if null
-            if (post.getLikers() == null) {
-                post.setLikers(new HashSet<>());
-            }
-
-            // Initialize LikedPosts set if null
-            if (person.getLikedPosts() == null) {
-                person.setLikedPosts(new HashSet<>());
+            // Absorb the toggle in memory, it is written behind by the aggregator
+            if (likeAggregator.isEnabled()) {
+                if (!postRepository.existsById(postId)) {
+                    throw new EntityNotFoundException("Post not found");
+                }
+                boolean liked = likeAggregator.toggle(postId, authentication.getName());
+                if (liked) {
+                    trendingHashtagService.recordLike(postId, authentication.getName());
+                }
+                return likeResponse(liked);
             }
 
-            // Toggle post like status for the user
-            if (post.getLikers().contains(person)) {
-                // If the user has already liked the post, remove the like
-                post.getLikers().remove(person);
-                person.getLikedPosts().remove(post);
-            } else {
-                // If the user has not liked the post before, like the post
-                post.getLikers().add(person);
-                person.getLikedPosts().add(post);
+            // Delete the like if it exists, insert it otherwise, and adjust the like count in the same statement
+            long toggled = postRepository.toggleLike(postId, authentication.getName());
+            cacheInvalidator.evictPostDetails(List.of(postId));
+            if (toggled == 0) {
+                // Nothing changed: either the post is missing or a concurrent toggle already liked it
+                if (!postRepository.existsById(postId)) {
+                    throw new EntityNotFoundException("Post not found");
+                }
+                return likeResponse(postRepository.existsLikedPostByUser(postId, authentication.getName()));
             }
 
-            // Save both the Person and Post objects to persist the changes in the database
-            personRepository.save(person);
-            postRepository.save(post);
-
-            // Return appropriate response based on like toggling
-            if (post.getLikers().contains(person)) {
-                return new ResponseEntity<>(
-                        gson.toJson("Post liked successfully"),
-                        HttpStatus.CREATED
-                );
-            } else {
-                return new ResponseEntity<>(
-                        gson.toJson("Post unliked successfully"),
-                        HttpStatus.OK
-                );
+            if (toggled > 0) {
+                trendingHashtagService.recordLike(postId, authentication.getName());
             }
-        } catch (EntityNotFoundException | UsernameNotFoundException e) {
+            return likeResponse(toggled > 0);
+        } catch (EntityNotFoundException e) {
             return ResponseEntity
                     .status(HttpStatus.NOT_FOUND)
                     .body(gson.toJson(e.getMessage()));
@@ -330,6 +369,27 @@ public class PostController {
         }
     }
 
+    /**
+     * Builds the response of a like toggle.
+     *
+     * @param liked Whether the post is liked after the toggle.
+     * @return A response with status {@link HttpStatus#CREATED} if the post was liked, {@link HttpStatus#OK} if it was unliked.
+     */
+    private ResponseEntity<String> likeResponse(boolean liked) {
+        if (liked) {
+            return new ResponseEntity<>(
+                    gson.toJson("Post liked successfully"),
+                    HttpStatus.CREATED
+            );
+        } else {
+            return new ResponseEntity<>(
+                    gson.toJson("Post unliked successfully"),
+                    HttpStatus.OK
+            );
+        }
+    }
+
+    @Transactional
     @PostMapping(path = "", consumes = "application/json")
     public ResponseEntity<?> createPost(@RequestBody RequestPostBody requestPostBody,
                                         Authentication authentication) {
@@ -340,11 +400,16 @@ public class PostController {
 
             // Assign the authenticated user as the uploader of the post
             Post post = new Post(requestPostBody, uploader);
-            logger.debug(post.toString());
+            logger.debug("Creating {}", post);
 
             // Save the post
             Post savedPost = postRepository.save(post);
-            logger.debug(savedPost.toString());
+            logger.debug("Created {}", savedPost);
+
+            // Write the post into the followers' timelines
+            homeTimelineService.onPostCreated(savedPost);
+            cacheInvalidator.evictPersonStats(uploader.getUsername());
+            trendingHashtagService.recordHashtags(savedPost.getHashtags());
 
             // Create a PostPreview object from the saved post
             PostPreview postPreview = new PostPreview(
@@ -360,7 +425,7 @@ public class PostController {
             return ResponseEntity.notFound().build();
         } catch (Exception e) {
             // Log the exception
-            logger.error("Error occurred while creating a post: " + e.getMessage());
+            logger.error("Error occurred while creating a post: {}", e.getMessage());
             // Return ResponseEntity with an error message
             return ResponseEntity
                     .status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -385,23 +450,15 @@ public class PostController {
             // Obtain authenticated user's information
             String authenticatedUsername = authentication.getName();
 
-            // Retrieve the post from the database using its ID
-            Post post = postRepository
-                    .findById(postId)
-                    .orElseThrow(() -> new PostNotFoundException("Post not found"));
-            logger.debug(post.toString());
-
-            // Check if the authenticated user is the uploader of the post
-            if (!post.getUploader().getUsername().equals(authenticatedUsername)) {
-                return ResponseEntity
-                        .status(HttpStatus.FORBIDDEN)
-                        .body(gson.toJson("You are not authorized to delete this post"));
+            // Delete the post, its comments, likes, hashtags and timeline entries
+            // if the authenticated user is the uploader of the post
+            if (postRepository.deleteOwnedPost(postId, authenticatedUsername) == 0) {
+                return notOwned(postId, "You are not authorized to delete this post");
             }
-            logger.debug(post.toString());
+            logger.debug("Deleted post {}", postId);
 
-            // If the authenticated user is the uploader, delete the post
-            postRepository.deleteLikesByPostId(postId);
-            postRepository.delete(post);
+            cacheInvalidator.evictPost(postId);
+            cacheInvalidator.evictPersonStats(authenticatedUsername);
 
             // Return success response
             return ResponseEntity.status(HttpStatus.OK).body(gson.toJson("Post deleted successfully"));
@@ -414,6 +471,34 @@ public class PostController {
         }
     }
 
+    /**
+     * Tells a missing post from a post uploaded by someone else, once a statement restricted to the posts
+     * of the authenticated user affected none.
+     *
+     * @param postId           The ID of the post.
+     * @param forbiddenMessage The message returned if the post exists.
+     * @return A response with status {@link HttpStatus#FORBIDDEN}.
+     * @throws PostNotFoundException if the post does not exist.
+     */
+    private ResponseEntity<String> notOwned(Long postId, String forbiddenMessage) {
+        if (!postRepository.existsById(postId)) {
+            throw new PostNotFoundException("Post not found");
+        }
+        return ResponseEntity
+                .status(HttpStatus.FORBIDDEN)
+                .body(gson.toJson(forbiddenMessage));
+    }
+
+    /**
+     * Clamps a requested page size between 1 and {@link #MAX_PAGE_SIZE}.
+     *
+     * @param pageSize The requested page size.
+     * @return The page size to use.
+     */
+    private static int boundedPageSize(Integer pageSize) {
+        return Math.min(Math.max(pageSize, 1), MAX_PAGE_SIZE);
+    }
+
     /**
      * Exception thrown when a post is not found.
      */
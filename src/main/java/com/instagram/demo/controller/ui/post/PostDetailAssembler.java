@@ -0,0 +1,200 @@
+package com.instagram.demo.controller.ui.post;
+
+import com.instagram.demo.data.projection.comment.CommentProjection;
+import com.instagram.demo.data.projection.post.PostProjection;
+import com.instagram.demo.data.repository.CommentRepository;
+import com.instagram.demo.data.repository.PostRepository;
+import com.instagram.demo.service.like.LikeAggregator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Assembles the {@link PostResponse} of a post by running its independent lookups concurrently,
+ * so that its latency approaches the one of the slowest lookup rather than their sum.
+ * The lookups run on the bounded application task executor, on virtual threads when they are enabled,
+ * and each of them must complete within {@code post.detail.timeout} milliseconds.
+ * Each lookup also runs in a transaction timing out with it, which sets the {@code jakarta.persistence.query.timeout}
+ * of its queries, so that the database cancels a lookup given up on rather than keeping its connection busy.
+ * The post itself is required: if it cannot be loaded, the request fails. The hashtags, the comments and the like status
+ * are not: if one of them fails or times out, the response is built with an empty default in its place.
+ */
+@Component
+class PostDetailAssembler {
+    /**
+     * Logger instance for logging messages related to PostDetailAssembler class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(PostDetailAssembler.class);
+
+    /**
+     * Repository for performing CRUD operations on posts.
+     */
+    private final PostRepository postRepository;
+
+    /**
+     * Repository for performing CRUD operations on comments.
+     */
+    private final CommentRepository commentRepository;
+
+    /**
+     * Aggregator holding the likes not yet written to the database.
+     */
+    private final LikeAggregator likeAggregator;
+
+    /**
+     * Executor running the lookups.
+     */
+    private final AsyncTaskExecutor queryExecutor;
+
+    /**
+     * Maximum time in milliseconds each lookup may take.
+     */
+    private final long timeout;
+
+    /**
+     * Transactions bounding the queries of each lookup.
+     */
+    private final TransactionOperations lookupTransaction;
+
+    @Autowired
+    PostDetailAssembler(PostRepository postRepository,
+                        CommentRepository commentRepository,
+                        LikeAggregator likeAggregator,
+                        @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                        AsyncTaskExecutor queryExecutor,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${post.detail.timeout:2000}") long timeout) {
+        this(postRepository, commentRepository, likeAggregator, queryExecutor,
+                lookupTransaction(transactionManager, timeout), timeout);
+    }
+
+    PostDetailAssembler(PostRepository postRepository,
+                        CommentRepository commentRepository,
+                        LikeAggregator likeAggregator,
+                        AsyncTaskExecutor queryExecutor,
+                        TransactionOperations lookupTransaction,
+                        long timeout) {
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeAggregator = likeAggregator;
+        this.queryExecutor = queryExecutor;
+        this.lookupTransaction = lookupTransaction;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Creates the read-only transactions of the lookups.
+     * Timeouts are in seconds, and Hibernate gives each query the whole seconds left in its transaction,
+     * so the transaction gets a second more than the lookup timeout rounded up, for the queries of a lookup
+     * to be cancelled by the database about when the lookup times out.
+     */
+    private static TransactionTemplate lookupTransaction(PlatformTransactionManager transactionManager, long timeout) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setTimeout((int) TimeUnit.MILLISECONDS.toSeconds(timeout + 999) + 1);
+        return transactionTemplate;
+    }
+
+    /**
+     * Loads a post, its hashtags, a page of its comments and whether the user likes it, all at once.
+     *
+     * @param postId      The ID of the post.
+     * @param commentPage The page of comments to load.
+     * @param username    The username of the user viewing the post.
+     * @return An {@link Optional} containing the {@link PostResponse}, or empty if the post does not exist.
+     * @throws ResponseStatusException with status {@link HttpStatus#SERVICE_UNAVAILABLE} if the post could not be
+     *                                 loaded in time.
+     */
+    Optional<PostResponse> assemble(Long postId, Pageable commentPage, String username) {
+        CompletableFuture<Optional<PostProjection>> post = lookup(() -> postRepository.findPostById(postId));
+        CompletableFuture<Set<String>> hashtags = lookup(
+                () -> postRepository.findHashtagsByPostId(postId)
+        ).exceptionally(e -> fallback("hashtags", postId, e, Set.of()));
+        CompletableFuture<Page<CommentProjection>> comments = lookup(
+                () -> commentRepository.findByPostIdOrderByDateDesc(postId, commentPage)
+        ).exceptionally(e -> fallback("comments", postId, e, Page.empty(commentPage)));
+        CompletableFuture<Boolean> liked = lookup(
+                () -> postRepository.existsLikedPostByUser(postId, username)
+        ).exceptionally(e -> fallback("like status", postId, e, false));
+
+        Optional<PostProjection> postProjection;
+        try {
+            postProjection = post.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Post " + postId + " timed out", e);
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+
+        return postProjection.map(projection -> new PostResponse(
+                projection.getUploaderPhoto(),
+                hashtags.join(),
+                projection.getImage(),
+                projection.getTimeUntilNow(),
+                projection.getDescription(),
+                comments.join(),
+                likeAggregator.likeCount(postId, projection.getLikeCount()),
+                likeAggregator.isLiked(postId, username, liked.join())
+        ));
+    }
+
+    /**
+     * Starts a lookup on the executor, bounded by the timeout, in a transaction bounding its queries.
+     * If the executor is saturated, the lookup runs on the calling thread instead.
+     *
+     * @param query The lookup to run.
+     * @param <T>   The type of the result of the lookup.
+     * @return A future completed with the result of the lookup, or exceptionally if it failed or timed out.
+     */
+    private <T> CompletableFuture<T> lookup(Supplier<T> lookup) {
+        Supplier<T> query = () -> lookupTransaction.execute(status -> lookup.get());
+        try {
+            return CompletableFuture
+                    .supplyAsync(query, queryExecutor)
+                    .orTimeout(timeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            try {
+                return CompletableFuture.completedFuture(query.get());
+            } catch (RuntimeException failure) {
+                return CompletableFuture.failedFuture(failure);
+            }
+        }
+    }
+
+    /**
+     * Logs the failure of an optional lookup and returns its default.
+     *
+     * @param name     The name of the lookup.
+     * @param postId   The ID of the post.
+     * @param failure  The failure of the lookup.
+     * @param fallback The default to use in place of its result.
+     * @param <T>      The type of the result of the lookup.
+     * @return The default.
+     */
+    private static <T> T fallback(String name, Long postId, Throwable failure, T fallback) {
+        logger.warn("Could not load the {} of post {}, responding without them", name, postId, failure);
+        return fallback;
+    }
+}
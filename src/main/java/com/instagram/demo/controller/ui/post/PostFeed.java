@@ -0,0 +1,17 @@
+package com.instagram.demo.controller.ui.post;
+
+import com.instagram.demo.data.projection.post.PostFeedProjection;
+
+/**
+ * Represents a post for feed.
+ * This record contains information about a post suitable for displaying in a feed.
+ *
+ * @param postFeedProjection The projection of the post.
+ * @param likesCount         The number of likes received by the post.
+ * @param commentCounts      The number of comments made on the post.
+ */
+record PostFeed(PostFeedProjection postFeedProjection,
+                Long likesCount,
+                Long commentCounts,
+                Boolean like) {
+}
@@ -0,0 +1,75 @@
+package com.instagram.demo.controller.ui.post;
+
+import com.instagram.demo.data.projection.post.PostFeedProjection;
+import com.instagram.demo.data.repository.PostRepository;
+import com.instagram.demo.service.like.LikeAggregator;
+import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Hydrates a slice of feed posts with their "liked by me" flags.
+ * Instead of issuing one query per post, the whole page is resolved with a single query keyed by post ID,
+ * so the number of round-trips does not depend on the page size.
+ * Like and comment counts are read from the denormalized columns of the post itself.
+ * Likes pending in the {@link LikeAggregator} are overlaid on the like counts and flags.
+ */
+@Component
+@AllArgsConstructor
+class PostFeedHydrator {
+    /**
+     * Repository for performing CRUD operations on posts.
+     */
+    private final PostRepository postRepository;
+
+    /**
+     * Aggregator holding the likes not yet written to the database.
+     */
+    private final LikeAggregator likeAggregator;
+
+    /**
+     * Maps a slice of post feed projections to a slice of {@link PostFeed} objects.
+     *
+     * @param slice    The slice of post feed projections to hydrate.
+     * @param username The username of the user viewing the feed.
+     * @return A slice of {@link PostFeed} objects in the same order as {@code slice}.
+     */
+    Slice<PostFeed> hydrate(Slice<PostFeedProjection> slice, String username) {
+        return slice.map(hydrator(slice.getContent(), username));
+    }
+
+    /**
+     * Loads the like statuses of the given posts and returns the function building their {@link PostFeed}.
+     *
+     * @param posts    The post feed projections to hydrate.
+     * @param username The username of the user viewing the feed.
+     * @return A function mapping each of {@code posts} to its {@link PostFeed}.
+     */
+    private Function<PostFeedProjection, PostFeed> hydrator(List<PostFeedProjection> posts, String username) {
+        if (posts.isEmpty()) {
+            return postFeedProjection -> null;
+        }
+
+        List<Long> postIds = posts
+                .stream()
+                .map(PostFeedProjection::getId)
+                .toList();
+
+        Set<Long> likedPostIds = postRepository.findLikedPostIdsByUser(postIds, username);
+
+        return postFeedProjection -> new PostFeed(
+                postFeedProjection,
+                likeAggregator.likeCount(postFeedProjection.getId(), postFeedProjection.getLikeCount()),
+                postFeedProjection.getCommentCount(),
+                likeAggregator.isLiked(
+                        postFeedProjection.getId(),
+                        username,
+                        likedPostIds.contains(postFeedProjection.getId())
+                )
+        );
+    }
+}
@@ -0,0 +1,13 @@
+package com.instagram.demo.controller.ui.post;
+
+/**
+ * Represents a preview of a post.
+ * This record contains essential information about a post that is suitable for displaying in a preview format.
+ *
+ * @param id            The ID of the post.
+ * @param image         The URL or path to the image associated with the post.
+ * @param likesCount    The number of likes received by the post.
+ * @param commentCounts The number of comments made on the post.
+ */
+record PostPreview(Long id, String image, Long likesCount, Long commentCounts) {
+}
@@ -0,0 +1,28 @@
+package com.instagram.demo.controller.ui.post;
+
+import com.instagram.demo.data.projection.comment.CommentProjection;
+import org.springframework.data.domain.Page;
+
+import java.util.Set;
+
+/**
+ * Represents a detailed response for a post.
+ * This record contains comprehensive information about a post, including its image, description, hashtags, comments, and likes.
+ *
+ * @param photo        The URL or path to the uploader's photo.
+ * @param hashtags     The set of hashtags associated with the post.
+ * @param image        The URL or path to the image associated with the post.
+ * @param timeUntilNow The time elapsed since the post was made.
+ * @param description  The description or caption of the post.
+ * @param comments     The page containing comments associated with the post.
+ * @param likesCount   The total number of likes received by the post.
+ */
+record PostResponse(String photo,
+                    Set<String> hashtags,
+                    String image,
+                    Long timeUntilNow,
+                    String description,
+                    Page<CommentProjection> comments,
+                    Long likesCount,
+                    Boolean like) {
+}
@@ -0,0 +1,169 @@
+package com.instagram.demo.controller.ui.search;
+
+import com.instagram.demo.data.projection.person.PersonSearchResult;
+import com.instagram.demo.data.projection.post.PostPreviewProjection;
+import com.instagram.demo.data.repository.PersonRepository;
+import com.instagram.demo.data.repository.PostRepository;
+import com.instagram.demo.service.like.LikeAggregator;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Represents a post found by a search.
+ *
+ * @param id            The ID of the post.
+ * @param image         The URL or path to the image associated with the post.
+ * @param likesCount    The number of likes received by the post.
+ * @param commentCounts The number of comments made on the post.
+ */
+record PostSearchResult(Long id, String image, Long likesCount, Long commentCounts) {
+}
+
+/**
+ * Controller class for searching people, hashtags and posts.
+ * The searches are case-insensitive and served by the indexes created in {@code V2__search_indexes.sql},
+ * which the database keeps up to date as people and posts are created, edited and deleted.
+ */
+@RestController
+@RequestMapping(path = "/search/", produces = "application/json")
+@AllArgsConstructor
+public class SearchController {
+    /**
+     * Maximum number of results that can be requested in a single search.
+     */
+    static final int MAX_LIMIT = 50;
+
+    /**
+     * Minimum length of a text searched in post descriptions, below which the trigram index cannot be used.
+     */
+    static final int MIN_DESCRIPTION_QUERY_LENGTH = 3;
+
+    /**
+     * Repository for performing CRUD operations on persons (users).
+     */
+    private final PersonRepository personRepository;
+
+    /**
+     * Repository for performing CRUD operations on posts.
+     */
+    private final PostRepository postRepository;
+
+    /**
+     * Aggregator of the likes not flushed to the post counts yet.
+     */
+    private final LikeAggregator likeAggregator;
+
+    /**
+     * Searches people whose username, first name or last name starts with the query, for typeahead.
+     *
+     * @param query The beginning of the name.
+     * @param limit The maximum number of people, capped at {@link #MAX_LIMIT}.
+     * @return A list of {@link PersonSearchResult}, people matching by username first.
+     */
+    @GetMapping("users")
+    List<PersonSearchResult> users(@RequestParam String query,
+                                   @RequestParam(defaultValue = "10", required = false) Integer limit) {
+        String prefix = normalize(query);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        return personRepository.searchByNamePrefix(escapeLike(prefix) + "%", boundedLimit(limit));
+    }
+
+    /**
+     * Searches the hashtags starting with the query, for typeahead.
+     *
+     * @param query The beginning of the hashtag, with or without {@code #}.
+     * @param limit The maximum number of hashtags, capped at {@link #MAX_LIMIT}.
+     * @return The lowercase hashtags, in alphabetical order.
+     */
+    @GetMapping("hashtags")
+    List<String> hashtags(@RequestParam String query,
+                          @RequestParam(defaultValue = "10", required = false) Integer limit) {
+        String prefix = normalizeHashtag(query);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        return postRepository.searchHashtagsByPrefix(escapeLike(prefix) + "%", boundedLimit(limit));
+    }
+
+    /**
+     * Searches the most recent posts tagged with a hashtag.
+     *
+     * @param hashtag The hashtag, with or without {@code #}.
+     * @param limit   The maximum number of posts, capped at {@link #MAX_LIMIT}.
+     * @return A list of {@link PostSearchResult}, from the most recent post.
+     */
+    @GetMapping("posts/hashtag/{hashtag}")
+    List<PostSearchResult> postsByHashtag(@PathVariable String hashtag,
+                                          @RequestParam(defaultValue = "10", required = false) Integer limit) {
+        String tag = normalizeHashtag(hashtag);
+        if (tag.isEmpty()) {
+            return List.of();
+        }
+        return toResults(postRepository.searchByHashtag(tag, boundedLimit(limit)));
+    }
+
+    /**
+     * Searches the most recent posts whose description contains the query.
+     *
+     * @param query The text to look for, at least {@link #MIN_DESCRIPTION_QUERY_LENGTH} characters long,
+     *              or nothing is found.
+     * @param limit The maximum number of posts, capped at {@link #MAX_LIMIT}.
+     * @return A list of {@link PostSearchResult}, from the most recent post.
+     */
+    @GetMapping("posts")
+    List<PostSearchResult> postsByDescription(@RequestParam String query,
+                                              @RequestParam(defaultValue = "10", required = false) Integer limit) {
+        String text = query.strip();
+        if (text.length() < MIN_DESCRIPTION_QUERY_LENGTH) {
+            return List.of();
+        }
+        return toResults(postRepository.searchByDescription("%" + escapeLike(text) + "%", boundedLimit(limit)));
+    }
+
+    private List<PostSearchResult> toResults(List<PostPreviewProjection> projections) {
+        return projections.stream()
+                .map(projection -> new PostSearchResult(projection.getId(),
+                        projection.getImage(),
+                        likeAggregator.likeCount(projection.getId(), projection.getLikeCount()),
+                        projection.getCommentCount()))
+                .toList();
+    }
+
+    private static String normalize(String query) {
+        return query.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private static String normalizeHashtag(String query) {
+        String hashtag = normalize(query);
+        return hashtag.startsWith("#") ? hashtag.substring(1) : hashtag;
+    }
+
+    /**
+     * Escapes the LIKE wildcards of a text, so that it is matched literally.
+     *
+     * @param text The text to escape.
+     * @return The text with {@code \}, {@code %} and {@code _} escaped.
+     */
+    static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Clamps a requested number of results between 1 and {@link #MAX_LIMIT}.
+     *
+     * @param limit The requested number of results.
+     * @return The number of results to use.
+     */
+    private static int boundedLimit(Integer limit) {
+        return Math.min(Math.max(limit, 1), MAX_LIMIT);
+    }
+}
@@ -0,0 +1,60 @@
+package com.instagram.demo.controller.ui.trending;
+
+import com.google.gson.Gson;
+import com.instagram.demo.service.trending.TrendingHashtagService;
+import com.instagram.demo.service.trending.TrendingWindow;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Locale;
+
+/**
+ * Controller class for the trending content.
+ * The rankings are computed in memory by {@link TrendingHashtagService}, without querying the database.
+ */
+@RestController
+@RequestMapping(path = "/trending/", produces = "application/json")
+@AllArgsConstructor
+public class TrendingController {
+    /**
+     * Maximum number of hashtags that can be requested at once.
+     */
+    static final int MAX_LIMIT = 50;
+
+    /**
+     * Service ranking the trending hashtags.
+     */
+    private final TrendingHashtagService trendingHashtagService;
+
+    /**
+     * Gson instance used for JSON serialization and deserialization.
+     */
+    private final Gson gson;
+
+    /**
+     * Retrieves the hashtags most posted and liked over the last hour or day.
+     *
+     * @param window The window, {@code hour} or {@code day}.
+     * @param limit  The maximum number of hashtags, capped at {@link #MAX_LIMIT}.
+     * @return A response with the {@link com.instagram.demo.service.trending.TrendingHashtag} list from the most
+     * trending, or {@link HttpStatus#BAD_REQUEST} if the window is unknown.
+     */
+    @GetMapping("hashtags")
+    ResponseEntity<?> hashtags(@RequestParam(defaultValue = "hour", required = false) String window,
+                               @RequestParam(defaultValue = "10", required = false) Integer limit) {
+        TrendingWindow trendingWindow;
+        try {
+            trendingWindow = TrendingWindow.valueOf(window.strip().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(gson.toJson("Unknown window: " + window));
+        }
+        return ResponseEntity.ok(trendingHashtagService.top(trendingWindow, Math.min(Math.max(limit, 1), MAX_LIMIT)));
+    }
+}
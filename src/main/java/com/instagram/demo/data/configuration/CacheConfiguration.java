@@ -0,0 +1,63 @@
+package com.instagram.demo.data.configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Enables the local read cache placed in front of the most frequently read repository methods.
+ * The caches are Caffeine caches created at startup from {@code spring.cache.cache-names}, bounded in size and time
+ * by {@code spring.cache.caffeine.spec}, except {@link #PERSON_CREDENTIALS}, which is bounded by its own
+ * {@code security.credentials.cache.*} properties, and their hit, miss and eviction statistics are published as
+ * {@code cache.*} metrics on the actuator.
+ * Entries are evicted by {@link com.instagram.demo.service.cache.CacheInvalidator} whenever the data they hold changes.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+    /**
+     * Cache of person projections by username.
+     */
+    public static final String PERSON_INFO = "personInfo";
+
+    /**
+     * Cache of followers, followings and posts counts, keyed by the name of the count and the username.
+     */
+    public static final String PERSON_STATS = "personStats";
+
+    /**
+     * Cache of post projections by post ID.
+     */
+    public static final String POST_DETAIL = "postDetail";
+
+    /**
+     * Cache of post hashtags by post ID.
+     */
+    public static final String POST_HASHTAGS = "postHashtags";
+
+    /**
+     * Cache of person credentials by username, read on every login.
+     */
+    public static final String PERSON_CREDENTIALS = "personCredentials";
+
+    /**
+     * Registers the credentials cache, whose entries expire sooner than the others,
+     * so that a password hash does not stay in memory longer than the logins it serves.
+     */
+    @Bean
+    CacheManagerCustomizer<CaffeineCacheManager> credentialsCacheCustomizer(
+            @Value("${security.credentials.cache.maximum-size:10000}") long maximumSize,
+            @Value("${security.credentials.cache.expire-after-write:30000}") long expireAfterWrite) {
+        return cacheManager -> cacheManager.registerCustomCache(PERSON_CREDENTIALS, Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(expireAfterWrite))
+                .recordStats()
+                .build());
+    }
+}
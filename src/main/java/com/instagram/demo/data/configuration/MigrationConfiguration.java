@@ -0,0 +1,23 @@
+package com.instagram.demo.data.configuration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Recreates the database from its migrations at startup ({@code database.recreate-on-start}), as development,
+ * the tests and the benchmarks expect a database holding only the sample data of {@code db/sample}.
+ * Disabled in production, where Flyway only applies the migrations of {@code db/migration} not applied yet.
+ */
+@Configuration
+@ConditionalOnProperty(name = "database.recreate-on-start", havingValue = "true")
+public class MigrationConfiguration {
+    @Bean
+    FlywayMigrationStrategy recreateMigrationStrategy() {
+        return flyway -> {
+            flyway.clean();
+            flyway.migrate();
+        };
+    }
+}
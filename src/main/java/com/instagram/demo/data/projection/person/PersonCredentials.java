@@ -0,0 +1,21 @@
+package com.instagram.demo.data.projection.person;
+
+/**
+ * This interface represents a projection of a person entity used to verify their credentials,
+ * providing only the email and the password hash of the person.
+ */
+public interface PersonCredentials {
+    /**
+     * Gets the email of the person.
+     *
+     * @return The email of the person.
+     */
+    String getEmail();
+
+    /**
+     * Gets the password hash of the person.
+     *
+     * @return The password hash of the person.
+     */
+    String getPassword();
+}
@@ -0,0 +1,35 @@
+package com.instagram.demo.data.projection.person;
+
+/**
+ * This interface represents a projection of a person entity returned by the user search,
+ * providing the username, the photo URL and the names of the person.
+ */
+public interface PersonSearchResult {
+    /**
+     * Gets the username of the person.
+     *
+     * @return The username of the person.
+     */
+    String getUsername();
+
+    /**
+     * Gets the photo URL of the person.
+     *
+     * @return The photo URL of the person.
+     */
+    String getPhoto();
+
+    /**
+     * Gets the first name of the person.
+     *
+     * @return The first name of the person.
+     */
+    String getFirstname();
+
+    /**
+     * Gets the last name of the person.
+     *
+     * @return The last name of the person.
+     */
+    String getLastname();
+}
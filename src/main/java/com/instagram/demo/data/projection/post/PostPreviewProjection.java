@@ -5,5 +5,7 @@ import java.time.LocalDateTime;
 public interface PostPreviewProjection {
     Long getId();
     String getImage();
-//    LocalDateTime getDate();
+    LocalDateTime getDate();
+    Long getLikeCount();
+    Long getCommentCount();
 }
@@ -16,4 +16,8 @@ public interface PostProjection {
 
     String getUploaderPhoto();
 
+    Long getLikeCount();
+
+    Long getCommentCount();
+
 }
@@ -2,13 +2,82 @@ package com.instagram.demo.data.repository;
 
 import com.instagram.demo.data.projection.comment.CommentProjection;
 import com.instagram.demo.data.schema.Comment;
+import jakarta.transaction.Transactional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
 
 
 public interface CommentRepository extends CrudRepository<Comment, Long> {
     // Counts number of comments under a given post given its image url
     long countByPostId(Long id);
     Page<CommentProjection> findByPostIdOrderByDateDesc(Long postId, Pageable pageable);
+
+    /**
+     * Finds a slice of the comments under a post, starting right after a keyset cursor,
+     * ordered by date and ID descending. No count query is issued.
+     *
+     * @param postId   The ID of the post.
+     * @param date     The date of the last comment of the previous slice.
+     * @param id       The ID of the last comment of the previous slice.
+     * @param pageable The pagination information, whose page number must be 0.
+     * @return A slice of comment projections ordered by date and ID descending.
+     */
+    @Query("SELECT c.id AS id, c.date AS date, c.comment AS comment, " +
+            "c.author.username AS authorUsername, c.author.photo AS authorPhoto " +
+            "FROM Comment c " +
+            "WHERE c.post.id = :postId " +
+            "AND (c.date < :date OR (c.date = :date AND c.id < :id)) " +
+            "ORDER BY c.date DESC, c.id DESC")
+    Slice<CommentProjection> findByPostIdBefore(@Param("postId") Long postId,
+                                                @Param("date") LocalDateTime date,
+                                                @Param("id") Long id,
+                                                Pageable pageable);
+
+    /**
+     * Updates the content of a comment, provided it was written by the given user.
+     * The ownership check and the update are a single statement, so the comment is never loaded.
+     *
+     * @param commentId The ID of the comment.
+     * @param username  The username of the user editing the comment.
+     * @param content   The new content.
+     * @return 1 if the comment was updated, 0 if it does not exist or was written by someone else.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE comment c SET comment = :content " +
+            "FROM person u " +
+            "WHERE c.id = :commentId AND c.author_id = u.id AND u.username = :username",
+            nativeQuery = true)
+    int updateOwnedComment(@Param("commentId") Long commentId,
+                           @Param("username") String username,
+                           @Param("content") String content);
+
+    /**
+     * Deletes a comment and decrements the comment count of its post, provided it was written by the given user.
+     * The ownership check, the delete and the decrement are a single statement, so the comment is never loaded.
+     *
+     * @param commentId The ID of the comment.
+     * @param username  The username of the user deleting the comment.
+     * @return An {@link Optional} containing the ID of the post of the deleted comment,
+     * or empty if the comment does not exist or was written by someone else.
+     */
+    @Transactional
+    @Query(value = "WITH deleted AS ( " +
+            "    DELETE FROM comment c USING person u " +
+            "    WHERE c.id = :commentId AND c.author_id = u.id AND u.username = :username " +
+            "    RETURNING c.post_id " +
+            ") " +
+            "UPDATE post p SET comment_count = p.comment_count - 1 " +
+            "FROM deleted d WHERE p.id = d.post_id " +
+            "RETURNING p.id",
+            nativeQuery = true)
+    Optional<Long> deleteOwnedComment(@Param("commentId") Long commentId, @Param("username") String username);
 }
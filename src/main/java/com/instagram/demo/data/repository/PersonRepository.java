@@ -1,15 +1,20 @@
 package com.instagram.demo.data.repository;
 
+import com.instagram.demo.data.configuration.CacheConfiguration;
+import com.instagram.demo.data.projection.person.PersonCredentials;
 import com.instagram.demo.data.projection.person.PersonFeed;
 import com.instagram.demo.data.projection.person.PersonProjection;
+import com.instagram.demo.data.projection.person.PersonSearchResult;
 import com.instagram.demo.data.projection.person.PersonSuggestion;
 import com.instagram.demo.data.schema.Person;
 import jakarta.transaction.Transactional;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -26,28 +31,53 @@ public interface PersonRepository extends CrudRepository<Person, Long> {
      */
     Optional<Person> findFirstByUsername(String username);
 
+    /**
+     * Finds the credentials of a person by the given username, without loading the person entity.
+     * The credentials, or their absence, are cached for a short time, until the person registers,
+     * is updated or is deleted.
+     *
+     * @param username The username of the person.
+     * @return An {@link Optional} containing the credentials of the person, or empty if not found.
+     */
+    @Cacheable(cacheNames = CacheConfiguration.PERSON_CREDENTIALS, key = "#p0")
+    Optional<PersonCredentials> findCredentialsByUsername(String username);
+
     /**
      * Finds a person projection by the given username.
+     * The projection, or its absence, is cached until the person registers, is updated or is deleted.
      *
      * @param username The username of the person to find.
      * @return An {@link Optional} containing the found person projection, or empty if not found.
      */
+    @Cacheable(cacheNames = CacheConfiguration.PERSON_INFO, key = "#p0")
     Optional<PersonProjection> findByUsername(String username);
 
+    /**
+     * Finds the ID of a person by the given username.
+     *
+     * @param username The username of the person to find.
+     * @return An {@link Optional} containing the {@link PersonFeed} holding the ID, or empty if not found.
+     */
+    Optional<PersonFeed> findIdByUsername(String username);
+
     /**
      * Counts the number of people followed by the given user.
+     * The count is cached until the user follows or unfollows someone.
      *
      * @param username The username of the user whose followed count is to be counted.
      * @return The number of people followed by the user.
      */
+    @Cacheable(cacheNames = CacheConfiguration.PERSON_STATS, key = "'followings:' + #p0")
     long countByFollowersUsername(String username);
 
     /**
      * Counts the number of people following the given user.
+     * The count is cached until someone follows or unfollows the user.
      *
      * @param username The username of the user whose followers count is to be counted.
      * @return The number of people following the user.
      */
+    @Cacheable(cacheNames = CacheConfiguration.PERSON_STATS, key = "'followers:' + #p0")
     @Query("SELECT COUNT(u) FROM Person u JOIN u.followees f WHERE f.username = :username")
     long countFollowersByUsername(@Param("username") String username);
 
@@ -70,25 +100,139 @@ public interface PersonRepository extends CrudRepository<Person, Long> {
     Set<PersonFeed> findByFollowersUsername(String username);
 
     /**
-     * Finds three random users not followed by the given user.
+     * Finds the IDs of the people having at least the given number of followers.
+     *
+     * @param threshold The minimum number of followers.
+     * @return A set containing the IDs of the matching people.
+     */
+    @Query(value = "SELECT followees_id FROM person_followers GROUP BY followees_id HAVING COUNT(*) >= :threshold",
+            nativeQuery = true)
+    Set<Long> findIdsWithFollowersCountAtLeast(@Param("threshold") long threshold);
+
+    /**
+     * Finds, among the given people, the IDs of those followed by a user.
+     *
+     * @param followerId  The ID of the follower.
+     * @param followeeIds The IDs of the people to check.
+     * @return The subset of {@code followeeIds} followed by the user.
+     */
+    @Query(value = "SELECT followees_id FROM person_followers " +
+            "WHERE followers_id = :followerId AND followees_id IN (:followeeIds)",
+            nativeQuery = true)
+    Set<Long> findFolloweeIdsAmong(@Param("followerId") Long followerId,
+                                   @Param("followeeIds") Collection<Long> followeeIds);
+
+    /**
+     * Finds the friends of friends that a user does not follow yet, as suggestions.
+     * The people followed by the people the user follows are scored by their number of mutual follows,
+     * weighted by the logarithm of their follower count, and the best scored are returned.
+     * Only twice as many people as requested, those with the most mutual follows, have their followers counted.
+     *
+     * @param username The username of the user for whom suggestions are to be found.
+     * @param limit    The maximum number of suggestions.
+     * @return A list of {@link PersonSuggestion} ordered by descending score.
+     */
+    @Query(value = "WITH me AS (SELECT id FROM person WHERE username = :username), " +
+            "mutuals AS ( " +
+            "    SELECT f2.followees_id AS id, COUNT(*) AS mutuals " +
+            "    FROM me " +
+            "    JOIN person_followers f1 ON f1.followers_id = me.id " +
+            "    JOIN person_followers f2 ON f2.followers_id = f1.followees_id " +
+            "    WHERE f2.followees_id <> me.id " +
+            "    AND f2.followees_id NOT IN ( " +  // Hashed once, rather than probed for every friend of friend
+            "        SELECT f3.followees_id FROM person_followers f3 WHERE f3.followers_id = (SELECT id FROM me) " +
+            "    ) " +
+            "    GROUP BY f2.followees_id " +
+            "    ORDER BY mutuals DESC " +
+            "    LIMIT :limit * 2 " +
+            ") " +
+            "SELECT p.username AS username, p.photo AS photo " +
+            "FROM mutuals m " +
+            "JOIN person p ON p.id = m.id " +
+            "CROSS JOIN LATERAL ( " +  // Followers are counted up to 100, past which the weight hardly grows
+            "    SELECT COUNT(*) AS followers " +
+            "    FROM (SELECT 1 FROM person_followers f WHERE f.followees_id = m.id LIMIT 100) f " +
+            ") c " +
+            "ORDER BY m.mutuals * LN(2 + c.followers) DESC " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<PersonSuggestion> findFriendsOfFriendsSuggestions(@Param("username") String username,
+                                                           @Param("limit") int limit);
+
+    /**
+     * Finds, among the given people, those a user does not follow yet, as suggestions.
+     *
+     * @param username  The username of the user for whom suggestions are to be found.
+     * @param personIds The IDs of the people to suggest.
+     * @return A list of {@link PersonSuggestion} representing the people not followed by the user.
+     */
+    @Query(value = "SELECT p.username AS username, p.photo AS photo " +
+            "FROM person p " +
+            "WHERE p.id IN (:personIds) AND p.username <> :username " +
+            "AND NOT EXISTS ( " +
+            "    SELECT 1 FROM person_followers f JOIN person me ON me.id = f.followers_id " +
+            "    WHERE f.followees_id = p.id AND me.username = :username " +
+            ")",
+            nativeQuery = true)
+    List<PersonSuggestion> findSuggestionsAmong(@Param("username") String username,
+                                                @Param("personIds") Collection<Long> personIds);
+
+    /**
+     * Finds the newest users a user does not follow yet, as suggestions.
+     * The users are read backwards along the primary key, so that no sort is needed.
      *
-     * @param username The username of the user for whom random users are to be found.
-     * @return A list of {@link PersonSuggestion} representing three random users not followed by the given user.
+     * @param username The username of the user for whom suggestions are to be found.
+     * @param limit    The maximum number of suggestions.
+     * @return A list of {@link PersonSuggestion} ordered from the newest user.
      */
-    @Query(value = "SELECT * " +
-            "FROM person " +
-            "WHERE username <> ?1 " +  // Exclude the given user
-            "AND username NOT IN ( " +
-            "    SELECT p.username " +
-            "    FROM person_followers pf " +
-            "    JOIN person p ON pf.followees_id = p.id " +
-            "    JOIN person f ON pf.followers_id = f.id " +
-            "    WHERE f.username = ?1 " +  // Check if the user is not followed
+    @Query(value = "SELECT p.username AS username, p.photo AS photo " +
+            "FROM person p " +
+            "WHERE p.username <> :username " +
+            "AND NOT EXISTS ( " +
+            "    SELECT 1 FROM person_followers f JOIN person me ON me.id = f.followers_id " +
+            "    WHERE f.followees_id = p.id AND me.username = :username " +
             ") " +
-            "ORDER BY RANDOM() " +  // Random ordering
-            "LIMIT 3",
+            "ORDER BY p.id DESC " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<PersonSuggestion> findNewestSuggestions(@Param("username") String username, @Param("limit") int limit);
+
+    /**
+     * Finds the IDs of the most followed people.
+     *
+     * @param limit The maximum number of people.
+     * @return The IDs of the people, from the most followed.
+     */
+    @Query(value = "SELECT followees_id FROM person_followers GROUP BY followees_id ORDER BY COUNT(*) DESC LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findMostFollowedIds(@Param("limit") int limit);
+
+    /**
+     * Searches people whose username, first name or last name starts with a prefix, ignoring case.
+     * Each name is searched through its own index in index order, so that only the first {@code limit} entries
+     * of each are read, and people matching by username come first.
+     *
+     * @param pattern The lowercase prefix, escaped for LIKE and followed by {@code %}.
+     * @param limit   The maximum number of people.
+     * @return A list of {@link PersonSearchResult}, ordered by kind of match then username.
+     */
+    @Query(value = "SELECT p.username AS username, p.photo AS photo, p.firstname AS firstname, p.lastname AS lastname " +
+            "FROM ( " +
+            "    (SELECT id, 0 AS rank FROM person WHERE lower(username) COLLATE \"C\" LIKE :pattern " +
+            "     ORDER BY lower(username) COLLATE \"C\" LIMIT :limit) " +
+            "    UNION ALL " +
+            "    (SELECT id, 1 FROM person WHERE lower(firstname) COLLATE \"C\" LIKE :pattern " +
+            "     ORDER BY lower(firstname) COLLATE \"C\" LIMIT :limit) " +
+            "    UNION ALL " +
+            "    (SELECT id, 1 FROM person WHERE lower(lastname) COLLATE \"C\" LIKE :pattern " +
+            "     ORDER BY lower(lastname) COLLATE \"C\" LIMIT :limit) " +
+            ") m " +
+            "JOIN person p ON p.id = m.id " +
+            "GROUP BY p.id " +
+            "ORDER BY MIN(m.rank), lower(p.username) " +
+            "LIMIT :limit",
             nativeQuery = true)
-    List<PersonSuggestion> findThreeRandomUsersNotFollowedByUser(String username);
+    List<PersonSearchResult> searchByNamePrefix(@Param("pattern") String pattern, @Param("limit") int limit);
 
     @Query("SELECT CASE WHEN COUNT(f) > 0 THEN TRUE ELSE FALSE END " +
             "FROM Person f " +
@@ -99,6 +243,30 @@ public interface PersonRepository extends CrudRepository<Person, Long> {
             @Param("followeeUsername") String followeeUsername
     );
 
+    /**
+     * Toggles the followship between two people in a single statement.
+     * The followship is deleted if it exists, inserted otherwise.
+     *
+     * @param followerId The ID of the follower.
+     * @param followeeId The ID of the followed person.
+     * @return 1 if the follower now follows the followee, -1 if they no longer do,
+     * 0 if nothing changed because a concurrent toggle created the followship first.
+     */
+    @Transactional
+    @Query(value = "WITH deleted AS ( " +
+            "    DELETE FROM person_followers " +
+            "    WHERE followers_id = :followerId AND followees_id = :followeeId " +
+            "    RETURNING followees_id " +
+            "), inserted AS ( " +
+            "    INSERT INTO person_followers (followers_id, followees_id) " +
+            "    SELECT :followerId, :followeeId WHERE NOT EXISTS (SELECT 1 FROM deleted) " +
+            "    ON CONFLICT DO NOTHING " +
+            "    RETURNING followees_id " +
+            ") " +
+            "SELECT (SELECT COUNT(*) FROM inserted) - (SELECT COUNT(*) FROM deleted)",
+            nativeQuery = true)
+    long toggleFollow(@Param("followerId") Long followerId, @Param("followeeId") Long followeeId);
+
     /**
      * Deletes rows from the "person_liked_posts" table where the "likers_id" column matches the provided ID.
      * This method is transactional and modifies the database.
@@ -110,6 +278,18 @@ public interface PersonRepository extends CrudRepository<Person, Long> {
     @Query(value = "DELETE FROM person_liked_posts WHERE likers_id = :likersId", nativeQuery = true)
     void deleteLikesById(@Param("likersId") Long id);
 
+    /**
+     * Finds the usernames of the followers and followees of a person.
+     *
+     * @param id The ID of the person.
+     * @return The usernames of the people following or followed by the person.
+     */
+    @Query(value = "SELECT p.username FROM person p JOIN person_followers f ON p.id = f.followers_id WHERE f.followees_id = :id " +
+            "UNION " +
+            "SELECT p.username FROM person p JOIN person_followers f ON p.id = f.followees_id WHERE f.followers_id = :id",
+            nativeQuery = true)
+    Set<String> findConnectedUsernamesById(@Param("id") Long id);
+
     /**
      * Deletes rows from the "person_followers" table where the "followees_id" or "followers_id" column matches the provided ID.
      * This method is transactional and modifies the database.
@@ -1,17 +1,23 @@
 package com.instagram.demo.data.repository;
 
+import com.instagram.demo.data.configuration.CacheConfiguration;
 import com.instagram.demo.data.projection.post.PostFeedProjection;
 import com.instagram.demo.data.projection.post.PostPreviewProjection;
 import com.instagram.demo.data.projection.post.PostProjection;
 import com.instagram.demo.data.schema.Post;
 import jakarta.transaction.Transactional;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -21,10 +27,12 @@ import java.util.Set;
 public interface PostRepository extends CrudRepository<Post, Long> {
     /**
      * Counts the number of posts uploaded by a specific user given its username.
+     * The count is cached until the user creates or deletes a post.
      *
      * @param username The username of the uploader.
      * @return The number of posts uploaded by the user.
      */
+    @Cacheable(cacheNames = CacheConfiguration.PERSON_STATS, key = "'posts:' + #p0")
     long countByUploaderUsername(String username);
 
 
@@ -37,23 +45,166 @@ public interface PostRepository extends CrudRepository<Post, Long> {
      */
     Page<PostPreviewProjection> findPostsByUploaderUsernameOrderByDateDesc(String username, Pageable pageable);
 
+    /**
+     * Finds a slice of post preview projections uploaded by a specific user, starting right after a keyset cursor,
+     * ordered by date and ID descending. No count query is issued.
+     *
+     * @param username The username of the uploader.
+     * @param date     The date of the last post of the previous slice.
+     * @param id       The ID of the last post of the previous slice.
+     * @param pageable The pagination information, whose page number must be 0.
+     * @return A slice of post preview projections ordered by date and ID descending.
+     */
+    @Query("SELECT p.id AS id, p.image AS image, p.date AS date, " +
+            "p.likeCount AS likeCount, p.commentCount AS commentCount " +
+            "FROM Post p " +
+            "WHERE p.uploader.username = :username " +
+            "AND (p.date < :date OR (p.date = :date AND p.id < :id)) " +
+            "ORDER BY p.date DESC, p.id DESC")
+    Slice<PostPreviewProjection> findPostsByUploaderUsernameBefore(@Param("username") String username,
+                                                                   @Param("date") LocalDateTime date,
+                                                                   @Param("id") Long id,
+                                                                   Pageable pageable);
+
+    /**
+     * Updates the description and the image of a post, provided it was uploaded by the given user.
+     * The ownership check and the update are a single statement, so the post is never loaded.
+     *
+     * @param postId      The ID of the post.
+     * @param username    The username of the user editing the post.
+     * @param description The new description.
+     * @param image       The new image.
+     * @return 1 if the post was updated, 0 if it does not exist or was uploaded by someone else.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE post p SET description = :description, image = :image " +
+            "FROM person u " +
+            "WHERE p.id = :postId AND p.uploader_id = u.id AND u.username = :username",
+            nativeQuery = true)
+    int updateOwnedPost(@Param("postId") Long postId,
+                        @Param("username") String username,
+                        @Param("description") String description,
+                        @Param("image") String image);
+
+    /**
+     * Deletes a post along with its comments, likes, hashtags and timeline entries,
+     * provided it was uploaded by the given user.
+     * The ownership check and the deletes are a single statement, whose foreign keys are checked once it has run.
+     * The post row is locked first, so that no like or comment can be added to it meanwhile.
+     *
+     * @param postId   The ID of the post.
+     * @param username The username of the user deleting the post.
+     * @return 1 if the post was deleted, 0 if it does not exist or was uploaded by someone else.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "WITH owned AS ( " +
+            "    SELECT p.id FROM post p JOIN person u ON u.id = p.uploader_id " +
+            "    WHERE p.id = :postId AND u.username = :username " +
+            "    FOR UPDATE OF p " +
+            "), comments AS ( " +
+            "    DELETE FROM comment WHERE post_id IN (SELECT id FROM owned) " +
+            "), likes AS ( " +
+            "    DELETE FROM person_liked_posts WHERE liked_posts_id IN (SELECT id FROM owned) " +
+            "), hashtags AS ( " +
+            "    DELETE FROM post_hashtags WHERE post_id IN (SELECT id FROM owned) " +
+            "), timelines AS ( " +
+            "    DELETE FROM timeline_entry WHERE post_id IN (SELECT id FROM owned) " +
+            ") " +
+            "DELETE FROM post WHERE id IN (SELECT id FROM owned)",
+            nativeQuery = true)
+    int deleteOwnedPost(@Param("postId") Long postId, @Param("username") String username);
+
     /**
      * Finds a post projection by its ID.
+     * The projection is cached until the post, its counts or its uploader's photo change.
      *
      * @param id The ID of the post.
      * @return An {@link Optional} containing the post projection, or empty if not found.
      */
+    @Cacheable(cacheNames = CacheConfiguration.POST_DETAIL, key = "#p0")
     Optional<PostProjection> findPostById(Long id);
 
+    /**
+     * Finds the IDs of the posts uploaded by a specific user.
+     *
+     * @param username The username of the uploader.
+     * @return The IDs of the posts uploaded by the user.
+     */
+    @Query("SELECT p.id FROM Post p WHERE p.uploader.username = :username")
+    Set<Long> findIdsByUploaderUsername(@Param("username") String username);
+
     /**
      * Finds the hashtags associated with a post by its ID.
+     * The hashtags are cached until the post is edited or deleted.
      *
      * @param id The ID of the post.
      * @return A set of hashtags associated with the post.
      */
+    @Cacheable(cacheNames = CacheConfiguration.POST_HASHTAGS, key = "#p0")
     @Query(value = "SELECT hashtags FROM post_hashtags WHERE post_id = ?1", nativeQuery = true)
     Set<String> findHashtagsByPostId(Long id);
 
+    /**
+     * Searches the hashtags starting with a prefix, ignoring case, by skipping from one distinct hashtag
+     * to the next in the hashtag index, so that the cost grows with the number of hashtags returned
+     * rather than with the number of posts tagged.
+     *
+     * @param pattern The lowercase prefix, escaped for LIKE and followed by {@code %}.
+     * @param limit   The maximum number of hashtags.
+     * @return The lowercase hashtags, in alphabetical order.
+     */
+    @Query(value = "WITH RECURSIVE tags(tag) AS ( " +
+            "    (SELECT lower(hashtags) COLLATE \"C\" FROM post_hashtags " +
+            "     WHERE lower(hashtags) COLLATE \"C\" LIKE :pattern " +
+            "     ORDER BY lower(hashtags) COLLATE \"C\" LIMIT 1) " +
+            "    UNION ALL " +
+            "    SELECT (SELECT lower(h.hashtags) COLLATE \"C\" FROM post_hashtags h " +
+            "            WHERE lower(h.hashtags) COLLATE \"C\" > t.tag AND lower(h.hashtags) COLLATE \"C\" LIKE :pattern " +
+            "            ORDER BY lower(h.hashtags) COLLATE \"C\" LIMIT 1) " +
+            "    FROM tags t WHERE t.tag IS NOT NULL " +
+            ") " +
+            "SELECT tag FROM tags WHERE tag IS NOT NULL LIMIT :limit",
+            nativeQuery = true)
+    List<String> searchHashtagsByPrefix(@Param("pattern") String pattern, @Param("limit") int limit);
+
+    /**
+     * Searches the most recent posts tagged with a hashtag, ignoring case.
+     * Posts are dated when created, so their IDs follow their dates, and ordering by ID lets the hashtag index
+     * be read backwards and stop after {@code limit} entries, however many posts carry the hashtag.
+     *
+     * @param hashtag The lowercase hashtag, without {@code #}.
+     * @param limit   The maximum number of posts.
+     * @return A list of post preview projections ordered by ID descending.
+     */
+    @Query(value = "SELECT p.id AS id, p.image AS image, p.date AS date, " +
+            "p.like_count AS \"likeCount\", p.comment_count AS \"commentCount\" " +
+            "FROM post_hashtags h " +
+            "JOIN post p ON p.id = h.post_id " +
+            "WHERE lower(h.hashtags) COLLATE \"C\" = :hashtag " +
+            "ORDER BY h.post_id DESC " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<PostPreviewProjection> searchByHashtag(@Param("hashtag") String hashtag, @Param("limit") int limit);
+
+    /**
+     * Searches the most recent posts whose description contains a pattern, ignoring case,
+     * through the trigram index on descriptions.
+     *
+     * @param pattern The text to look for, escaped for LIKE and surrounded by {@code %}.
+     * @param limit   The maximum number of posts.
+     * @return A list of post preview projections ordered by date and ID descending.
+     */
+    @Query(value = "SELECT p.id AS id, p.image AS image, p.date AS date, " +
+            "p.like_count AS \"likeCount\", p.comment_count AS \"commentCount\" " +
+            "FROM post p " +
+            "WHERE p.description ILIKE :pattern " +
+            "ORDER BY p.date DESC, p.id DESC " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<PostPreviewProjection> searchByDescription(@Param("pattern") String pattern, @Param("limit") int limit);
+
     /**
      * Finds a page of post feed projections by uploader IDs ordered by date descending.
      *
@@ -74,33 +225,161 @@ public interface PostRepository extends CrudRepository<Post, Long> {
     boolean existsLikedPostByUser(@Param("postId") Long postId, @Param("username") String username);
 
     /**
-     * Deletes all likes associated with a post given its ID.
+     * Finds, among the given posts, the IDs of those liked by a user.
+     *
+     * @param postIds  The IDs of the posts to check.
+     * @param username The username of the user.
+     * @return The subset of {@code postIds} liked by the user.
+     */
+    @Query("SELECT p.id FROM Post p JOIN p.likers liker WHERE p.id IN :postIds AND liker.username = :username")
+    Set<Long> findLikedPostIdsByUser(@Param("postIds") Collection<Long> postIds, @Param("username") String username);
+
+    /**
+     * Toggles the like of a post by a user and updates the like count of the post, in a single statement.
+     * The like is deleted if it exists, inserted otherwise.
+     *
+     * @param postId   The ID of the post.
+     * @param username The username of the user.
+     * @return 1 if the post is now liked, -1 if it is now unliked, 0 if nothing changed
+     * (the post or the user does not exist, or a concurrent toggle won).
+     */
+    @Transactional
+    @Query(value = "WITH deleted AS ( " +
+            "    DELETE FROM person_liked_posts l USING person u " +
+            "    WHERE l.likers_id = u.id AND u.username = :username AND l.liked_posts_id = :postId " +
+            "    RETURNING l.liked_posts_id " +
+            "), inserted AS ( " +
+            "    INSERT INTO person_liked_posts (likers_id, liked_posts_id) " +
+            "    SELECT u.id, p.id FROM person u, post p " +
+            "    WHERE u.username = :username AND p.id = :postId AND NOT EXISTS (SELECT 1 FROM deleted) " +
+            "    ON CONFLICT DO NOTHING " +
+            "    RETURNING liked_posts_id " +
+            "), counted AS ( " +
+            "    UPDATE post SET like_count = like_count + (SELECT COUNT(*) FROM inserted) - (SELECT COUNT(*) FROM deleted) " +
+            "    WHERE id = :postId " +
+            "    RETURNING id " +
+            ") " +
+            "SELECT (SELECT COUNT(*) FROM inserted) - (SELECT COUNT(*) FROM deleted)",
+            nativeQuery = true)
+    long toggleLike(@Param("postId") Long postId, @Param("username") String username);
+
+    /**
+     * Replaces the hashtags of a post in a single statement, which deletes the hashtags no longer wanted
+     * and inserts the new ones in one go, leaving the hashtags kept untouched.
+     * A hashtag added by a concurrent edit conflicts on {@code post_hashtags_post_idx} and is not inserted twice.
+     *
+     * @param postId   The ID of the post.
+     * @param hashtags The hashtags the post must have, duplicates ignored.
+     * @return The hashtags added to the post.
+     */
+    @Transactional
+    @Query(value = "WITH wanted AS ( " +
+            "    SELECT DISTINCT hashtag FROM unnest(CAST(:hashtags AS text[])) AS hashtag " +
+            "), removed AS ( " +
+            "    DELETE FROM post_hashtags h " +
+            "    WHERE h.post_id = :postId AND NOT EXISTS (SELECT 1 FROM wanted w WHERE w.hashtag = h.hashtags) " +
+            "), added AS ( " +
+            "    INSERT INTO post_hashtags (post_id, hashtags) " +
+            "    SELECT :postId, w.hashtag FROM wanted w " +
+            "    ON CONFLICT (post_id, hashtags) DO NOTHING " +
+            "    RETURNING hashtags " +
+            ") " +
+            "SELECT hashtags FROM added",
+            nativeQuery = true)
+    List<String> replaceHashtags(@Param("postId") Long postId, @Param("hashtags") String[] hashtags);
+
+    /**
+     * Atomically adds a delta to the like count of a post.
+     *
+     * @param postId The ID of the post.
+     * @param delta  The value to add, negative to decrement.
+     * @return The number of updated rows, 0 if the post does not exist.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE post SET like_count = like_count + :delta WHERE id = :postId", nativeQuery = true)
+    int incrementLikeCount(@Param("postId") Long postId, @Param("delta") long delta);
+
+    /**
+     * Atomically adds a delta to the comment count of a post.
      *
-     * @param postId The ID of the post whose likes are to be deleted.
+     * @param postId The ID of the post.
+     * @param delta  The value to add, negative to decrement.
+     * @return The number of updated rows, 0 if the post does not exist.
      */
     @Transactional
     @Modifying
-    @Query(value = "DELETE FROM person_liked_posts WHERE liked_posts_id = :postId", nativeQuery = true)
-    void deleteLikesByPostId(@Param("postId") Long postId);
+    @Query(value = "UPDATE post SET comment_count = comment_count + :delta WHERE id = :postId", nativeQuery = true)
+    int incrementCommentCount(@Param("postId") Long postId, @Param("delta") long delta);
 
     /**
-     * Deletes all hashtags associated with a post given its ID.
+     * Decrements the like counts of the posts liked by a person, before their likes are deleted.
      *
-     * @param postId The ID of the post whose hashtags are to be deleted.
+     * @param personId The ID of the person.
      */
     @Transactional
     @Modifying
-    @Query(value = "DELETE FROM post_hashtags WHERE post_id = :postId", nativeQuery = true)
-    void deleteHashtagsByPostId(@Param("postId") Long postId);
+    @Query(value = "UPDATE post SET like_count = like_count - 1 " +
+            "WHERE id IN (SELECT liked_posts_id FROM person_liked_posts WHERE likers_id = :personId)",
+            nativeQuery = true)
+    void decrementLikeCountsByLikerId(@Param("personId") Long personId);
 
     /**
-     * Inserts a new hashtag associated with a post given the post's ID and the hashtag.
+     * Decrements the comment counts of the posts commented by a person, before their comments are deleted.
      *
-     * @param postId  The ID of the post to which the hashtag is associated.
-     * @param hashtag The hashtag to be inserted.
+     * @param personId The ID of the person.
      */
     @Transactional
     @Modifying
-    @Query(value = "INSERT INTO post_hashtags (post_id, hashtags) VALUES (:postId, :hashtag)", nativeQuery = true)
-    void insertHashtagsByPostId(@Param("postId") Long postId, @Param("hashtag") String hashtag);
+    @Query(value = "UPDATE post SET comment_count = comment_count - c.count " +
+            "FROM (SELECT post_id, COUNT(*) AS count FROM comment WHERE author_id = :personId GROUP BY post_id) c " +
+            "WHERE post.id = c.post_id",
+            nativeQuery = true)
+    void decrementCommentCountsByAuthorId(@Param("personId") Long personId);
+
+    /**
+     * Finds the highest post ID, used to walk the post table by ID ranges.
+     *
+     * @return The highest post ID, or 0 if there is no post.
+     */
+    @Query("SELECT COALESCE(MAX(p.id), 0) FROM Post p")
+    long findMaxId();
+
+    /**
+     * Locks the posts whose ID is in {@code [fromId, toId)} until the end of the current transaction,
+     * in ID order so that concurrent lockers of overlapping ranges do not deadlock.
+     * Writes changing the counters of these posts wait for the lock, so that once it is held,
+     * every counter update is either committed or not started yet.
+     *
+     * @param fromId The lowest post ID of the range, inclusive.
+     * @param toId   The highest post ID of the range, exclusive.
+     * @return The number of locked posts.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    @Query(value = "SELECT COUNT(*) FROM (SELECT id FROM post WHERE id >= :fromId AND id < :toId ORDER BY id FOR UPDATE) locked",
+            nativeQuery = true)
+    long lockIdRange(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * Recomputes the like and comment counts of the posts whose ID is in {@code [fromId, toId)}
+     * and rewrites those that drifted from the join table and the comment table.
+     * It must run after {@link #lockIdRange} in the same transaction: the recount reads the rows committed when
+     * the statement starts, so without the lock a like or comment committed before the update reaches its post
+     * would be overwritten by the older count.
+     *
+     * @param fromId The lowest post ID of the range, inclusive.
+     * @param toId   The highest post ID of the range, exclusive.
+     * @return The number of repaired posts.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    @Modifying
+    @Query(value = "UPDATE post SET like_count = actual.like_count, comment_count = actual.comment_count " +
+            "FROM (SELECT p.id, " +
+            "             (SELECT COUNT(*) FROM person_liked_posts l WHERE l.liked_posts_id = p.id) AS like_count, " +
+            "             (SELECT COUNT(*) FROM comment c WHERE c.post_id = p.id) AS comment_count " +
+            "      FROM post p WHERE p.id >= :fromId AND p.id < :toId) actual " +
+            "WHERE post.id = actual.id " +
+            "AND (post.like_count <> actual.like_count OR post.comment_count <> actual.comment_count)",
+            nativeQuery = true)
+    int reconcileCounts(@Param("fromId") long fromId, @Param("toId") long toId);
 }
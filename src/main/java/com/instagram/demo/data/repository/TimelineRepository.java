@@ -0,0 +1,187 @@
+package com.instagram.demo.data.repository;
+
+import com.instagram.demo.data.projection.post.PostFeedProjection;
+import com.instagram.demo.data.schema.TimelineEntry;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * This interface provides methods to maintain and read the materialized home timelines.
+ */
+public interface TimelineRepository extends CrudRepository<TimelineEntry, Long> {
+    /**
+     * Finds a slice of the materialized timeline of a person ordered by date descending.
+     * No count query is issued.
+     *
+     * @param ownerId  The ID of the person whose timeline is read.
+     * @param pageable The pagination information.
+     * @return A slice of post feed projections ordered by date descending.
+     */
+    @Query("SELECT p.id AS id, p.date AS date, p.image AS image, p.description AS description, " +
+            "p.likeCount AS likeCount, p.commentCount AS commentCount, " +
+            "u.photo AS uploaderPhoto, u.username AS uploaderUsername, u.validated AS uploaderValidated " +
+            "FROM TimelineEntry t JOIN t.post p JOIN p.uploader u " +
+            "WHERE t.owner.id = :ownerId " +
+            "ORDER BY t.date DESC, t.post.id DESC")
+    Slice<PostFeedProjection> findTimelineByOwnerId(@Param("ownerId") Long ownerId, Pageable pageable);
+
+    /**
+     * Finds a slice of the materialized timeline of a person, starting right after a keyset cursor,
+     * ordered by date and post ID descending. No count query is issued.
+     *
+     * @param ownerId  The ID of the person whose timeline is read.
+     * @param date     The date of the last post of the previous slice.
+     * @param id       The ID of the last post of the previous slice.
+     * @param pageable The pagination information, whose page number must be 0.
+     * @return A slice of post feed projections ordered by date and ID descending.
+     */
+    @Query("SELECT p.id AS id, p.date AS date, p.image AS image, p.description AS description, " +
+            "p.likeCount AS likeCount, p.commentCount AS commentCount, " +
+            "u.photo AS uploaderPhoto, u.username AS uploaderUsername, u.validated AS uploaderValidated " +
+            "FROM TimelineEntry t JOIN t.post p JOIN p.uploader u " +
+            "WHERE t.owner.id = :ownerId " +
+            "AND (t.date < :date OR (t.date = :date AND t.post.id < :id)) " +
+            "ORDER BY t.date DESC, t.post.id DESC")
+    Slice<PostFeedProjection> findTimelineByOwnerIdBefore(@Param("ownerId") Long ownerId,
+                                                          @Param("date") LocalDateTime date,
+                                                          @Param("id") Long id,
+                                                          Pageable pageable);
+
+    /**
+     * Finds the posts of the hybrid timeline of a person, merging the materialized entries with the posts of followed
+     * celebrities, whose posts are pulled at read time instead of being fanned out, starting right after a keyset
+     * cursor and ordered by date and post ID descending.
+     * Each source is read as an index range stopping after {@code offset + count} rows: the timeline of the person,
+     * and the posts of each celebrity. The ranges are merged with {@code UNION}, which drops the posts fanned out
+     * before their uploader became a celebrity, read from both.
+     *
+     * @param ownerId      The ID of the person whose timeline is read.
+     * @param celebrityIds The IDs of the celebrities followed by the person, not empty.
+     * @param date         The date of the last post of the previous slice.
+     * @param id           The ID of the last post of the previous slice.
+     * @param offset       The number of posts to skip after the cursor.
+     * @param count        The maximum number of posts to return.
+     * @return The post feed projections ordered by date and ID descending.
+     */
+    @Query(value = "SELECT p.id AS id, p.date AS date, p.image AS image, p.description AS description, " +
+            "p.like_count AS \"likeCount\", p.comment_count AS \"commentCount\", " +
+            "u.photo AS \"uploaderPhoto\", u.username AS \"uploaderUsername\", u.validated AS \"uploaderValidated\" " +
+            "FROM ( " +
+            "    (SELECT t.post_id AS id, t.date AS date FROM timeline_entry t " +
+            "     WHERE t.owner_id = :ownerId AND (t.date, t.post_id) < (:date, :id) " +
+            "     ORDER BY t.date DESC, t.post_id DESC LIMIT :offset + :count) " +
+            "    UNION " +
+            "    (SELECT c.id, c.date FROM person f CROSS JOIN LATERAL ( " +
+            "         SELECT p.id, p.date FROM post p " +
+            "         WHERE p.uploader_id = f.id AND (p.date, p.id) < (:date, :id) " +
+            "         ORDER BY p.date DESC, p.id DESC LIMIT :offset + :count) c " +
+            "     WHERE f.id IN (:celebrityIds)) " +
+            ") m " +
+            "JOIN post p ON p.id = m.id JOIN person u ON u.id = p.uploader_id " +
+            "ORDER BY m.date DESC, m.id DESC " +
+            "OFFSET :offset LIMIT :count",
+            nativeQuery = true)
+    List<PostFeedProjection> findHybridTimelineByOwnerIdBefore(@Param("ownerId") Long ownerId,
+                                                               @Param("celebrityIds") Collection<Long> celebrityIds,
+                                                               @Param("date") LocalDateTime date,
+                                                               @Param("id") Long id,
+                                                               @Param("offset") long offset,
+                                                               @Param("count") int count);
+
+    /**
+     * Writes a post into the timeline of every follower of its uploader.
+     *
+     * @param postId The ID of the post to fan out.
+     * @return The number of timeline entries written.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entry (owner_id, post_id, date) " +
+            "SELECT pf.followers_id, p.id, p.date " +
+            "FROM post p JOIN person_followers pf ON pf.followees_id = p.uploader_id " +
+            "WHERE p.id = :postId " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int fanOutPost(@Param("postId") Long postId);
+
+    /**
+     * Copies the most recent posts of an uploader into the timelines of a batch of its followers, the followers
+     * being read in ID order right after the last one of the previous batch.
+     * Used when an uploader stops being treated as a celebrity and its posts must be materialized again.
+     *
+     * @param uploaderId      The ID of the uploader whose posts are fanned out.
+     * @param afterFollowerId The ID of the last follower of the previous batch, 0 for the first batch.
+     * @param batchSize       The maximum number of followers in the batch.
+     * @param limit           The maximum number of posts copied into each timeline.
+     * @return The ID of the last follower of the batch, or empty if no follower was left.
+     */
+    @Transactional
+    @Query(value = "WITH batch AS ( " +
+            "    SELECT followers_id FROM person_followers " +
+            "    WHERE followees_id = :uploaderId AND followers_id > :afterFollowerId " +
+            "    ORDER BY followers_id LIMIT :batchSize " +
+            "), recent AS ( " +
+            "    SELECT id, date FROM post WHERE uploader_id = :uploaderId ORDER BY date DESC LIMIT :limit " +
+            "), inserted AS ( " +
+            "    INSERT INTO timeline_entry (owner_id, post_id, date) " +
+            "    SELECT b.followers_id, r.id, r.date FROM batch b CROSS JOIN recent r " +
+            "    ON CONFLICT DO NOTHING " +
+            ") " +
+            "SELECT MAX(followers_id) FROM batch", nativeQuery = true)
+    Optional<Long> fanOutUploaderToFollowers(@Param("uploaderId") Long uploaderId,
+                                             @Param("afterFollowerId") Long afterFollowerId,
+                                             @Param("batchSize") int batchSize,
+                                             @Param("limit") int limit);
+
+    /**
+     * Copies the most recent posts of an uploader into the timeline of a person, typically right after a follow.
+     *
+     * @param ownerId    The ID of the person whose timeline is filled.
+     * @param uploaderId The ID of the followed uploader.
+     * @param limit      The maximum number of posts to copy.
+     * @return The number of timeline entries written.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entry (owner_id, post_id, date) " +
+            "SELECT :ownerId, p.id, p.date " +
+            "FROM post p " +
+            "WHERE p.uploader_id = :uploaderId " +
+            "ORDER BY p.date DESC " +
+            "LIMIT :limit " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int backfill(@Param("ownerId") Long ownerId, @Param("uploaderId") Long uploaderId, @Param("limit") int limit);
+
+    /**
+     * Removes the posts of an uploader from the timeline of a person, typically right after an unfollow.
+     *
+     * @param ownerId    The ID of the person whose timeline is cleaned up.
+     * @param uploaderId The ID of the unfollowed uploader.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM timeline_entry t USING post p " +
+            "WHERE t.post_id = p.id AND t.owner_id = :ownerId AND p.uploader_id = :uploaderId", nativeQuery = true)
+    void deleteByOwnerIdAndUploaderId(@Param("ownerId") Long ownerId, @Param("uploaderId") Long uploaderId);
+
+    /**
+     * Removes the timeline of a person along with the entries pointing to the posts they uploaded.
+     *
+     * @param personId The ID of the person being deleted.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM timeline_entry " +
+            "WHERE owner_id = :personId " +
+            "OR post_id IN (SELECT id FROM post WHERE uploader_id = :personId)", nativeQuery = true)
+    void deleteByPersonId(@Param("personId") Long personId);
+}
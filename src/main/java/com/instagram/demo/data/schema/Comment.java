@@ -10,11 +10,13 @@ import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.Hibernate;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
+import java.util.Objects;
 
-import static jakarta.persistence.FetchType.EAGER;
+import static jakarta.persistence.FetchType.LAZY;
 import static jakarta.persistence.GenerationType.IDENTITY;
 
 @Data
@@ -26,7 +28,7 @@ public class Comment {
     @GeneratedValue(strategy = IDENTITY)
     private Long id;
 
-    @ManyToOne(fetch = EAGER, optional = false)
+    @ManyToOne(fetch = LAZY, optional = false)
     private Person author;
 
     @NotNull
@@ -38,7 +40,7 @@ public class Comment {
     @Size(min = 1, max = 50)
     private String comment;
 
-    @ManyToOne(fetch = EAGER, optional = false)
+    @ManyToOne(fetch = LAZY, optional = false)
     private Post post;
 
     public Comment(Person author, String comment, Post post) {
@@ -48,14 +50,31 @@ public class Comment {
         this.date = LocalDateTime.now();
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        Comment other = (Comment) obj;
+        return Objects.equals(id, other.id);
+    }
+
+    /**
+     * Describes the comment without initializing any lazy association:
+     * the author is only printed once loaded, and the post by its ID, which its proxy holds.
+     */
     @Override
     public String toString() {
         return "Comment{" +
                 "id=" + id +
-                ", author=" + author.getUsername() +
+                ", author=" + (Hibernate.isInitialized(author) && author != null ? author.getUsername() : "<not loaded>") +
                 ", date=" + date +
                 ", comment='" + comment + '\'' +
-                ", post=" + post.getId() +
+                ", post=" + (post != null ? post.getId() : null) +
                 '}';
     }
 }
@@ -10,7 +10,6 @@ import lombok.NoArgsConstructor;
 import java.util.Objects;
 import java.util.Set;
 
-import static jakarta.persistence.FetchType.EAGER;
 import static jakarta.persistence.GenerationType.IDENTITY;
 
 @Data
@@ -61,13 +60,19 @@ public class Person {
     @OneToMany(mappedBy = "uploader", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Post> uploads;
 
-    @ManyToMany(fetch = EAGER)
+    @ManyToMany
     private Set<Post> likedPosts;
 
     @OneToMany(mappedBy = "author", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Comment> comments;
 
+    // The primary key leads with followees_id, person_followers_follower_idx serves the lookups of whom a person follows
     @ManyToMany
+    @JoinTable(
+            name = "person_followers",
+            joinColumns = @JoinColumn(name = "followees_id"),
+            inverseJoinColumns = @JoinColumn(name = "followers_id")
+    )
     private Set<Person> followers;
 
     @ManyToMany(mappedBy = "followers")
@@ -105,7 +110,6 @@ public class Person {
                 ", validated=" + validated +
                 ", photo='" + photo + '\'' +
                 ", email='" + email + '\'' +
-                ", password='" + password + '\'' +
                 ", firstname='" + firstname + '\'' +
                 ", lastname='" + lastname + '\'' +
                 ", bio='" + bio + '\'' +
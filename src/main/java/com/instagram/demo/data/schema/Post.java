@@ -9,6 +9,8 @@ import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
@@ -16,7 +18,7 @@ import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 
-import static jakarta.persistence.FetchType.EAGER;
+import static jakarta.persistence.FetchType.LAZY;
 import static jakarta.persistence.GenerationType.IDENTITY;
 
 @Data
@@ -45,7 +47,7 @@ public class Post {
     @Past
     private LocalDateTime date = LocalDateTime.now();
 
-    @ManyToOne(fetch = EAGER, optional = false)
+    @ManyToOne(fetch = LAZY, optional = false)
     private Person uploader;
 
     @ManyToMany(mappedBy = "likedPosts")
@@ -54,6 +56,22 @@ public class Post {
     @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Comment> comments;
 
+    /**
+     * Denormalized number of likers, only ever modified by atomic {@code UPDATE} statements
+     * (see {@link com.instagram.demo.data.repository.PostRepository#incrementLikeCount}),
+     * never by saving the entity, so that concurrent toggles are not lost.
+     */
+    @ColumnDefault("0")
+    @Column(insertable = false, updatable = false)
+    private long likeCount;
+
+    /**
+     * Denormalized number of comments, maintained like {@link #likeCount}.
+     */
+    @ColumnDefault("0")
+    @Column(insertable = false, updatable = false)
+    private long commentCount;
+
     public Post(RequestPostBody requestPostBody, Person uploader) {
         this.description = requestPostBody.description();
         this.hashtags = Set.of(requestPostBody.hashtags());
@@ -77,17 +95,22 @@ public class Post {
         return Objects.equals(id, post.id);
     }
 
+    /**
+     * Describes the post without initializing any lazy association:
+     * the likers and the comments are counted by the denormalized counters,
+     * and the hashtags and the uploader are only printed once loaded.
+     */
     @Override
     public String toString() {
         return "Post{" +
                 "id=" + id +
                 ", description='" + description + '\'' +
-                ", hashtags=" + hashtags +
+                ", hashtags=" + (Hibernate.isInitialized(hashtags) ? hashtags : "<not loaded>") +
                 ", image='" + image + '\'' +
                 ", date=" + date +
-                ", uploader=" + uploader.getUsername() +
-                ", likers=" + likers.size() +
-                ", comments=" + comments.size() +
+                ", uploader=" + (Hibernate.isInitialized(uploader) && uploader != null ? uploader.getUsername() : "<not loaded>") +
+                ", likers=" + likeCount +
+                ", comments=" + commentCount +
                 '}';
     }
 }
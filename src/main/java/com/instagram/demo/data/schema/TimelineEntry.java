@@ -0,0 +1,46 @@
+package com.instagram.demo.data.schema;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+import static jakarta.persistence.FetchType.LAZY;
+import static jakarta.persistence.GenerationType.IDENTITY;
+
+/**
+ * A materialized entry of a person's home timeline.
+ * One row is written for every follower of an uploader when a post is created (fan-out on write),
+ * so that reading a feed is an index range scan on {@code (owner_id, date, post_id)} instead of a query over every followee.
+ * The post date is copied onto the entry to keep that scan free of joins until the page is materialized.
+ */
+@Data
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"owner_id", "post_id"}))
+public class TimelineEntry {
+    @Id
+    @GeneratedValue(strategy = IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = LAZY, optional = false)
+    private Person owner;
+
+    @ManyToOne(fetch = LAZY, optional = false)
+    private Post post;
+
+    @NotNull
+    private LocalDateTime date;
+
+    @Override
+    public String toString() {
+        return "TimelineEntry{" +
+                "id=" + id +
+                ", date=" + date +
+                '}';
+    }
+}
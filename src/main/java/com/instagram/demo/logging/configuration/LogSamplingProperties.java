@@ -0,0 +1,22 @@
+package com.instagram.demo.logging.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sampling of the request log events, bound from {@code logging.sampling}.
+ *
+ * @param defaultRate Sampling rate between 0 and 1 of the endpoints matching no pattern.
+ * @param rates       Sampling rates between 0 and 1 by path pattern, e.g. {@code logging.sampling.rates[/posts/feed]=0.01},
+ *                    the first matching pattern applying.
+ */
+@ConfigurationProperties("logging.sampling")
+public record LogSamplingProperties(@DefaultValue("1.0") double defaultRate,
+                                    Map<String, Double> rates) {
+    public LogSamplingProperties {
+        rates = rates == null ? Map.of() : new LinkedHashMap<>(rates);
+    }
+}
@@ -0,0 +1,37 @@
+package com.instagram.demo.logging.configuration;
+
+import com.instagram.demo.logging.filter.LogSamplingFilter;
+import io.micrometer.context.ContextRegistry;
+import io.micrometer.context.integration.Slf4jThreadLocalAccessor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Configures the request side of the logging pipeline, the appenders being configured in {@code logback-spring.xml}.
+ * The {@link LogSamplingFilter} runs first, so that every event of a request, including the ones of the security filters,
+ * carries its MDC, and the MDC entries are registered for context propagation, so that lookups run concurrently
+ * for a request on the application task executor are sampled and tagged like it.
+ */
+@Configuration
+@EnableConfigurationProperties(LogSamplingProperties.class)
+public class LoggingConfiguration {
+    public LoggingConfiguration() {
+        ContextRegistry.getInstance().registerThreadLocalAccessor(new Slf4jThreadLocalAccessor(
+                LogSamplingFilter.REQUEST_ID,
+                LogSamplingFilter.ENDPOINT,
+                LogSamplingFilter.SAMPLED
+        ));
+    }
+
+    @Bean
+    FilterRegistrationBean<LogSamplingFilter> logSamplingFilter(LogSamplingProperties properties) {
+        FilterRegistrationBean<LogSamplingFilter> registration = new FilterRegistrationBean<>(
+                new LogSamplingFilter(properties.rates(), properties.defaultRate())
+        );
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -0,0 +1,86 @@
+package com.instagram.demo.logging.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides once per request whether its log events below {@code WARN} are kept,
+ * and tags every event of the request in the MDC with a request ID, its endpoint and that decision.
+ * Each endpoint is sampled at the rate of the first path pattern it matches, or at the default rate,
+ * so that hot endpoints can be logged at a fraction of their traffic while rare ones are logged in full.
+ * The decision is enforced by the {@link SampledOutTurboFilter}, before any message is formatted.
+ */
+public class LogSamplingFilter extends OncePerRequestFilter {
+    /**
+     * MDC key of the ID of the request.
+     */
+    public static final String REQUEST_ID = "requestId";
+
+    /**
+     * MDC key of the endpoint of the request, its method and the pattern its path matched.
+     */
+    public static final String ENDPOINT = "endpoint";
+
+    /**
+     * MDC key telling whether the events of the request below {@code WARN} are kept.
+     */
+    public static final String SAMPLED = "sampled";
+
+    /**
+     * Matcher of the path patterns.
+     */
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    /**
+     * Sampling rates between 0 and 1, by path pattern, in matching order.
+     */
+    private final Map<String, Double> rates;
+
+    /**
+     * Sampling rate of the paths matching no pattern.
+     */
+    private final double defaultRate;
+
+    public LogSamplingFilter(Map<String, Double> rates, double defaultRate) {
+        this.rates = rates;
+        this.defaultRate = defaultRate;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String path = request.getServletPath();
+        String pattern = path;
+        double rate = defaultRate;
+        for (Map.Entry<String, Double> entry : rates.entrySet()) {
+            if (pathMatcher.match(entry.getKey(), path)) {
+                pattern = entry.getKey();
+                rate = entry.getValue();
+                break;
+            }
+        }
+
+        // Unlike UUID.randomUUID(), does not contend on a shared SecureRandom
+        MDC.put(REQUEST_ID, Long.toHexString(ThreadLocalRandom.current().nextLong()));
+        MDC.put(ENDPOINT, request.getMethod() + " " + pattern);
+        MDC.put(SAMPLED, String.valueOf(rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            MDC.remove(REQUEST_ID);
+            MDC.remove(ENDPOINT);
+            MDC.remove(SAMPLED);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.instagram.demo.logging.filter;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+/**
+ * Drops the log events below {@code WARN} of the requests the {@link LogSamplingFilter} sampled out.
+ * As a turbo filter, it runs before the event is created, so a dropped event costs neither
+ * the formatting of its message nor the {@code toString()} of its arguments.
+ * Events outside of a request, and warnings and errors, are always kept.
+ */
+public class SampledOutTurboFilter extends TurboFilter {
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level == null || level.isGreaterOrEqual(Level.WARN)) {
+            return FilterReply.NEUTRAL;
+        }
+        return "false".equals(MDC.get(LogSamplingFilter.SAMPLED)) ? FilterReply.DENY : FilterReply.NEUTRAL;
+    }
+}
@@ -0,0 +1,104 @@
+package com.instagram.demo.query;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * SQL statements executed on behalf of one HTTP request: their number, their total time,
+ * and how many times each statement fingerprint was executed, so that N+1 patterns show up as duplicates.
+ * The statistics of the current request are bound to its thread, and propagated to the tasks it submits
+ * to the application task executor, so they are updated concurrently.
+ */
+public class QueryStats {
+    /**
+     * Key under which the statistics are registered for context propagation.
+     */
+    public static final String CONTEXT_KEY = "query.stats";
+
+    /**
+     * Statistics of the request running on the current thread.
+     */
+    public static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Lists of placeholders, collapsed so that {@code IN} lists of different sizes share a fingerprint.
+     */
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+
+    /**
+     * Runs of whitespace.
+     */
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Number of statements executed.
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Total execution time of the statements in milliseconds.
+     */
+    private final LongAdder timeMillis = new LongAdder();
+
+    /**
+     * Number of executions by statement fingerprint.
+     */
+    private final Map<String, AtomicInteger> executions = new ConcurrentHashMap<>();
+
+    /**
+     * Records the execution of a statement, a batch counting as one round trip.
+     *
+     * @param sql         The SQL of the statement.
+     * @param elapsedTime The execution time of the statement in milliseconds.
+     */
+    public void record(String sql, long elapsedTime) {
+        count.incrementAndGet();
+        timeMillis.add(elapsedTime);
+        executions.computeIfAbsent(fingerprint(sql), k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    /**
+     * @return The number of statements executed.
+     */
+    public int count() {
+        return count.get();
+    }
+
+    /**
+     * @return The total execution time of the statements in milliseconds.
+     */
+    public long timeMillis() {
+        return timeMillis.sum();
+    }
+
+    /**
+     * @return The number of executions beyond the first of each statement fingerprint.
+     */
+    public int duplicates() {
+        return executions.values().stream().mapToInt(n -> n.get() - 1).sum();
+    }
+
+    /**
+     * @return The fingerprints executed more than once, with their number of executions.
+     */
+    public Map<String, Integer> duplicateFingerprints() {
+        return executions.entrySet().stream()
+                .filter(entry -> entry.getValue().get() > 1)
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().get()));
+    }
+
+    /**
+     * Normalizes a statement so that its executions with different parameters share a fingerprint.
+     * Statements are prepared, so their literals are already placeholders.
+     *
+     * @param sql The SQL of the statement.
+     * @return The fingerprint of the statement.
+     */
+    static String fingerprint(String sql) {
+        return PLACEHOLDER_LIST.matcher(WHITESPACE.matcher(sql.trim()).replaceAll(" ")).replaceAll("?");
+    }
+}
@@ -0,0 +1,64 @@
+package com.instagram.demo.query.configuration;
+
+import com.google.gson.Gson;
+import com.instagram.demo.query.QueryStats;
+import com.instagram.demo.query.filter.QueryCountFilter;
+import com.instagram.demo.query.listener.QueryCountListener;
+import io.micrometer.context.ContextRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+
+/**
+ * Counts the SQL statements of each request ({@code query.count.enabled}), to catch N+1 patterns.
+ * The data source is wrapped in a datasource-proxy reporting every statement to a {@link QueryCountListener},
+ * and a {@link QueryCountFilter} running right after the logging filter binds the {@link QueryStats} of each request.
+ * Disabled in production, where the proxy and the response buffering are not worth their cost.
+ */
+@Configuration
+@ConditionalOnProperty(name = "query.count.enabled", havingValue = "true")
+@EnableConfigurationProperties(QueryCountProperties.class)
+public class QueryCountConfiguration {
+    public QueryCountConfiguration() {
+        ContextRegistry.getInstance().registerThreadLocalAccessor(QueryStats.CONTEXT_KEY, QueryStats.CURRENT);
+    }
+
+    @Bean
+    static BeanPostProcessor queryCountDataSourceProxy() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(beanName)
+                            .listener(new QueryCountListener())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    FilterRegistrationBean<QueryCountFilter> queryCountFilter(QueryCountProperties properties,
+                                                              MeterRegistry meterRegistry,
+                                                              Gson gson) {
+        FilterRegistrationBean<QueryCountFilter> registration = new FilterRegistrationBean<>(new QueryCountFilter(
+                meterRegistry,
+                gson,
+                properties.budgets(),
+                properties.headers(),
+                properties.failOnBudget()
+        ));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+}
@@ -0,0 +1,24 @@
+package com.instagram.demo.query.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+/**
+ * Counting of the SQL statements of each request, bound from {@code query.count}.
+ *
+ * @param enabled      Whether the data source is proxied and the statements counted.
+ * @param headers      Whether the counts are reported in the {@code X-Query-*} response headers.
+ * @param failOnBudget Whether a request exceeding its budget is answered with an error.
+ * @param budgets      Maximum number of statements by URI pattern, e.g. {@code query.count.budgets[/posts/feed]=4}.
+ */
+@ConfigurationProperties("query.count")
+public record QueryCountProperties(@DefaultValue("false") boolean enabled,
+                                   @DefaultValue("false") boolean headers,
+                                   @DefaultValue("false") boolean failOnBudget,
+                                   Map<String, Integer> budgets) {
+    public QueryCountProperties {
+        budgets = budgets == null ? Map.of() : Map.copyOf(budgets);
+    }
+}
@@ -0,0 +1,168 @@
+package com.instagram.demo.query.filter;
+
+import com.google.gson.Gson;
+import com.instagram.demo.query.QueryStats;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the SQL statements executed for each request, including the ones of the security filters
+ * and of the lookups the request runs on the application task executor.
+ * Each request records its number of statements, their total time and its duplicate statements as metrics
+ * tagged by method and URI pattern. It can also report them in the {@code X-Query-*} response headers,
+ * which requires buffering the response body.
+ * A request exceeding the query budget of its URI pattern is logged with its duplicate statements,
+ * and, when budgets are enforced, answered with {@link HttpStatus#INTERNAL_SERVER_ERROR} instead,
+ * so that integration tests fail on round-trip regressions.
+ */
+public class QueryCountFilter extends OncePerRequestFilter {
+    /**
+     * Header holding the number of statements executed.
+     */
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+
+    /**
+     * Header holding the total execution time of the statements in milliseconds.
+     */
+    public static final String QUERY_TIME_HEADER = "X-Query-Time";
+
+    /**
+     * Header holding the number of duplicate statements executed.
+     */
+    public static final String QUERY_DUPLICATES_HEADER = "X-Query-Duplicates";
+
+    /**
+     * Logger instance for logging messages related to QueryCountFilter class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(QueryCountFilter.class);
+
+    /**
+     * Registry of the query metrics.
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Gson instance for JSON serialization of the budget violation message.
+     */
+    private final Gson gson;
+
+    /**
+     * Maximum number of statements by URI pattern.
+     */
+    private final Map<String, Integer> budgets;
+
+    /**
+     * Whether the statistics are reported in the response headers.
+     */
+    private final boolean headers;
+
+    /**
+     * Whether the requests exceeding their budget fail.
+     */
+    private final boolean failOnBudget;
+
+    public QueryCountFilter(MeterRegistry meterRegistry,
+                            Gson gson,
+                            Map<String, Integer> budgets,
+                            boolean headers,
+                            boolean failOnBudget) {
+        this.meterRegistry = meterRegistry;
+        this.gson = gson;
+        this.budgets = budgets;
+        this.headers = headers;
+        this.failOnBudget = failOnBudget;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        ContentCachingResponseWrapper bufferedResponse = headers || failOnBudget
+                ? new ContentCachingResponseWrapper(response)
+                : null;
+        QueryStats stats = new QueryStats();
+        QueryStats.CURRENT.set(stats);
+        try {
+            filterChain.doFilter(request, bufferedResponse != null ? bufferedResponse : response);
+        } finally {
+            QueryStats.CURRENT.remove();
+        }
+
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        record(request.getMethod(), uri, stats);
+
+        if (bufferedResponse != null) {
+            Integer budget = pattern != null ? budgets.get(uri) : null;
+            if (budget != null && stats.count() > budget) {
+                logger.warn("{} {} executed {} statements, over its budget of {}, duplicates: {}",
+                        request.getMethod(), uri, stats.count(), budget, stats.duplicateFingerprints());
+                if (failOnBudget) {
+                    bufferedResponse.reset();
+                    bufferedResponse.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+                    bufferedResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                    bufferedResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                    bufferedResponse.getWriter().write(gson.toJson(
+                            "Query budget exceeded: " + stats.count() + " statements, budget " + budget
+                    ));
+                }
+            }
+            if (headers) {
+                bufferedResponse.setHeader(QUERY_COUNT_HEADER, String.valueOf(stats.count()));
+                bufferedResponse.setHeader(QUERY_TIME_HEADER, String.valueOf(stats.timeMillis()));
+                bufferedResponse.setHeader(QUERY_DUPLICATES_HEADER, String.valueOf(stats.duplicates()));
+            }
+            bufferedResponse.copyBodyToResponse();
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getServletPath().startsWith("/actuator/");
+    }
+
+    /**
+     * Records the statistics of a request.
+     *
+     * @param method The HTTP method of the request.
+     * @param uri    The URI pattern of the request.
+     * @param stats  The statistics of the request.
+     */
+    private void record(String method, String uri, QueryStats stats) {
+        DistributionSummary.builder("http.queries")
+                .description("SQL statements executed per request")
+                .baseUnit("statements")
+                .tags("method", method, "uri", uri)
+                .serviceLevelObjectives(1, 2, 5, 10, 20, 50)
+                .register(meterRegistry)
+                .record(stats.count());
+        DistributionSummary.builder("http.queries.duplicates")
+                .description("Statements executed per request beyond the first of each fingerprint")
+                .baseUnit("statements")
+                .tags("method", method, "uri", uri)
+                .register(meterRegistry)
+                .record(stats.duplicates());
+        Timer.builder("http.queries.time")
+                .description("Total execution time of the SQL statements of a request")
+                .tags("method", method, "uri", uri)
+                .register(meterRegistry)
+                .record(stats.timeMillis(), TimeUnit.MILLISECONDS);
+    }
+}
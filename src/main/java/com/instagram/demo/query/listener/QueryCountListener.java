@@ -0,0 +1,26 @@
+package com.instagram.demo.query.listener;
+
+import com.instagram.demo.query.QueryStats;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.util.List;
+
+/**
+ * Records every statement executed through the proxied data source in the {@link QueryStats} of the current request.
+ * Statements executed outside of a request, by the schedulers for instance, are ignored.
+ */
+public class QueryCountListener implements QueryExecutionListener {
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        QueryStats stats = QueryStats.CURRENT.get();
+        if (stats != null && !queryInfoList.isEmpty()) {
+            stats.record(queryInfoList.get(0).getQuery(), execInfo.getElapsedTime());
+        }
+    }
+}
@@ -1,28 +1,80 @@
 package com.instagram.demo.security.authentication;
 
 import com.instagram.demo.security.user.CustomUserDetailsService;
-import lombok.AllArgsConstructor;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Authenticates HTTP Basic logins against the credentials of a person.
+ * Password hashes are deliberately slow to compute, so when passwords are hashed they are verified on a dedicated pool
+ * of {@code security.password-hashing.threads} threads, queuing at most {@code security.password-hashing.queue-capacity}
+ * verifications: a login storm then uses a bounded share of the CPU, and the logins that would queue beyond it
+ * fail at once instead of holding the request threads the rest of the API needs.
+ */
 @Component
-@AllArgsConstructor
 public class CustomAuthenticationProvider implements AuthenticationProvider {
     private final CustomUserDetailsService userDetailsService;
     private final PasswordEncoder passwordEncoder;
 
+    /**
+     * Executor verifying the passwords, or {@code null} if they are not hashed and are compared on the calling thread.
+     */
+    private final ThreadPoolExecutor hashingExecutor;
+
+    /**
+     * Maximum time in milliseconds a login waits for its password to be verified.
+     */
+    private final long hashingTimeout;
+
+    @SuppressWarnings("deprecation")
+    public CustomAuthenticationProvider(CustomUserDetailsService userDetailsService,
+                                        PasswordEncoder passwordEncoder,
+                                        @Value("${security.password-hashing.threads:2}") int threads,
+                                        @Value("${security.password-hashing.queue-capacity:100}") int queueCapacity,
+                                        @Value("${security.password-hashing.timeout:5000}") long hashingTimeout) {
+        this.userDetailsService = userDetailsService;
+        this.passwordEncoder = passwordEncoder;
+        this.hashingTimeout = hashingTimeout;
+        if (passwordEncoder instanceof NoOpPasswordEncoder) {
+            this.hashingExecutor = null;
+        } else {
+            AtomicInteger count = new AtomicInteger();
+            this.hashingExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "password-hashing-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
     @Override
     public Authentication authenticate(Authentication authentication) throws AuthenticationException {
         String username = authentication.getName();
         String password = authentication.getCredentials().toString();
         UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-        if (passwordEncoder.matches(password, userDetails.getPassword())) {
+        if (matches(password, userDetails.getPassword())) {
             return new UsernamePasswordAuthenticationToken(
                     username,
                     password,
@@ -37,4 +89,56 @@ public class CustomAuthenticationProvider implements AuthenticationProvider {
     public boolean supports(Class<?> authenticationType) {
         return authenticationType.equals(UsernamePasswordAuthenticationToken.class);
     }
+
+    /**
+     * Stops the password verifications before the application stops.
+     */
+    @PreDestroy
+    public void close() {
+        if (hashingExecutor != null) {
+            hashingExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the number of password verifications waiting for a hashing thread.
+     *
+     * @return The number of queued verifications, 0 if passwords are not hashed.
+     */
+    int queuedVerifications() {
+        return hashingExecutor != null ? hashingExecutor.getQueue().size() : 0;
+    }
+
+    /**
+     * Verifies a password against its hash, on the hashing executor if there is one.
+     *
+     * @param password The password presented by the user.
+     * @param hash     The stored password hash.
+     * @return {@code true} if the password matches.
+     * @throws AuthenticationServiceException if the executor is saturated or the verification times out.
+     */
+    private boolean matches(String password, String hash) {
+        if (hashingExecutor == null) {
+            return passwordEncoder.matches(password, hash);
+        }
+
+        Future<Boolean> verification;
+        try {
+            verification = hashingExecutor.submit(() -> passwordEncoder.matches(password, hash));
+        } catch (RejectedExecutionException e) {
+            throw new AuthenticationServiceException("Too many concurrent logins, retry later.");
+        }
+        try {
+            return verification.get(hashingTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            verification.cancel(true);
+            throw new AuthenticationServiceException("Login timed out, retry later.");
+        } catch (InterruptedException e) {
+            verification.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Login interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new AuthenticationServiceException("Password verification failed.", e.getCause());
+        }
+    }
 }
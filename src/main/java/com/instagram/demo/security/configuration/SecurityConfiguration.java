@@ -2,6 +2,9 @@ package com.instagram.demo.security.configuration;
 
 import com.instagram.demo.security.filter.JWTTokenGeneratorFilter;
 import com.instagram.demo.security.filter.JWTTokenValidatorFilter;
+import com.instagram.demo.security.token.JwtTokenService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.boot.web.servlet.server.CookieSameSiteSupplier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -23,7 +26,10 @@ public class SecurityConfiguration {
 
 
     @Bean
-    SecurityFilterChain securityFilterChain(HttpSecurity httpSecurity) throws Exception {
+    SecurityFilterChain securityFilterChain(HttpSecurity httpSecurity,
+                                            JwtTokenService jwtTokenService,
+                                            @Value("${security.jwt.sliding-session:true}") boolean slidingSession)
+            throws Exception {
         return httpSecurity
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .csrf(AbstractHttpConfigurer::disable)
@@ -40,12 +46,14 @@ public class SecurityConfiguration {
                     };
                     c.configurationSource(source);
                 })
-                .addFilterAfter(new JWTTokenGeneratorFilter(), BasicAuthenticationFilter.class)
-                .addFilterBefore(new JWTTokenValidatorFilter(), BasicAuthenticationFilter.class)
+                .addFilterAfter(new JWTTokenGeneratorFilter(jwtTokenService, slidingSession), BasicAuthenticationFilter.class)
+                .addFilterBefore(new JWTTokenValidatorFilter(jwtTokenService), BasicAuthenticationFilter.class)
                 .authorizeHttpRequests(
                         (requests) -> requests
                                 .requestMatchers("/persons/")
                                 .permitAll()
+                                .requestMatchers(EndpointRequest.toAnyEndpoint())
+                                .authenticated()
                                 .requestMatchers("**")
                                 .authenticated()
                 )
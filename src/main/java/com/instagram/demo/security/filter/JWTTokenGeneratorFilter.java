@@ -1,7 +1,6 @@
 package com.instagram.demo.security.filter;
 
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
+import com.instagram.demo.security.token.JwtTokenService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
@@ -12,35 +11,33 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import javax.crypto.SecretKey;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.Date;
-import java.util.logging.Logger;
 
+/**
+ * Issues the JWT cookie of authenticated requests.
+ * In sliding-session mode ({@code security.jwt.sliding-session}), a token is only issued when the request was not
+ * authenticated by a token, as on {@code /login}, or when its token is due for renewal;
+ * every other request passes through untouched. Otherwise, a new token is issued on every authenticated request.
+ */
 public class JWTTokenGeneratorFilter extends OncePerRequestFilter {
-    public static final String JWT_KEY = "jxgEQeXHuPq8VdbyYFNkANdudQ53YUn4";
     public static final String JWT_COOKIE_NAME = "jwt_token";
-    private final Logger LOG = Logger.getLogger(JWTTokenGeneratorFilter.class.getName());
+
+    private final JwtTokenService jwtTokenService;
+
+    private final boolean slidingSession;
+
+    public JWTTokenGeneratorFilter(JwtTokenService jwtTokenService, boolean slidingSession) {
+        this.jwtTokenService = jwtTokenService;
+        this.slidingSession = slidingSession;
+    }
 
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
                                     @NonNull FilterChain filterChain) throws ServletException, IOException {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null) {
-            LOG.info("authentication: " + authentication.getName());
-            LOG.info("authentication: " + authentication.getAuthorities().toString());
-
-            SecretKey key = Keys.hmacShaKeyFor(JWT_KEY.getBytes(StandardCharsets.UTF_8));
-            String jwt = Jwts.builder()
-                    .issuer("Eazy Bank")
-                    .subject("JWT Token")
-                    .claim("username", authentication.getName())
-                    .issuedAt(new Date())
-                    .expiration(new Date((new Date()).getTime() + 30000000))
-                    .signWith(key)
-                    .compact();
+        if (authentication != null && (!slidingSession || isDueForToken(request))) {
+            String jwt = jwtTokenService.issue(authentication.getName());
 
             Cookie jwtCookie = new Cookie(JWT_COOKIE_NAME, jwt);
             jwtCookie.setHttpOnly(true);
@@ -48,12 +45,22 @@ public class JWTTokenGeneratorFilter extends OncePerRequestFilter {
             jwtCookie.setMaxAge(3600000); // Set cookie expiration time in seconds
             jwtCookie.setPath("/"); // Set cookie path
             response.addCookie(jwtCookie);
-            LOG.info("jwt= " + jwt);
         }
 
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Tells whether a request needs a new token.
+     *
+     * @param request The authenticated request.
+     * @return {@code true} if the request was not authenticated by a token, or if its token is due for renewal.
+     */
+    private boolean isDueForToken(HttpServletRequest request) {
+        Object expiration = request.getAttribute(JWTTokenValidatorFilter.JWT_EXPIRATION_ATTRIBUTE);
+        return !(expiration instanceof Long tokenExpiration) || jwtTokenService.isDueForRenewal(tokenExpiration);
+    }
+
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
         return request.getMethod().equals("POST") && request.getServletPath().equals("/persons/");
@@ -1,8 +1,6 @@
 package com.instagram.demo.security.filter;
 
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
+import com.instagram.demo.security.token.JwtTokenService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
@@ -10,22 +8,25 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import javax.crypto.SecretKey;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
 
 public class JWTTokenValidatorFilter extends OncePerRequestFilter {
-    public static final String JWT_KEY = "jxgEQeXHuPq8VdbyYFNkANdudQ53YUn4";
     public static final String JWT_COOKIE_NAME = "jwt_token";
+    /**
+     * Request attribute holding the expiration time of the token the request was authenticated with.
+     */
+    public static final String JWT_EXPIRATION_ATTRIBUTE = JWTTokenValidatorFilter.class.getName() + ".expiration";
 //    private final Logger LOG = Logger.getLogger(JWTTokenValidatorFilter.class.getName());
 
+    private final JwtTokenService jwtTokenService;
+
+    public JWTTokenValidatorFilter(JwtTokenService jwtTokenService) {
+        this.jwtTokenService = jwtTokenService;
+    }
+
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
                                     @NonNull FilterChain filterChain) throws ServletException, IOException {
@@ -42,20 +43,9 @@ public class JWTTokenValidatorFilter extends OncePerRequestFilter {
 
         if (jwt != null) {
             try {
-                SecretKey key = Keys.hmacShaKeyFor(JWT_KEY.getBytes(StandardCharsets.UTF_8));
-                Claims claims = Jwts
-                        .parser()
-                        .verifyWith(key)
-                        .build()
-                        .parseSignedClaims(jwt)
-                        .getPayload();
-                String username = String.valueOf(claims.get("username"));
-                Authentication authentication = new UsernamePasswordAuthenticationToken(
-                        username,
-                        null,
-                        List.of((GrantedAuthority) () -> "USER")
-                );
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                JwtTokenService.VerifiedToken verifiedToken = jwtTokenService.verify(jwt);
+                SecurityContextHolder.getContext().setAuthentication(verifiedToken.authentication());
+                request.setAttribute(JWT_EXPIRATION_ATTRIBUTE, verifiedToken.expiration());
             } catch (Exception e) {
                 throw new BadCredentialsException("Invalid Token received!");
             }
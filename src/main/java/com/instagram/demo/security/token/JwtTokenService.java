@@ -0,0 +1,178 @@
+package com.instagram.demo.security.token;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issues and verifies the JWTs carried by the authentication cookie.
+ * The signing key and the parser are built once and shared by every request, both being immutable and thread-safe.
+ * Verified tokens are kept in a bounded cache keyed by their SHA-256 hash, each entry expiring with its token,
+ * so that a token presented again is neither parsed nor verified again, and no raw token is held in memory.
+ * A token is due for renewal once less than {@code security.jwt.renew-before} milliseconds of its validity remain.
+ */
+@Component
+public class JwtTokenService {
+    /**
+     * Key used to sign the tokens.
+     */
+    public static final String JWT_KEY = "jxgEQeXHuPq8VdbyYFNkANdudQ53YUn4";
+
+    /**
+     * Validity of a token in milliseconds.
+     */
+    public static final long VALIDITY = 30000000;
+
+    /**
+     * Authorities granted to every authenticated user.
+     */
+    private static final List<GrantedAuthority> AUTHORITIES = List.of(() -> "USER");
+
+    /**
+     * The key signing and verifying the tokens.
+     */
+    private final SecretKey key = Keys.hmacShaKeyFor(JWT_KEY.getBytes(StandardCharsets.UTF_8));
+
+    /**
+     * The parser verifying the tokens.
+     */
+    private final JwtParser parser = Jwts.parser().verifyWith(key).build();
+
+    /**
+     * Verified tokens by SHA-256 hash.
+     */
+    private final Cache<ByteBuffer, VerifiedToken> verifiedTokens;
+
+    /**
+     * Remaining validity in milliseconds below which a token is due for renewal.
+     */
+    private final long renewBefore;
+
+    /**
+     * A verified token.
+     *
+     * @param authentication The authentication carried by the token.
+     * @param expiration     The expiration time of the token, in milliseconds since the epoch.
+     */
+    public record VerifiedToken(Authentication authentication, long expiration) {
+    }
+
+    public JwtTokenService(@Value("${security.jwt.cache.maximum-size:10000}") long maximumSize,
+                           @Value("${security.jwt.renew-before:" + VALIDITY / 2 + "}") long renewBefore) {
+        this.renewBefore = renewBefore;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<ByteBuffer, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(ByteBuffer hash, VerifiedToken verifiedToken, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(
+                                Math.max(0, verifiedToken.expiration() - System.currentTimeMillis())
+                        );
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ByteBuffer hash, VerifiedToken verifiedToken,
+                                                  long currentTime, long currentDuration) {
+                        return expireAfterCreate(hash, verifiedToken, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(ByteBuffer hash, VerifiedToken verifiedToken,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Issues a signed token for a user.
+     *
+     * @param username The username of the user.
+     * @return The compact serialization of the token.
+     */
+    public String issue(String username) {
+        Date now = new Date();
+        return Jwts.builder()
+                .issuer("Eazy Bank")
+                .subject("JWT Token")
+                .claim("username", username)
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + VALIDITY))
+                .signWith(key)
+                .compact();
+    }
+
+    /**
+     * Verifies a token, or finds it among the tokens already verified.
+     *
+     * @param token The compact serialization of the token.
+     * @return The verified token.
+     * @throws JwtException if the token is malformed, has an invalid signature or has expired.
+     */
+    public VerifiedToken verify(String token) {
+        ByteBuffer hash = hash(token);
+        VerifiedToken verifiedToken = verifiedTokens.getIfPresent(hash);
+        if (verifiedToken != null) {
+            return verifiedToken;
+        }
+
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        Authentication authentication = new UsernamePasswordAuthenticationToken(
+                String.valueOf(claims.get("username")),
+                null,
+                AUTHORITIES
+        );
+        if (claims.getExpiration() == null) {
+            return new VerifiedToken(authentication, Long.MAX_VALUE);
+        }
+        verifiedToken = new VerifiedToken(authentication, claims.getExpiration().getTime());
+        verifiedTokens.put(hash, verifiedToken);
+        return verifiedToken;
+    }
+
+    /**
+     * Tells whether a token expires soon enough to be renewed.
+     *
+     * @param expiration The expiration time of the token, in milliseconds since the epoch.
+     * @return {@code true} if less than {@code security.jwt.renew-before} milliseconds of its validity remain.
+     */
+    public boolean isDueForRenewal(long expiration) {
+        return expiration - System.currentTimeMillis() < renewBefore;
+    }
+
+    /**
+     * Hashes a token with SHA-256.
+     *
+     * @param token The compact serialization of the token.
+     * @return The hash of the token.
+     */
+    private static ByteBuffer hash(String token) {
+        try {
+            return ByteBuffer.wrap(
+                    MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII))
+            );
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
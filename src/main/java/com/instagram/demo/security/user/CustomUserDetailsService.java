@@ -15,8 +15,8 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         return personRepository
-                .findFirstByUsername(username)
-                .map(person -> new CustomUserDetails(person.getEmail(), person.getPassword()))
+                .findCredentialsByUsername(username)
+                .map(credentials -> new CustomUserDetails(credentials.getEmail(), credentials.getPassword()))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found."));
     }
 }
@@ -0,0 +1,202 @@
+package com.instagram.demo.service.cache;
+
+import com.instagram.demo.data.configuration.CacheConfiguration;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Evicts the entries of the read cache configured by {@link CacheConfiguration} when the data they hold changes.
+ * Inside a transaction, entries are evicted once it has committed, so that a concurrent reader cannot cache
+ * the value that was just replaced. Outside a transaction, they are evicted immediately.
+ * Each eviction is also broadcast on the {@link InvalidationChannel}, so that the other nodes evict their own copies.
+ */
+@Service
+public class CacheInvalidator {
+    /**
+     * The names of the counts cached per username in {@link CacheConfiguration#PERSON_STATS}.
+     */
+    private static final List<String> STATS = List.of("followers:", "followings:", "posts:");
+
+    /**
+     * Maximum number of keys per broadcast invalidation, keeping its payload small.
+     */
+    private static final int MAX_KEYS = 100;
+
+    /**
+     * ID of this node, used to ignore its own invalidations when they come back through the channel.
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * Channel broadcasting the invalidations to the other nodes.
+     */
+    private final InvalidationChannel invalidationChannel;
+
+    /**
+     * Cache of person projections by username.
+     */
+    private final Cache personInfo;
+
+    /**
+     * Cache of person counts by count name and username.
+     */
+    private final Cache personStats;
+
+    /**
+     * Cache of post projections by post ID.
+     */
+    private final Cache postDetail;
+
+    /**
+     * Cache of post hashtags by post ID.
+     */
+    private final Cache postHashtags;
+
+    /**
+     * Cache of person credentials by username.
+     */
+    private final Cache personCredentials;
+
+    public CacheInvalidator(CacheManager cacheManager, InvalidationChannel invalidationChannel) {
+        this.invalidationChannel = invalidationChannel;
+        this.personInfo = Objects.requireNonNull(cacheManager.getCache(CacheConfiguration.PERSON_INFO));
+        this.personStats = Objects.requireNonNull(cacheManager.getCache(CacheConfiguration.PERSON_STATS));
+        this.postDetail = Objects.requireNonNull(cacheManager.getCache(CacheConfiguration.POST_DETAIL));
+        this.postHashtags = Objects.requireNonNull(cacheManager.getCache(CacheConfiguration.POST_HASHTAGS));
+        this.personCredentials = Objects.requireNonNull(cacheManager.getCache(CacheConfiguration.PERSON_CREDENTIALS));
+        invalidationChannel.subscribe(invalidation -> {
+            if (!nodeId.equals(invalidation.origin())) {
+                apply(invalidation);
+            }
+        });
+    }
+
+    /**
+     * Evicts the profile, the counts and the credentials of a person.
+     *
+     * @param username The username of the person.
+     */
+    public void evictPerson(String username) {
+        broadcast(Invalidation.Scope.PERSON, List.of(username));
+    }
+
+    /**
+     * Evicts the followers, followings and posts counts of people.
+     *
+     * @param usernames The usernames of the people.
+     */
+    public void evictPersonStats(String... usernames) {
+        evictPersonStats(List.of(usernames));
+    }
+
+    /**
+     * Evicts the followers, followings and posts counts of people.
+     *
+     * @param usernames The usernames of the people.
+     */
+    public void evictPersonStats(Collection<String> usernames) {
+        broadcast(Invalidation.Scope.PERSON_STATS, List.copyOf(usernames));
+    }
+
+    /**
+     * Evicts the detail and the hashtags of a post.
+     *
+     * @param postId The ID of the post.
+     */
+    public void evictPost(Long postId) {
+        broadcast(Invalidation.Scope.POST, List.of(postId.toString()));
+    }
+
+    /**
+     * Evicts the detail of posts, whose counts or uploader changed.
+     *
+     * @param postIds The IDs of the posts.
+     */
+    public void evictPostDetails(Collection<Long> postIds) {
+        broadcast(Invalidation.Scope.POST_DETAIL, postIds.stream().map(String::valueOf).toList());
+    }
+
+    /**
+     * Evicts the detail of every post.
+     * Used when a change touches posts that cannot be listed cheaply, such as the likes and comments of a deleted person.
+     */
+    public void evictAllPostDetails() {
+        broadcast(Invalidation.Scope.ALL_POST_DETAILS, List.of());
+    }
+
+    /**
+     * Evicts the local entries of an invalidation.
+     *
+     * @param invalidation The invalidation to apply.
+     */
+    void apply(Invalidation invalidation) {
+        switch (invalidation.scope()) {
+            case PERSON -> invalidation.keys().forEach(username -> {
+                personInfo.evict(username);
+                personCredentials.evict(username);
+                STATS.forEach(stat -> personStats.evict(stat + username));
+            });
+            case PERSON_STATS -> invalidation.keys().forEach(
+                    username -> STATS.forEach(stat -> personStats.evict(stat + username))
+            );
+            case POST -> invalidation.keys().forEach(postId -> {
+                postDetail.evict(Long.valueOf(postId));
+                postHashtags.evict(Long.valueOf(postId));
+            });
+            case POST_DETAIL -> invalidation.keys().forEach(postId -> postDetail.evict(Long.valueOf(postId)));
+            case ALL_POST_DETAILS -> postDetail.clear();
+            case ALL -> List.of(personInfo, personStats, postDetail, postHashtags, personCredentials).forEach(Cache::clear);
+        }
+    }
+
+    /**
+     * Once the current transaction has committed, or immediately if there is none, evicts the local entries
+     * of an invalidation and broadcasts it to the other nodes in chunks of at most {@link #MAX_KEYS} keys.
+     *
+     * @param scope The entries to evict.
+     * @param keys  The usernames or post IDs whose entries are to be evicted.
+     */
+    private void broadcast(Invalidation.Scope scope, List<String> keys) {
+        if (keys.isEmpty() && scope != Invalidation.Scope.ALL_POST_DETAILS) {
+            return;
+        }
+
+        afterCommit(() -> {
+            for (int from = 0; from == 0 || from < keys.size(); from += MAX_KEYS) {
+                Invalidation invalidation = new Invalidation(
+                        nodeId,
+                        scope,
+                        keys.subList(from, Math.min(from + MAX_KEYS, keys.size()))
+                );
+                apply(invalidation);
+                invalidationChannel.publish(invalidation);
+            }
+        });
+    }
+
+    /**
+     * Runs an eviction once the current transaction has committed, or immediately if there is none.
+     *
+     * @param eviction The eviction to run.
+     */
+    private static void afterCommit(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.instagram.demo.service.cache;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Invalidation channel connecting the application contexts running in the same JVM.
+ * It is enough for a single node, and stands in for a real channel when several contexts are started by a test.
+ * Listeners are called synchronously by the publishing thread.
+ */
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.channel", havingValue = "in-process", matchIfMissing = true)
+public class InProcessInvalidationChannel implements InvalidationChannel {
+    /**
+     * Listeners of every context of the JVM.
+     */
+    private static final List<Consumer<Invalidation>> LISTENERS = new CopyOnWriteArrayList<>();
+
+    /**
+     * Listeners registered through this context, removed when it is closed.
+     */
+    private final List<Consumer<Invalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(Invalidation invalidation) {
+        LISTENERS.forEach(listener -> listener.accept(invalidation));
+    }
+
+    @Override
+    public void subscribe(Consumer<Invalidation> listener) {
+        listeners.add(listener);
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * Unregisters the listeners of this context.
+     */
+    @PreDestroy
+    public void close() {
+        LISTENERS.removeAll(listeners);
+    }
+}
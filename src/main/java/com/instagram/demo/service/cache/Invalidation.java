@@ -0,0 +1,47 @@
+package com.instagram.demo.service.cache;
+
+import java.util.List;
+
+/**
+ * A cache invalidation broadcast to every node through the {@link InvalidationChannel}.
+ *
+ * @param origin The ID of the node that published the invalidation, or {@code null} if it was raised by the channel itself.
+ * @param scope  The entries to evict.
+ * @param keys   The usernames or post IDs whose entries are to be evicted, depending on the scope.
+ */
+public record Invalidation(String origin, Scope scope, List<String> keys) {
+    /**
+     * The entries evicted by an invalidation.
+     */
+    public enum Scope {
+        /**
+         * The profile, the counts and the credentials of the people whose usernames are given.
+         */
+        PERSON,
+
+        /**
+         * The counts of the people whose usernames are given.
+         */
+        PERSON_STATS,
+
+        /**
+         * The detail and the hashtags of the posts whose IDs are given.
+         */
+        POST,
+
+        /**
+         * The detail of the posts whose IDs are given.
+         */
+        POST_DETAIL,
+
+        /**
+         * The detail of every post.
+         */
+        ALL_POST_DETAILS,
+
+        /**
+         * Every cached entry, used when a node may have missed invalidations.
+         */
+        ALL
+    }
+}
@@ -0,0 +1,25 @@
+package com.instagram.demo.service.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Broadcasts cache invalidations between the nodes of a deployment, so that a change made through one node
+ * evicts the copies cached by the others.
+ * The implementation is selected with the {@code cache.invalidation.channel} property.
+ */
+public interface InvalidationChannel {
+    /**
+     * Broadcasts an invalidation to every subscriber, including the ones of the publishing node.
+     * Failures are logged rather than thrown, the entries of the other nodes then expire on their own.
+     *
+     * @param invalidation The invalidation to broadcast.
+     */
+    void publish(Invalidation invalidation);
+
+    /**
+     * Registers a listener called with every invalidation broadcast on the channel.
+     *
+     * @param listener The listener to call.
+     */
+    void subscribe(Consumer<Invalidation> listener);
+}
@@ -0,0 +1,219 @@
+package com.instagram.demo.service.cache;
+
+import com.google.gson.Gson;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Invalidation channel built on Postgres LISTEN/NOTIFY, shared by every node connected to the same database.
+ * Invalidations are published with {@code pg_notify} in their own transaction, and received by a dedicated thread
+ * holding a connection outside the pool, which blocks until a notification arrives.
+ * If that connection is lost, it reconnects and evicts every cached entry, since invalidations may have been missed.
+ */
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.channel", havingValue = "postgres")
+public class PostgresInvalidationChannel implements InvalidationChannel {
+    /**
+     * Logger instance for logging messages related to PostgresInvalidationChannel class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(PostgresInvalidationChannel.class);
+
+    /**
+     * Name of the Postgres notification channel.
+     */
+    private static final String CHANNEL = "cache_invalidation";
+
+    /**
+     * Maximum time in milliseconds the listening thread blocks before checking whether the channel was closed.
+     */
+    private static final int POLL_TIMEOUT = 500;
+
+    /**
+     * Properties of the data source, used to open the listening connection.
+     */
+    private final DataSourceProperties dataSourceProperties;
+
+    /**
+     * JDBC template used to publish notifications.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Transaction template publishing each notification in a new transaction, committed right away.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Gson instance for serializing invalidations into notification payloads.
+     */
+    private final Gson gson;
+
+    /**
+     * Delay in milliseconds before reconnecting after the listening connection was lost.
+     */
+    private final long reconnectDelay;
+
+    /**
+     * Listeners called with every received invalidation.
+     */
+    private final List<Consumer<Invalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Released once the first LISTEN has been executed.
+     */
+    private final CountDownLatch listening = new CountDownLatch(1);
+
+    /**
+     * Whether the listening thread should keep running.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Thread receiving the notifications.
+     */
+    private Thread listener;
+
+    public PostgresInvalidationChannel(DataSourceProperties dataSourceProperties,
+                                       JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       Gson gson,
+                                       @Value("${cache.invalidation.postgres.reconnect-delay:1000}") long reconnectDelay) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.gson = gson;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    /**
+     * Starts the listening thread, and waits for it to listen so that no invalidation published afterwards is missed.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @PostConstruct
+    public void start() throws InterruptedException {
+        listener = Thread.ofPlatform()
+                .name("cache-invalidation-listener")
+                .daemon()
+                .start(this::listen);
+        if (!listening.await(5, TimeUnit.SECONDS)) {
+            logger.warn("Not listening to {} yet, invalidations from other nodes may be missed", CHANNEL);
+        }
+    }
+
+    /**
+     * Stops the listening thread and closes its connection.
+     *
+     * @throws InterruptedException if interrupted while waiting for the thread to stop.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        listener.join(2L * POLL_TIMEOUT);
+    }
+
+    @Override
+    public void publish(Invalidation invalidation) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.queryForList(
+                    "SELECT pg_notify(?, ?)",
+                    CHANNEL,
+                    gson.toJson(invalidation)
+            ));
+        } catch (RuntimeException e) {
+            logger.warn("Could not publish {}", invalidation, e);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<Invalidation> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Listens to the channel until it is closed, reconnecting whenever the connection is lost.
+     */
+    private void listen() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(
+                    dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(),
+                    dataSourceProperties.determinePassword());
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + CHANNEL);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                if (reconnecting) {
+                    // Invalidations broadcast while disconnected were missed
+                    deliver(new Invalidation(null, Invalidation.Scope.ALL, List.of()));
+                }
+                listening.countDown();
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            deliver(gson.fromJson(notification.getParameter(), Invalidation.class));
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    logger.warn("Lost the connection listening to {}, reconnecting", CHANNEL, e);
+                    reconnecting = true;
+                    sleep();
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls every listener with an invalidation, a failing listener not preventing the others from being called.
+     *
+     * @param invalidation The received invalidation.
+     */
+    private void deliver(Invalidation invalidation) {
+        for (Consumer<Invalidation> consumer : listeners) {
+            try {
+                consumer.accept(invalidation);
+            } catch (RuntimeException e) {
+                logger.error("Could not apply {}", invalidation, e);
+            }
+        }
+    }
+
+    /**
+     * Waits before reconnecting.
+     */
+    private void sleep() {
+        try {
+            Thread.sleep(reconnectDelay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.instagram.demo.service.counter;
+
+import com.instagram.demo.data.repository.PostRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Periodically repairs the denormalized like and comment counts of posts.
+ * The counters are maintained incrementally by the write endpoints; this reconciler recomputes them from
+ * {@code person_liked_posts} and {@code comment} and rewrites the ones that drifted, for instance after a crash
+ * between a write and its counter update. Posts are walked by ID ranges of {@code counters.reconcile-batch-size}
+ * so that each transaction only locks a bounded number of rows. Each range is locked before it is recounted,
+ * so that the recount sees every like and comment committed on its posts and none is lost to the rewrite.
+ */
+@Component
+public class PostCounterReconciler {
+    /**
+     * Logger instance for logging messages related to PostCounterReconciler class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(PostCounterReconciler.class);
+
+    /**
+     * Repository for performing CRUD operations on posts.
+     */
+    private final PostRepository postRepository;
+
+    /**
+     * Number of post IDs reconciled by each statement.
+     */
+    private final long batchSize;
+
+    /**
+     * Transaction template holding the lock of a range while it is recounted.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    public PostCounterReconciler(PostRepository postRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${counters.reconcile-batch-size:10000}") long batchSize) {
+        this.postRepository = postRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Recomputes the counters of every post, one ID range at a time.
+     *
+     * @return The number of repaired posts.
+     */
+    @Scheduled(
+            initialDelayString = "${counters.reconcile-interval:300000}",
+            fixedDelayString = "${counters.reconcile-interval:300000}"
+    )
+    public int reconcile() {
+        long maxId = postRepository.findMaxId();
+        int repaired = 0;
+        for (long fromId = 0; fromId <= maxId; fromId += batchSize) {
+            long toId = fromId + batchSize;
+            long lowestId = fromId;
+            repaired += transactionTemplate.execute(status -> {
+                postRepository.lockIdRange(lowestId, toId);
+                return postRepository.reconcileCounts(lowestId, toId);
+            });
+        }
+        if (repaired > 0) {
+            logger.info("Repaired the counters of {} posts", repaired);
+        }
+        return repaired;
+    }
+}
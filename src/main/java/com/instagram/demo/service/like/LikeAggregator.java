@@ -0,0 +1,290 @@
+package com.instagram.demo.service.like;
+
+import com.instagram.demo.data.repository.PostRepository;
+import com.instagram.demo.service.cache.CacheInvalidator;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Absorbs like/unlike bursts in memory and writes them behind to the database.
+ * A toggle only updates a per-user pending state and a per-post {@link LongAdder}, so concurrent likes on a viral post
+ * never contend on its row. Every {@code likes.flush-interval} milliseconds the net pending states are written to
+ * {@code person_liked_posts} and the resulting count deltas to {@code post.like_count}, using batched statements
+ * in a single transaction. Until then, readers overlay the pending states and deltas on what they read from the
+ * database, so a user sees their own like immediately.
+ * <p>
+ * Write-behind is off by default ({@code likes.write-behind.enabled}): the pending states only live in the memory of
+ * one node, so it is only consistent when a single node serves the likes, and the likes pending when the node crashes,
+ * rather than stops, are lost.
+ */
+@Service
+public class LikeAggregator {
+    /**
+     * Logger instance for logging messages related to LikeAggregator class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(LikeAggregator.class);
+
+    /**
+     * Statement liking a post, ignored if the like already exists or if the post or the user was deleted meanwhile.
+     */
+    private static final String INSERT_LIKE = "INSERT INTO person_liked_posts (likers_id, liked_posts_id) " +
+            "SELECT u.id, p.id FROM person u, post p WHERE u.username = ? AND p.id = ? " +
+            "ON CONFLICT DO NOTHING";
+
+    /**
+     * Statement unliking a post, ignored if the like does not exist.
+     */
+    private static final String DELETE_LIKE = "DELETE FROM person_liked_posts l USING person u " +
+            "WHERE l.likers_id = u.id AND u.username = ? AND l.liked_posts_id = ?";
+
+    /**
+     * Statement applying a net delta to the like count of a post.
+     */
+    private static final String UPDATE_LIKE_COUNT = "UPDATE post SET like_count = like_count + ? WHERE id = ?";
+
+    /**
+     * Identifies the like of a post by a user.
+     *
+     * @param postId   The ID of the post.
+     * @param username The username of the user.
+     */
+    record LikeKey(Long postId, String username) {
+    }
+
+    /**
+     * The state of a like not yet written to the database.
+     *
+     * @param persisted Whether the like exists in the database.
+     * @param liked     Whether the like should exist once flushed.
+     */
+    record PendingLike(boolean persisted, boolean liked) {
+        /**
+         * Gets the contribution of this pending state to the like count of the post.
+         *
+         * @return 1 for a pending like, -1 for a pending unlike, 0 otherwise.
+         */
+        long delta() {
+            return (liked ? 1 : 0) - (persisted ? 1 : 0);
+        }
+    }
+
+    /**
+     * Repository for performing CRUD operations on posts.
+     */
+    private final PostRepository postRepository;
+
+    /**
+     * JDBC template used for batched writes.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Transaction template wrapping each flush.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Invalidator of the cached post details holding the persisted like counts.
+     */
+    private final CacheInvalidator cacheInvalidator;
+
+    /**
+     * Whether toggles are absorbed by the aggregator, or written through by the caller.
+     */
+    private final boolean enabled;
+
+    /**
+     * Pending like states by post and user.
+     */
+    private final ConcurrentHashMap<LikeKey, PendingLike> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Net like count deltas not yet flushed, by post ID.
+     * They are only updated through {@code compute}, so that a delta removed once back to zero is recreated
+     * rather than updated after its removal.
+     */
+    private final ConcurrentHashMap<Long, LongAdder> deltas = new ConcurrentHashMap<>();
+
+    public LikeAggregator(PostRepository postRepository,
+                          JdbcTemplate jdbcTemplate,
+                          TransactionTemplate transactionTemplate,
+                          CacheInvalidator cacheInvalidator,
+                          @Value("${likes.write-behind.enabled:false}") boolean enabled) {
+        this.postRepository = postRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheInvalidator = cacheInvalidator;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Tells whether like toggles should go through the aggregator.
+     * When disabled, nothing is ever pending and the read overlays return the persisted values unchanged.
+     *
+     * @return {@code true} if write-behind is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Toggles the like of a post by a user.
+     * The database is only read when the pair has no pending state.
+     *
+     * @param postId   The ID of the post.
+     * @param username The username of the user.
+     * @return {@code true} if the post is now liked, {@code false} if it is now unliked.
+     */
+    public boolean toggle(Long postId, String username) {
+        LikeKey key = new LikeKey(postId, username);
+        PendingLike known = pending.get(key);
+        boolean persisted = known != null ? known.liked() : postRepository.existsLikedPostByUser(postId, username);
+        PendingLike toggled = pending.compute(key, (k, current) -> {
+            PendingLike base = current != null ? current : new PendingLike(persisted, persisted);
+            PendingLike next = new PendingLike(base.persisted(), !base.liked());
+            addDelta(postId, next.liked() ? 1 : -1);
+            return next;
+        });
+        return toggled.liked();
+    }
+
+    /**
+     * Overlays the pending state of a like on its persisted state.
+     *
+     * @param postId    The ID of the post.
+     * @param username  The username of the user.
+     * @param persisted Whether the like exists in the database.
+     * @return Whether the post is liked by the user.
+     */
+    public boolean isLiked(Long postId, String username, boolean persisted) {
+        PendingLike pendingLike = pending.get(new LikeKey(postId, username));
+        return pendingLike != null ? pendingLike.liked() : persisted;
+    }
+
+    /**
+     * Overlays the pending delta of a post on its persisted like count.
+     *
+     * @param postId    The ID of the post.
+     * @param persisted The like count read from the database.
+     * @return The like count of the post.
+     */
+    public long likeCount(Long postId, long persisted) {
+        LongAdder delta = deltas.get(postId);
+        return delta != null ? persisted + delta.sum() : persisted;
+    }
+
+    /**
+     * Writes the pending likes and unlikes to the database in batches and applies the resulting count deltas.
+     * States toggled again while the flush was running stay pending, rebased on what has just been written.
+     * The cached details of the posts whose like count changed are evicted once the pending deltas are rebased,
+     * and the deltas back to zero are removed.
+     *
+     * @return The number of flushed states.
+     */
+    @Scheduled(fixedDelayString = "${likes.flush-interval:200}")
+    public int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        Map<LikeKey, PendingLike> snapshot = new HashMap<>(pending);
+        List<Object[]> likes = new ArrayList<>();
+        List<Object[]> unlikes = new ArrayList<>();
+        List<LikeKey> likeKeys = new ArrayList<>();
+        List<LikeKey> unlikeKeys = new ArrayList<>();
+        snapshot.forEach((key, pendingLike) -> {
+            if (pendingLike.delta() > 0) {
+                likes.add(new Object[]{key.username(), key.postId()});
+                likeKeys.add(key);
+            } else if (pendingLike.delta() < 0) {
+                unlikes.add(new Object[]{key.username(), key.postId()});
+                unlikeKeys.add(key);
+            }
+        });
+
+        Map<Long, Long> countDeltas = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            accumulate(countDeltas, likeKeys, jdbcTemplate.batchUpdate(INSERT_LIKE, likes), 1);
+            accumulate(countDeltas, unlikeKeys, jdbcTemplate.batchUpdate(DELETE_LIKE, unlikes), -1);
+
+            List<Object[]> counts = new ArrayList<>();
+            countDeltas.forEach((postId, countDelta) -> {
+                if (countDelta != 0) {
+                    counts.add(new Object[]{countDelta, postId});
+                }
+            });
+            jdbcTemplate.batchUpdate(UPDATE_LIKE_COUNT, counts);
+        });
+
+        snapshot.forEach((key, flushed) -> pending.computeIfPresent(key, (k, current) -> {
+            addDelta(k.postId(), -((flushed.liked() ? 1 : 0) - (current.persisted() ? 1 : 0)));
+            PendingLike rebased = new PendingLike(flushed.liked(), current.liked());
+            return rebased.delta() == 0 ? null : rebased;
+        }));
+        snapshot.keySet().forEach(key -> deltas.computeIfPresent(key.postId(), (k, delta) -> delta.sum() == 0 ? null : delta));
+        cacheInvalidator.evictPostDetails(countDeltas.keySet());
+
+        logger.debug("Flushed {} likes and {} unlikes", likes.size(), unlikes.size());
+        return snapshot.size();
+    }
+
+    /**
+     * Gets the number of posts with a like count delta not yet flushed.
+     *
+     * @return The number of tracked deltas.
+     */
+    int trackedDeltas() {
+        return deltas.size();
+    }
+
+    /**
+     * Flushes the pending likes before the application stops.
+     */
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    /**
+     * Adds to the pending like count delta of a post, creating it if needed.
+     *
+     * @param postId The ID of the post.
+     * @param delta  The delta to add.
+     */
+    private void addDelta(Long postId, long delta) {
+        deltas.compute(postId, (id, adder) -> {
+            LongAdder updated = adder != null ? adder : new LongAdder();
+            updated.add(delta);
+            return updated;
+        });
+    }
+
+    /**
+     * Adds the rows affected by each statement of a batch to the count delta of its post.
+     *
+     * @param countDeltas The count deltas by post ID.
+     * @param keys        The keys of the batched statements.
+     * @param affected    The number of rows affected by each statement.
+     * @param sign        1 for inserted likes, -1 for deleted likes.
+     */
+    private static void accumulate(Map<Long, Long> countDeltas, List<LikeKey> keys, int[] affected, int sign) {
+        for (int i = 0; i < keys.size(); i++) {
+            if (affected[i] > 0) {
+                countDeltas.merge(keys.get(i).postId(), (long) sign * affected[i], Long::sum);
+            }
+        }
+    }
+}
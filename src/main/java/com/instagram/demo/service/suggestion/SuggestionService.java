@@ -0,0 +1,193 @@
+package com.instagram.demo.service.suggestion;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.instagram.demo.data.projection.person.PersonSuggestion;
+import com.instagram.demo.data.repository.PersonRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Suggests people to follow from a pool of candidates precomputed for each user.
+ * A pool holds up to {@code suggestions.pool-size} people the user does not follow: first the friends of friends
+ * scored by mutual follows and popularity, then the most followed people, then the newest users.
+ * Pools are kept in a bounded per-user cache and rebuilt in the background once older than
+ * {@code suggestions.refresh-after} milliseconds, so that changes elsewhere in the graph reach them incrementally,
+ * while the user's own follows and unfollows are applied to their pool at once.
+ * Serving suggestions draws them at random from the pool in O(k), without touching the database.
+ */
+@Service
+public class SuggestionService {
+    /**
+     * Logger instance for logging messages related to SuggestionService class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SuggestionService.class);
+
+    /**
+     * Repository for performing CRUD operations on persons (users).
+     */
+    private final PersonRepository personRepository;
+
+    /**
+     * Maximum number of candidates in a pool.
+     */
+    private final int poolSize;
+
+    /**
+     * Number of most followed people considered for the pools.
+     */
+    private final int popularSize;
+
+    /**
+     * Pools of candidates by username.
+     */
+    private final LoadingCache<String, List<PersonSuggestion>> pools;
+
+    /**
+     * IDs of the most followed people, refreshed by {@link #refreshPopular()}.
+     */
+    private volatile List<Long> popularIds = List.of();
+
+    public SuggestionService(PersonRepository personRepository,
+                             @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                             AsyncTaskExecutor refreshExecutor,
+                             @Value("${suggestions.pool-size:30}") int poolSize,
+                             @Value("${suggestions.popular-size:100}") int popularSize,
+                             @Value("${suggestions.cache.maximum-size:10000}") long maximumSize,
+                             @Value("${suggestions.refresh-after:60000}") long refreshAfter) {
+        this.personRepository = personRepository;
+        this.poolSize = poolSize;
+        this.popularSize = popularSize;
+        this.pools = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .refreshAfterWrite(Duration.ofMillis(refreshAfter))
+                .expireAfterAccess(Duration.ofMillis(refreshAfter * 10))
+                .executor(refreshExecutor)
+                .build(this::loadPool);
+    }
+
+    /**
+     * Suggests people for a user to follow.
+     *
+     * @param username The username of the user.
+     * @param count    The number of suggestions.
+     * @return Up to {@code count} people drawn at random from the pool of the user.
+     */
+    public List<PersonSuggestion> suggest(String username, int count) {
+        List<PersonSuggestion> pool = pools.get(username);
+        if (pool.size() <= count) {
+            return pool;
+        }
+
+        // Robert Floyd's algorithm: draws count distinct indexes in count steps
+        Set<Integer> drawn = new HashSet<>();
+        List<PersonSuggestion> suggestions = new ArrayList<>(count);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = pool.size() - count; i < pool.size(); i++) {
+            int index = random.nextInt(i + 1);
+            if (!drawn.add(index)) {
+                drawn.add(i);
+                index = i;
+            }
+            suggestions.add(pool.get(index));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Removes a newly followed person from the pool of the follower.
+     *
+     * @param followerUsername The username of the follower.
+     * @param followeeUsername The username of the person followed.
+     */
+    public void onFollow(String followerUsername, String followeeUsername) {
+        pools.asMap().computeIfPresent(followerUsername, (username, pool) -> without(pool, followeeUsername));
+    }
+
+    /**
+     * Drops the pool of a user who unfollowed someone, who may be suggested again.
+     *
+     * @param followerUsername The username of the former follower.
+     */
+    public void onUnfollow(String followerUsername) {
+        pools.invalidate(followerUsername);
+    }
+
+    /**
+     * Drops the pool of a person who was updated or deleted, and removes them from the pools of the others,
+     * so that neither their former username nor their former photo is suggested anymore.
+     *
+     * @param username The username of the person before the change.
+     */
+    public void evictPerson(String username) {
+        pools.invalidate(username);
+        for (Map.Entry<String, List<PersonSuggestion>> entry : pools.asMap().entrySet()) {
+            if (contains(entry.getValue(), username)) {
+                pools.asMap().computeIfPresent(entry.getKey(), (key, pool) -> without(pool, username));
+            }
+        }
+    }
+
+    /**
+     * Periodically recomputes the most followed people, which fill the pools lacking friends of friends.
+     */
+    @Scheduled(fixedDelayString = "${suggestions.popular-refresh-interval:300000}")
+    public void refreshPopular() {
+        popularIds = List.copyOf(personRepository.findMostFollowedIds(popularSize));
+        logger.debug("{} most followed people available for suggestions", popularIds.size());
+    }
+
+    /**
+     * Builds the pool of a user.
+     *
+     * @param username The username of the user.
+     * @return The candidates, without duplicates.
+     */
+    private List<PersonSuggestion> loadPool(String username) {
+        Map<String, PersonSuggestion> candidates = new LinkedHashMap<>();
+        add(candidates, personRepository.findFriendsOfFriendsSuggestions(username, poolSize));
+
+        List<Long> currentPopularIds = popularIds;
+        if (candidates.size() < poolSize && !currentPopularIds.isEmpty()) {
+            add(candidates, personRepository.findSuggestionsAmong(username, currentPopularIds));
+        }
+        if (candidates.size() < poolSize) {
+            add(candidates, personRepository.findNewestSuggestions(username, poolSize));
+        }
+        return List.copyOf(candidates.values());
+    }
+
+    private void add(Map<String, PersonSuggestion> candidates, List<PersonSuggestion> suggestions) {
+        for (PersonSuggestion suggestion : suggestions) {
+            if (candidates.size() == poolSize) {
+                return;
+            }
+            candidates.putIfAbsent(suggestion.getUsername(), suggestion);
+        }
+    }
+
+    private static boolean contains(List<PersonSuggestion> pool, String username) {
+        return pool.stream().anyMatch(suggestion -> suggestion.getUsername().equals(username));
+    }
+
+    private static List<PersonSuggestion> without(List<PersonSuggestion> pool, String username) {
+        return contains(pool, username)
+                ? pool.stream().filter(suggestion -> !suggestion.getUsername().equals(username)).toList()
+                : pool;
+    }
+}
@@ -0,0 +1,246 @@
+package com.instagram.demo.service.timeline;
+
+import com.instagram.demo.data.projection.person.PersonFeed;
+import com.instagram.demo.data.projection.post.PostFeedProjection;
+import com.instagram.demo.data.repository.PersonRepository;
+import com.instagram.demo.data.repository.TimelineRepository;
+import com.instagram.demo.data.schema.Post;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Maintains the materialized home timelines and serves the feed from them.
+ * Posts are fanned out to the timelines of the uploader's followers when they are created,
+ * except for celebrities whose follower count reaches {@code timeline.celebrity-threshold}:
+ * their posts are pulled at read time and merged with the materialized entries (hybrid mode),
+ * so that a single post never triggers millions of timeline writes.
+ */
+@Service
+public class HomeTimelineService {
+    /**
+     * Logger instance for logging messages related to HomeTimelineService class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(HomeTimelineService.class);
+
+    /**
+     * Date after every post, from which the first slice of a timeline is read.
+     */
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    /**
+     * Repository for maintaining and reading the materialized timelines.
+     */
+    private final TimelineRepository timelineRepository;
+
+    /**
+     * Repository for performing CRUD operations on persons (users).
+     */
+    private final PersonRepository personRepository;
+
+    /**
+     * Number of followers from which an uploader is served in pull mode.
+     */
+    private final long celebrityThreshold;
+
+    /**
+     * Number of recent posts copied into a timeline when a person starts following someone.
+     */
+    private final int backfillSize;
+
+    /**
+     * Number of followers whose timelines are filled by each statement when an uploader leaves pull mode.
+     */
+    private final int fanOutBatchSize;
+
+    /**
+     * IDs of the uploaders currently served in pull mode, loaded on startup and refreshed by {@link #refreshCelebrities()}.
+     */
+    private volatile Set<Long> celebrityIds = Set.of();
+
+    public HomeTimelineService(TimelineRepository timelineRepository,
+                               PersonRepository personRepository,
+                               @Value("${timeline.celebrity-threshold:10000}") long celebrityThreshold,
+                               @Value("${timeline.backfill-size:100}") int backfillSize,
+                               @Value("${timeline.fan-out-batch-size:1000}") int fanOutBatchSize) {
+        this.timelineRepository = timelineRepository;
+        this.personRepository = personRepository;
+        this.celebrityThreshold = celebrityThreshold;
+        this.backfillSize = backfillSize;
+        this.fanOutBatchSize = fanOutBatchSize;
+    }
+
+    /**
+     * Retrieves a slice of the home timeline of a user.
+     * No total is counted, as counting the hybrid timeline would read every post it merges.
+     *
+     * @param username The username of the user whose timeline is read.
+     * @param pageable The pagination information.
+     * @return A slice of post feed projections ordered by date descending.
+     * @throws UsernameNotFoundException if the user does not exist.
+     */
+    public Slice<PostFeedProjection> feed(String username, Pageable pageable) {
+        Long ownerId = findOwnerId(username);
+        Set<Long> followedCelebrityIds = findFollowedCelebrityIds(ownerId);
+
+        return followedCelebrityIds.isEmpty()
+                ? timelineRepository.findTimelineByOwnerId(ownerId, pageable)
+                : hybridFeed(ownerId, followedCelebrityIds, LATEST, Long.MAX_VALUE, pageable);
+    }
+
+    /**
+     * Retrieves a slice of the home timeline of a user starting right after a keyset cursor.
+     *
+     * @param username The username of the user whose timeline is read.
+     * @param date     The date of the last post of the previous slice.
+     * @param id       The ID of the last post of the previous slice.
+     * @param size     The maximum number of posts to return.
+     * @return A slice of post feed projections ordered by date and ID descending.
+     * @throws UsernameNotFoundException if the user does not exist.
+     */
+    public Slice<PostFeedProjection> feedBefore(String username, LocalDateTime date, Long id, int size) {
+        Long ownerId = findOwnerId(username);
+        Set<Long> followedCelebrityIds = findFollowedCelebrityIds(ownerId);
+        Pageable pageable = PageRequest.ofSize(size);
+
+        return followedCelebrityIds.isEmpty()
+                ? timelineRepository.findTimelineByOwnerIdBefore(ownerId, date, id, pageable)
+                : hybridFeed(ownerId, followedCelebrityIds, date, id, pageable);
+    }
+
+    /**
+     * Writes a newly created post into the timelines of its uploader's followers,
+     * unless the uploader is a celebrity served in pull mode.
+     *
+     * @param post The saved post.
+     */
+    public void onPostCreated(Post post) {
+        if (!celebrityIds.contains(post.getUploader().getId())) {
+            int written = timelineRepository.fanOutPost(post.getId());
+            logger.debug("Post {} fanned out to {} timelines", post.getId(), written);
+        }
+    }
+
+    /**
+     * Copies the recent posts of a followee into the follower's timeline.
+     *
+     * @param followerId The ID of the new follower.
+     * @param followeeId The ID of the followed person.
+     */
+    public void onFollow(Long followerId, Long followeeId) {
+        if (!celebrityIds.contains(followeeId)) {
+            timelineRepository.backfill(followerId, followeeId, backfillSize);
+        }
+    }
+
+    /**
+     * Removes the posts of an unfollowed person from the former follower's timeline.
+     *
+     * @param followerId The ID of the former follower.
+     * @param followeeId The ID of the unfollowed person.
+     */
+    public void onUnfollow(Long followerId, Long followeeId) {
+        timelineRepository.deleteByOwnerIdAndUploaderId(followerId, followeeId);
+    }
+
+    /**
+     * Removes the timeline of a person and every entry pointing to their posts before they are deleted.
+     *
+     * @param personId The ID of the person being deleted.
+     */
+    public void onPersonDeleted(Long personId) {
+        timelineRepository.deleteByPersonId(personId);
+    }
+
+    /**
+     * Reads a slice of the hybrid timeline of a person, one post more than requested telling whether a next one exists.
+     *
+     * @param ownerId      The ID of the person whose timeline is read.
+     * @param celebrityIds The IDs of the celebrities followed by the person.
+     * @param date         The date of the last post of the previous slice.
+     * @param id           The ID of the last post of the previous slice.
+     * @param pageable     The pagination information, relative to the cursor.
+     * @return A slice of post feed projections ordered by date and ID descending.
+     */
+    private Slice<PostFeedProjection> hybridFeed(Long ownerId,
+                                                 Set<Long> celebrityIds,
+                                                 LocalDateTime date,
+                                                 Long id,
+                                                 Pageable pageable) {
+        List<PostFeedProjection> posts = timelineRepository.findHybridTimelineByOwnerIdBefore(
+                ownerId, celebrityIds, date, id, pageable.getOffset(), pageable.getPageSize() + 1);
+        boolean hasNext = posts.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? posts.subList(0, pageable.getPageSize()) : posts, pageable, hasNext);
+    }
+
+    /**
+     * Finds the ID of the owner of a timeline.
+     *
+     * @param username The username of the owner.
+     * @return The ID of the owner.
+     * @throws UsernameNotFoundException if the user does not exist.
+     */
+    private Long findOwnerId(String username) {
+        return personRepository
+                .findIdByUsername(username)
+                .map(PersonFeed::getId)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+    }
+
+    /**
+     * Finds the celebrities followed by the owner of a timeline, whose posts must be pulled at read time.
+     *
+     * @param ownerId The ID of the owner.
+     * @return The IDs of the followed celebrities.
+     */
+    private Set<Long> findFollowedCelebrityIds(Long ownerId) {
+        Set<Long> currentCelebrityIds = celebrityIds;
+        return currentCelebrityIds.isEmpty()
+                ? Set.of()
+                : personRepository.findFolloweeIdsAmong(ownerId, currentCelebrityIds);
+    }
+
+    /**
+     * Recomputes the set of celebrities served in pull mode, once on startup before any post can be created,
+     * so that the posts of celebrities are never fanned out for lack of a refresh, then periodically.
+     * Uploaders dropping below the threshold get their posts fanned out again, so they do not vanish from feeds:
+     * like on a follow, only their {@code timeline.backfill-size} most recent posts are copied, to
+     * {@code timeline.fan-out-batch-size} followers per statement, so that no single statement writes millions of rows.
+     */
+    @PostConstruct
+    @Scheduled(
+            initialDelayString = "${timeline.celebrity-refresh-interval:60000}",
+            fixedDelayString = "${timeline.celebrity-refresh-interval:60000}"
+    )
+    public void refreshCelebrities() {
+        Set<Long> refreshed = personRepository.findIdsWithFollowersCountAtLeast(celebrityThreshold);
+
+        Set<Long> demoted = new HashSet<>(celebrityIds);
+        demoted.removeAll(refreshed);
+        celebrityIds = Set.copyOf(refreshed);
+
+        for (Long uploaderId : demoted) {
+            int batches = 0;
+            Optional<Long> lastFollowerId = Optional.of(0L);
+            while ((lastFollowerId = timelineRepository.fanOutUploaderToFollowers(
+                    uploaderId, lastFollowerId.get(), fanOutBatchSize, backfillSize)).isPresent()) {
+                batches++;
+            }
+            logger.debug("Uploader {} left pull mode, fanned out in {} batches", uploaderId, batches);
+        }
+    }
+}
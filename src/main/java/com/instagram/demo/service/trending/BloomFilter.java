@@ -0,0 +1,50 @@
+package com.instagram.demo.service.trending;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter: approximate membership of a stream of 64-bit hashes in fixed memory.
+ * Each hash sets {@code hashes} bits, and is reported as already added when all of them were set,
+ * which never misses an added hash and reports an absent one with probability about
+ * {@code (1 - exp(-hashes * added / bits)) ^ hashes}. Words are atomic, so that concurrent writers never block each other.
+ */
+final class BloomFilter {
+    /**
+     * Number of bits.
+     */
+    private final int bits;
+
+    /**
+     * Number of bits set per hash.
+     */
+    private final int hashes;
+
+    /**
+     * Bits, 64 per word.
+     */
+    private final AtomicLongArray words;
+
+    BloomFilter(int bits, int hashes) {
+        this.bits = bits;
+        this.hashes = hashes;
+        this.words = new AtomicLongArray((bits + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    /**
+     * Adds a hash.
+     *
+     * @param hash The hash, spread over its 64 bits.
+     * @return {@code true} if the hash was not added before, {@code false} if it probably was.
+     */
+    boolean add(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean added = false;
+        for (int i = 0; i < hashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bits);
+            long mask = 1L << bit;
+            added |= (words.getAndAccumulate(bit / Long.SIZE, mask, (word, set) -> word | set) & mask) == 0;
+        }
+        return added;
+    }
+}
@@ -0,0 +1,111 @@
+package com.instagram.demo.service.trending;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min Sketch: approximate counts of a stream of strings in fixed memory.
+ * Each string is counted in one cell of each of the {@code depth} rows, and its estimate is the smallest of these
+ * cells, which never underestimates and overestimates by at most {@code e * total / width}
+ * with probability {@code 1 - exp(-depth)}. Cells are atomic, so that concurrent writers never block each other.
+ */
+final class CountMinSketch {
+    /**
+     * Number of cells per row.
+     */
+    private final int width;
+
+    /**
+     * Number of rows, each with its own hash function.
+     */
+    private final int depth;
+
+    /**
+     * Cells of all rows, row after row.
+     */
+    private final AtomicLongArray cells;
+
+    CountMinSketch(int width, int depth) {
+        this.width = width;
+        this.depth = depth;
+        this.cells = new AtomicLongArray(width * depth);
+    }
+
+    int width() {
+        return width;
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    /**
+     * Counts occurrences of a string.
+     *
+     * @param item  The string.
+     * @param count The number of occurrences.
+     * @return The estimate of the string after the update.
+     */
+    long add(String item, long count) {
+        long estimate = Long.MAX_VALUE;
+        long hash = mix(item.hashCode());
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, cells.addAndGet(index(hash, row), count));
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates the number of occurrences of a string.
+     *
+     * @param item The string.
+     * @return An estimate never below the actual count.
+     */
+    long estimate(String item) {
+        long estimate = Long.MAX_VALUE;
+        long hash = mix(item.hashCode());
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, cells.get(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.writeInt(width);
+        output.writeInt(depth);
+        for (int i = 0; i < cells.length(); i++) {
+            output.writeLong(cells.get(i));
+        }
+    }
+
+    static CountMinSketch read(DataInput input) throws IOException {
+        CountMinSketch sketch = new CountMinSketch(input.readInt(), input.readInt());
+        for (int i = 0; i < sketch.cells.length(); i++) {
+            sketch.cells.set(i, input.readLong());
+        }
+        return sketch;
+    }
+
+    /**
+     * Derives the cell of a row from two halves of the hash (Kirsch-Mitzenmacher),
+     * which is as good as independent hash functions for this purpose.
+     */
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return row * width + Math.floorMod(h1 + row * h2, width);
+    }
+
+    /**
+     * Spreads a hash code over 64 bits (SplitMix64 finalizer).
+     * {@link String#hashCode()} is specified, so the cells stay valid across restarts.
+     */
+    static long mix(long hashCode) {
+        long z = hashCode * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,10 @@
+package com.instagram.demo.service.trending;
+
+/**
+ * A hashtag trending over a window.
+ *
+ * @param hashtag The lowercase hashtag.
+ * @param count   The estimated number of times the hashtag was posted or liked over the window.
+ */
+public record TrendingHashtag(String hashtag, long count) {
+}
@@ -0,0 +1,407 @@
+package com.instagram.demo.service.trending;
+
+import com.instagram.demo.data.repository.PostRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tracks the hashtags trending over each {@link TrendingWindow} from the stream of posted and liked hashtags,
+ * in memory and without ever reading {@code post_hashtags} to rank them.
+ * Each window is a ring of time buckets, each bucket counting hashtags in a {@link CountMinSketch} and keeping
+ * the hashtags with the highest estimates as candidates, so that the top of a window is ranked by summing
+ * the estimates of the candidates of its live buckets. Expired buckets are replaced as time goes by.
+ * The buckets are periodically written to {@code trending.snapshot-path} and read back on startup,
+ * so that a restarted instance does not start from empty windows. Each instance counts its own traffic.
+ */
+@Service
+public class TrendingHashtagService {
+    /**
+     * Logger instance for logging messages related to TrendingHashtagService class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(TrendingHashtagService.class);
+
+    /**
+     * Version of the snapshot format, snapshots of other versions are ignored.
+     */
+    private static final int SNAPSHOT_VERSION = 1;
+
+    /**
+     * Repository for performing CRUD operations on posts.
+     */
+    private final PostRepository postRepository;
+
+    /**
+     * Clock dating the recorded hashtags.
+     */
+    private final Clock clock;
+
+    /**
+     * Number of cells per row of the sketches.
+     */
+    private final int sketchWidth;
+
+    /**
+     * Number of rows of the sketches.
+     */
+    private final int sketchDepth;
+
+    /**
+     * Number of candidates kept per bucket.
+     */
+    private final int candidates;
+
+    /**
+     * File the buckets are written to, or {@code null} to disable snapshots.
+     */
+    private final Path snapshotPath;
+
+    /**
+     * Buckets by window.
+     */
+    private final Map<TrendingWindow, BucketRing> rings = new EnumMap<>(TrendingWindow.class);
+
+    /**
+     * Whether hashtags were recorded since the last snapshot.
+     */
+    private final AtomicBoolean changed = new AtomicBoolean();
+
+    @Autowired
+    public TrendingHashtagService(PostRepository postRepository,
+                                  @Value("${trending.sketch.width:1024}") int sketchWidth,
+                                  @Value("${trending.sketch.depth:4}") int sketchDepth,
+                                  @Value("${trending.candidates:100}") int candidates,
+                                  @Value("${trending.snapshot-path:}") String snapshotPath) {
+        this(postRepository, Clock.systemUTC(), sketchWidth, sketchDepth, candidates,
+                snapshotPath.isBlank() ? null : Path.of(snapshotPath));
+    }
+
+    TrendingHashtagService(PostRepository postRepository, Clock clock,
+                           int sketchWidth, int sketchDepth, int candidates, Path snapshotPath) {
+        this.postRepository = postRepository;
+        this.clock = clock;
+        this.sketchWidth = sketchWidth;
+        this.sketchDepth = sketchDepth;
+        this.candidates = candidates;
+        this.snapshotPath = snapshotPath;
+        for (TrendingWindow window : TrendingWindow.values()) {
+            rings.put(window, new BucketRing(window));
+        }
+    }
+
+    /**
+     * Counts hashtags that were just posted, either with a new post or added to an edited post.
+     *
+     * @param hashtags The hashtags, in any case and with or without {@code #}.
+     */
+    public void recordHashtags(Collection<String> hashtags) {
+        long now = clock.millis();
+        for (String hashtag : normalize(hashtags)) {
+            for (BucketRing ring : rings.values()) {
+                ring.current(now).add(hashtag, 1, candidates);
+            }
+        }
+        changed.set(true);
+    }
+
+    /**
+     * Counts the hashtags of a post that was just liked.
+     * The hashtags are read through the cache of the post hashtags.
+     * A user liking the same post again after unliking it within a bucket is not counted twice in that bucket,
+     * so that toggling a like cannot inflate a hashtag. The likes counted are remembered by a {@link BloomFilter}
+     * as large as the sketch of the bucket, so a few distinct likes may be taken for repeated ones once a bucket
+     * holds many likes, and they are not part of the snapshots.
+     *
+     * @param postId   The ID of the liked post.
+     * @param username The username of the user who liked the post.
+     */
+    public void recordLike(Long postId, String username) {
+        long now = clock.millis();
+        long like = likeHash(postId, username);
+        Set<String> hashtags = null;
+        for (BucketRing ring : rings.values()) {
+            Bucket bucket = ring.current(now);
+            if (bucket.likes.add(like)) {
+                if (hashtags == null) {
+                    hashtags = normalize(postRepository.findHashtagsByPostId(postId));
+                }
+                for (String hashtag : hashtags) {
+                    bucket.add(hashtag, 1, candidates);
+                }
+            }
+        }
+        changed.set(true);
+    }
+
+    /**
+     * Ranks the hashtags trending over a window.
+     *
+     * @param window The window.
+     * @param count  The maximum number of hashtags.
+     * @return The hashtags with the highest estimated counts over the window, from the highest.
+     */
+    public List<TrendingHashtag> top(TrendingWindow window, int count) {
+        List<Bucket> live = rings.get(window).live(clock.millis());
+        Set<String> hashtags = new HashSet<>();
+        for (Bucket bucket : live) {
+            hashtags.addAll(bucket.candidates.keySet());
+        }
+
+        PriorityQueue<TrendingHashtag> top = new PriorityQueue<>(Comparator.comparingLong(TrendingHashtag::count));
+        for (String hashtag : hashtags) {
+            long estimate = 0;
+            for (Bucket bucket : live) {
+                estimate += bucket.sketch.estimate(hashtag);
+            }
+            top.add(new TrendingHashtag(hashtag, estimate));
+            if (top.size() > count) {
+                top.poll();
+            }
+        }
+
+        List<TrendingHashtag> ranked = new ArrayList<>(top);
+        ranked.sort(Comparator.comparingLong(TrendingHashtag::count).reversed()
+                .thenComparing(TrendingHashtag::hashtag));
+        return ranked;
+    }
+
+    /**
+     * Reads back the live buckets of the last snapshot, if any.
+     */
+    @PostConstruct
+    public void restore() {
+        if (snapshotPath == null) {
+            return;
+        }
+
+        long now = clock.millis();
+        int restored = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (input.readInt() != SNAPSHOT_VERSION) {
+                logger.info("Ignoring trending hashtags snapshot {} of another version", snapshotPath);
+                return;
+            }
+            int windows = input.readInt();
+            for (int i = 0; i < windows; i++) {
+                BucketRing ring = rings.get(TrendingWindow.valueOf(input.readUTF()));
+                int buckets = input.readInt();
+                for (int j = 0; j < buckets; j++) {
+                    Bucket bucket = Bucket.read(input);
+                    if (bucket.sketch.width() == sketchWidth && bucket.sketch.depth() == sketchDepth
+                            && ring.restore(bucket, now)) {
+                        restored++;
+                    }
+                }
+            }
+            logger.info("Restored {} trending hashtags buckets from {}", restored, snapshotPath);
+        } catch (NoSuchFileException e) {
+            logger.debug("No trending hashtags snapshot at {}", snapshotPath);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Could not restore the trending hashtags from {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the live buckets to the snapshot file, replacing the previous snapshot atomically,
+     * periodically and before the application stops.
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${trending.snapshot-interval:60000}")
+    public void snapshot() {
+        if (snapshotPath == null || !changed.getAndSet(false)) {
+            return;
+        }
+
+        long now = clock.millis();
+        Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try {
+            Path directory = snapshotPath.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(SNAPSHOT_VERSION);
+                output.writeInt(rings.size());
+                for (Map.Entry<TrendingWindow, BucketRing> entry : rings.entrySet()) {
+                    List<Bucket> live = entry.getValue().live(now);
+                    output.writeUTF(entry.getKey().name());
+                    output.writeInt(live.size());
+                    for (Bucket bucket : live) {
+                        bucket.write(output);
+                    }
+                }
+            }
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Wrote the trending hashtags to {}", snapshotPath);
+        } catch (IOException e) {
+            changed.set(true);
+            logger.warn("Could not write the trending hashtags to {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    /**
+     * Hashes a like over 64 bits from the whole post ID and every character of the username (FNV-1a),
+     * so that distinct likes only collide by chance.
+     */
+    private static long likeHash(long postId, String username) {
+        long hash = CountMinSketch.mix(postId);
+        for (int i = 0; i < username.length(); i++) {
+            hash = (hash ^ username.charAt(i)) * 0x100000001B3L;
+        }
+        return CountMinSketch.mix(hash);
+    }
+
+    private static Set<String> normalize(Collection<String> hashtags) {
+        Set<String> normalized = new HashSet<>();
+        for (String hashtag : hashtags) {
+            String tag = hashtag.strip().toLowerCase(Locale.ROOT);
+            tag = tag.startsWith("#") ? tag.substring(1) : tag;
+            if (!tag.isEmpty()) {
+                normalized.add(tag);
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * The buckets of a window, the bucket of epoch {@code e} (time divided by the bucket duration)
+     * being stored in slot {@code e % buckets}, where it replaces the expired bucket of epoch {@code e - buckets}.
+     */
+    private final class BucketRing {
+        private final long bucketMillis;
+        private final AtomicReferenceArray<Bucket> buckets;
+
+        BucketRing(TrendingWindow window) {
+            this.bucketMillis = window.bucketDuration().toMillis();
+            this.buckets = new AtomicReferenceArray<>(window.buckets());
+        }
+
+        Bucket current(long now) {
+            long epoch = now / bucketMillis;
+            int slot = (int) (epoch % buckets.length());
+            while (true) {
+                Bucket bucket = buckets.get(slot);
+                if (bucket != null && bucket.epoch >= epoch) {
+                    return bucket;
+                }
+                Bucket fresh = new Bucket(epoch, new CountMinSketch(sketchWidth, sketchDepth));
+                if (buckets.compareAndSet(slot, bucket, fresh)) {
+                    return fresh;
+                }
+            }
+        }
+
+        List<Bucket> live(long now) {
+            long epoch = now / bucketMillis;
+            List<Bucket> live = new ArrayList<>(buckets.length());
+            for (int slot = 0; slot < buckets.length(); slot++) {
+                Bucket bucket = buckets.get(slot);
+                if (bucket != null && isLive(bucket, epoch)) {
+                    live.add(bucket);
+                }
+            }
+            return live;
+        }
+
+        boolean restore(Bucket bucket, long now) {
+            if (!isLive(bucket, now / bucketMillis)) {
+                return false;
+            }
+            buckets.set((int) (bucket.epoch % buckets.length()), bucket);
+            return true;
+        }
+
+        private boolean isLive(Bucket bucket, long epoch) {
+            return bucket.epoch > epoch - buckets.length() && bucket.epoch <= epoch;
+        }
+    }
+
+    /**
+     * The hashtags counted during one bucket duration.
+     * A candidate is added or updated with its estimate every time it is counted, and the candidates with the lowest
+     * estimates are dropped once there are twice as many as needed, to come back if they are counted again.
+     * The likes already counted are remembered in a Bloom filter taking as much memory as the sketch.
+     */
+    private static final class Bucket {
+        private final long epoch;
+        private final CountMinSketch sketch;
+        private final ConcurrentHashMap<String, Long> candidates = new ConcurrentHashMap<>();
+        private final BloomFilter likes;
+
+        Bucket(long epoch, CountMinSketch sketch) {
+            this.epoch = epoch;
+            this.sketch = sketch;
+            this.likes = new BloomFilter(sketch.width() * sketch.depth() * Long.BYTES * Byte.SIZE, sketch.depth());
+        }
+
+        void add(String hashtag, long count, int capacity) {
+            candidates.merge(hashtag, sketch.add(hashtag, count), Math::max);
+            if (candidates.size() > 2 * capacity) {
+                trim(capacity);
+            }
+        }
+
+        private synchronized void trim(int capacity) {
+            if (candidates.size() <= 2 * capacity) {
+                return;
+            }
+            candidates.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .skip(capacity)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(candidates::remove);
+        }
+
+        void write(DataOutput output) throws IOException {
+            output.writeLong(epoch);
+            sketch.write(output);
+            Map<String, Long> copy = Map.copyOf(candidates);
+            output.writeInt(copy.size());
+            for (Map.Entry<String, Long> candidate : copy.entrySet()) {
+                output.writeUTF(candidate.getKey());
+                output.writeLong(candidate.getValue());
+            }
+        }
+
+        static Bucket read(DataInput input) throws IOException {
+            Bucket bucket = new Bucket(input.readLong(), CountMinSketch.read(input));
+            int size = input.readInt();
+            for (int i = 0; i < size; i++) {
+                bucket.candidates.put(input.readUTF(), input.readLong());
+            }
+            return bucket;
+        }
+    }
+}
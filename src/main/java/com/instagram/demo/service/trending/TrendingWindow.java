@@ -0,0 +1,43 @@
+package com.instagram.demo.service.trending;
+
+import java.time.Duration;
+
+/**
+ * The periods over which hashtags trend, each split into buckets that expire one at a time.
+ * The current bucket is partially elapsed, so a window covers between {@code buckets - 1} and {@code buckets}
+ * bucket durations.
+ */
+public enum TrendingWindow {
+    /**
+     * The last hour, in buckets of 5 minutes.
+     */
+    HOUR(Duration.ofMinutes(5), 12),
+
+    /**
+     * The last day, in buckets of 1 hour.
+     */
+    DAY(Duration.ofHours(1), 24);
+
+    /**
+     * Duration of a bucket.
+     */
+    private final Duration bucketDuration;
+
+    /**
+     * Number of buckets in the window.
+     */
+    private final int buckets;
+
+    TrendingWindow(Duration bucketDuration, int buckets) {
+        this.bucketDuration = bucketDuration;
+        this.buckets = buckets;
+    }
+
+    public Duration bucketDuration() {
+        return bucketDuration;
+    }
+
+    public int buckets() {
+        return buckets;
+    }
+}
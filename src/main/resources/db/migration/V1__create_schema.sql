@@ -0,0 +1,72 @@
+-- Tables of the entities in com.instagram.demo.data.schema, which Hibernate validates at startup
+
+CREATE TABLE person
+(
+    id        BIGSERIAL PRIMARY KEY,
+    username  VARCHAR(20)  NOT NULL UNIQUE,
+    email     VARCHAR(255) NOT NULL UNIQUE,
+    password  VARCHAR(255) NOT NULL,
+    firstname VARCHAR(20)  NOT NULL,
+    lastname  VARCHAR(20)  NOT NULL,
+    bio       VARCHAR(140) NOT NULL,
+    photo     VARCHAR(255) NOT NULL,
+    validated BOOLEAN      NOT NULL
+);
+
+CREATE TABLE post
+(
+    id            BIGSERIAL PRIMARY KEY,
+    description   VARCHAR(140) NOT NULL,
+    image         VARCHAR(255) NOT NULL,
+    date          TIMESTAMP(6) NOT NULL,
+    uploader_id   BIGINT       NOT NULL REFERENCES person,
+    like_count    BIGINT DEFAULT 0,
+    comment_count BIGINT DEFAULT 0
+);
+
+CREATE TABLE post_hashtags
+(
+    post_id  BIGINT NOT NULL REFERENCES post,
+    hashtags VARCHAR(255)
+);
+
+CREATE TABLE comment
+(
+    id        BIGSERIAL PRIMARY KEY,
+    comment   VARCHAR(50)  NOT NULL,
+    date      TIMESTAMP(6) NOT NULL,
+    author_id BIGINT       NOT NULL REFERENCES person,
+    post_id   BIGINT       NOT NULL REFERENCES post
+);
+
+CREATE TABLE person_followers
+(
+    followees_id BIGINT NOT NULL REFERENCES person,
+    followers_id BIGINT NOT NULL REFERENCES person,
+    PRIMARY KEY (followees_id, followers_id)
+);
+
+CREATE TABLE person_liked_posts
+(
+    liked_posts_id BIGINT NOT NULL REFERENCES post,
+    likers_id      BIGINT NOT NULL REFERENCES person,
+    PRIMARY KEY (liked_posts_id, likers_id)
+);
+
+CREATE TABLE timeline_entry
+(
+    id       BIGSERIAL PRIMARY KEY,
+    owner_id BIGINT       NOT NULL REFERENCES person,
+    post_id  BIGINT       NOT NULL REFERENCES post,
+    date     TIMESTAMP(6) NOT NULL,
+    UNIQUE (owner_id, post_id)
+);
+
+-- The people a person follows, the primary key serving their followers
+CREATE INDEX person_followers_follower_idx ON person_followers (followers_id, followees_id);
+
+-- Home timeline pages, newest first
+CREATE INDEX timeline_entry_owner_date_idx ON timeline_entry (owner_id, date DESC, post_id DESC);
+
+-- Removal of a deleted post from every timeline
+CREATE INDEX timeline_entry_post_idx ON timeline_entry (post_id);
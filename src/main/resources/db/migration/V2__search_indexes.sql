@@ -0,0 +1,16 @@
+-- Search indexes
+
+-- Trigram matching, for substring searches in post descriptions
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Case-insensitive prefix searches on people: with the "C" collation, LIKE 'abc%' becomes a range scan
+-- that also returns the rows in index order, so that LIMIT stops after a few index entries
+CREATE INDEX IF NOT EXISTS person_username_search_idx ON person (lower(username) COLLATE "C");
+CREATE INDEX IF NOT EXISTS person_firstname_search_idx ON person (lower(firstname) COLLATE "C");
+CREATE INDEX IF NOT EXISTS person_lastname_search_idx ON person (lower(lastname) COLLATE "C");
+
+-- Case-insensitive exact and prefix searches on hashtags
+CREATE INDEX IF NOT EXISTS post_hashtags_search_idx ON post_hashtags (lower(hashtags) COLLATE "C", post_id);
+
+-- Case-insensitive substring searches on post descriptions (ILIKE '%abc%')
+CREATE INDEX IF NOT EXISTS post_description_search_idx ON post USING gin (description gin_trgm_ops);
@@ -0,0 +1,23 @@
+-- Indexes matched to the repository queries, checked by QueryPlanTest
+
+-- Profile previews and feeds, newest first: the posts of one uploader, or of the people followed,
+-- are read in index order, so that a page stops after its last row instead of sorting every post
+CREATE INDEX post_uploader_date_idx ON post (uploader_id, date DESC, id DESC);
+
+-- Comment pages of a post, newest first, and the comments deleted with their post
+CREATE INDEX comment_post_date_idx ON comment (post_id, date DESC, id DESC);
+
+-- The comments of a person, whose counts are decremented when the person is deleted
+CREATE INDEX comment_author_idx ON comment (author_id);
+
+-- The posts a person likes, for the like statuses of a page and the likes deleted with the person,
+-- the primary key serving the likers of a post
+CREATE INDEX person_liked_posts_liker_idx ON person_liked_posts (likers_id, liked_posts_id);
+
+-- The hashtags of a post, read with the post and replaced when it is edited.
+-- Unique, so that concurrent edits adding the same hashtag insert it once: the duplicates already there are removed
+DELETE FROM post_hashtags duplicate
+USING post_hashtags kept
+WHERE duplicate.post_id = kept.post_id AND duplicate.hashtags = kept.hashtags AND duplicate.ctid > kept.ctid;
+
+CREATE UNIQUE INDEX post_hashtags_post_idx ON post_hashtags (post_id, hashtags);
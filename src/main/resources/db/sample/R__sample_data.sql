@@ -1,3 +1,5 @@
+-- Sample data of the development database, applied after the migrations, outside the prod profile
+
 -- -- Inserting data for Person table
 -- INSERT INTO Person (username, email, password, firstname, lastname, bio)
 -- VALUES
@@ -103,3 +105,14 @@ VALUES (1, 2), -- John follows Jane
 -- Likes
 INSERT INTO person_liked_posts (liked_posts_id, likers_id)
 VALUES (2,2); -- Jane likes her own unique post
+
+-- Home timelines
+INSERT INTO timeline_entry (owner_id, post_id, date)
+SELECT pf.followers_id, p.id, p.date
+FROM person_followers pf
+         JOIN post p ON p.uploader_id = pf.followees_id;
+
+-- Denormalized counters
+UPDATE post
+SET like_count    = (SELECT COUNT(*) FROM person_liked_posts l WHERE l.liked_posts_id = post.id),
+    comment_count = (SELECT COUNT(*) FROM comment c WHERE c.post_id = post.id);
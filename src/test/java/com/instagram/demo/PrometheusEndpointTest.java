@@ -0,0 +1,45 @@
+package com.instagram.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the Prometheus scrape endpoint exports the request, repository, connection pool and Hibernate metrics,
+ * with the SLO buckets of the request and repository timers, which the query count meters must not inherit.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability
+class PrometheusEndpointTest {
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    void exportsMetrics() {
+        TestRestTemplate user = restTemplate.withBasicAuth("john_doe", "password123");
+        assertEquals(HttpStatus.OK, user.getForEntity("/posts/1", String.class).getStatusCode());
+
+        ResponseEntity<String> scrape = user.getForEntity("/actuator/prometheus", String.class);
+        assertEquals(HttpStatus.OK, scrape.getStatusCode());
+        String metrics = scrape.getBody();
+        assertTrue(metrics.contains("http_server_requests_seconds_bucket{"));
+        assertTrue(metrics.contains("uri=\"/posts/{postId}\""));
+        assertTrue(metrics.contains("le=\"0.25\""));
+        assertTrue(metrics.contains("spring_data_repository_invocations_seconds_bucket{"));
+        assertTrue(metrics.contains("repository=\"PostRepository\""));
+        assertTrue(metrics.contains("hikaricp_connections_active{"));
+        assertTrue(metrics.contains("hibernate_statements_total{"));
+        assertTrue(metrics.contains("http_queries_statements_bucket{"));
+        assertTrue(metrics.contains("http_queries_time_seconds_count{"));
+        assertFalse(metrics.contains("http_queries_time_seconds_bucket{"), "Query time inherited the request histogram");
+        assertFalse(metrics.contains("http_queries_duplicates_statements_bucket{"));
+    }
+}
@@ -0,0 +1,113 @@
+package com.instagram.demo.benchmark;
+
+import com.instagram.demo.DemoApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The application running against a {@link BenchmarkDatabase} seeded by the {@link BenchmarkDataSeeder}
+ * at the scale of {@code benchmark.scale} users (1000 by default).
+ * It is started quietly, on a random port, with the production logging levels and without query counting,
+ * so that the benchmarks measure the code paths rather than their instrumentation.
+ */
+public class BenchmarkContext implements AutoCloseable {
+    /**
+     * Number of seeded users.
+     */
+    private final int scale;
+
+    /**
+     * The database of the application.
+     */
+    private final BenchmarkDatabase database;
+
+    /**
+     * The running application.
+     */
+    private final ConfigurableApplicationContext applicationContext;
+
+    /**
+     * The ID of the first seeded user.
+     */
+    private final long firstUserId;
+
+    /**
+     * Starts the application and seeds its database.
+     *
+     * @param properties Additional properties of the application.
+     */
+    public BenchmarkContext(Map<String, Object> properties) {
+        scale = Integer.getInteger("benchmark.scale", 1000);
+        database = new BenchmarkDatabase();
+
+        Map<String, Object> defaults = new HashMap<>(database.properties());
+        defaults.put("server.port", 0);
+        defaults.put("logging.level.root", "warn");
+        defaults.put("logging.level.org.springframework", "warn");
+        defaults.put("logging.level.com.instagram.demo", "warn");
+        defaults.put("spring.jpa.properties.hibernate.show_sql", false);
+        defaults.put("spring.jpa.properties.hibernate.format_sql", false);
+        defaults.put("spring.devtools.restart.enabled", false);
+        defaults.put("query.count.enabled", false);
+        defaults.putAll(properties);
+        applicationContext = new SpringApplicationBuilder(DemoApplication.class)
+                .properties(defaults)
+                .run();
+
+        firstUserId = new BenchmarkDataSeeder(applicationContext.getBean(JdbcTemplate.class)).seed(scale);
+    }
+
+    /**
+     * @param type The type of the bean.
+     * @param <T>  The type of the bean.
+     * @return The bean of the application of the given type.
+     */
+    public <T> T getBean(Class<T> type) {
+        return applicationContext.getBean(type);
+    }
+
+    /**
+     * @return The number of seeded users.
+     */
+    public int scale() {
+        return scale;
+    }
+
+    /**
+     * @param user The number of the seeded user, from 1 to the scale.
+     * @return The username of the seeded user.
+     */
+    public String username(int user) {
+        return "user_" + user;
+    }
+
+    /**
+     * @param user The number of the seeded user, from 1 to the scale.
+     * @return The authentication of the seeded user, as the JWT filter would have set it.
+     */
+    public Authentication authentication(int user) {
+        return new UsernamePasswordAuthenticationToken(username(user), null, List.of(() -> "USER"));
+    }
+
+    /**
+     * @return The IDs of the posts of the seeded users.
+     */
+    public List<Long> postIds() {
+        return applicationContext.getBean(JdbcTemplate.class).queryForList(
+                "SELECT id FROM post WHERE uploader_id >= ? ORDER BY id", Long.class, firstUserId
+        );
+    }
+
+    @Override
+    public void close() throws Exception {
+        applicationContext.close();
+        database.close();
+    }
+}
@@ -0,0 +1,112 @@
+package com.instagram.demo.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Seeds synthetic users, posts, hashtags, follows, likes and comments, in proportion to a scale given in users.
+ * Every row is generated by the database itself with {@code generate_series}, so seeding takes
+ * a handful of statements whatever the scale. The seeded users are named {@code user_1} to {@code user_<scale>},
+ * all with the password {@code password}, each follows the next {@link #FOLLOWS_PER_USER} users,
+ * and their timelines and denormalized counters are filled in as the application would have.
+ */
+public class BenchmarkDataSeeder {
+    /**
+     * Number of posts of each user.
+     */
+    public static final int POSTS_PER_USER = 10;
+
+    /**
+     * Number of users each user follows.
+     */
+    public static final int FOLLOWS_PER_USER = 20;
+
+    /**
+     * Number of likes of each post.
+     */
+    public static final int LIKES_PER_POST = 10;
+
+    /**
+     * Number of comments on each post.
+     */
+    public static final int COMMENTS_PER_POST = 5;
+
+    /**
+     * JdbcTemplate running the seeding statements.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    public BenchmarkDataSeeder(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Seeds the database.
+     *
+     * @param scale The number of users to create.
+     * @return The ID of the first seeded user, the others following contiguously.
+     */
+    public long seed(int scale) {
+        if (scale <= FOLLOWS_PER_USER || scale <= LIKES_PER_POST || scale <= COMMENTS_PER_POST) {
+            throw new IllegalArgumentException("The scale must exceed " + FOLLOWS_PER_USER + " users");
+        }
+
+        jdbcTemplate.update("""
+                INSERT INTO person (username, email, password, firstname, lastname, bio, validated, photo)
+                SELECT 'user_' || g, 'user_' || g || '@example.com', 'password', 'First' || g, 'Last' || g,
+                       'Bio of user ' || g, g % 10 = 0, 'https://example.com/photos/' || g || '.jpg'
+                FROM generate_series(1, ?) g""", scale);
+        long firstId = jdbcTemplate.queryForObject(
+                "SELECT id FROM person WHERE username = 'user_1'", Long.class
+        );
+
+        jdbcTemplate.update("""
+                INSERT INTO post (description, image, date, uploader_id, like_count, comment_count)
+                SELECT 'Post ' || p || ' of user ' || u, 'https://example.com/images/' || u || '/' || p || '.jpg',
+                       LOCALTIMESTAMP - (u * ? + p) * INTERVAL '1 minute', ? + u - 1, 0, 0
+                FROM generate_series(1, ?) u, generate_series(1, ?) p""",
+                POSTS_PER_USER, firstId, scale, POSTS_PER_USER);
+
+        jdbcTemplate.update("""
+                INSERT INTO post_hashtags (post_id, hashtags)
+                SELECT id, tag
+                FROM post, LATERAL (VALUES ('tag' || id % 100), ('topic' || id % 37)) t(tag)
+                WHERE uploader_id >= ?""", firstId);
+
+        // user_u follows user_(u+1) to user_(u+FOLLOWS_PER_USER), wrapping around
+        jdbcTemplate.update("""
+                INSERT INTO person_followers (followees_id, followers_id)
+                SELECT ? + (u - 1 + k) % ?, ? + u - 1
+                FROM generate_series(1, ?) u, generate_series(1, ?) k""",
+                firstId, scale, firstId, scale, FOLLOWS_PER_USER);
+
+        jdbcTemplate.update("""
+                INSERT INTO person_liked_posts (liked_posts_id, likers_id)
+                SELECT id, ? + (id + k) % ?
+                FROM post, generate_series(1, ?) k
+                WHERE uploader_id >= ?""",
+                firstId, scale, LIKES_PER_POST, firstId);
+
+        jdbcTemplate.update("""
+                INSERT INTO comment (comment, date, author_id, post_id)
+                SELECT 'Comment ' || k || ' on post ' || id, date + k * INTERVAL '1 second', ? + (id * 7 + k) % ?, id
+                FROM post, generate_series(1, ?) k
+                WHERE uploader_id >= ?""",
+                firstId, scale, COMMENTS_PER_POST, firstId);
+
+        jdbcTemplate.update("""
+                UPDATE post
+                SET like_count = ?, comment_count = ?
+                WHERE uploader_id >= ?""",
+                LIKES_PER_POST, COMMENTS_PER_POST, firstId);
+
+        jdbcTemplate.update("""
+                INSERT INTO timeline_entry (owner_id, post_id, date)
+                SELECT pf.followers_id, p.id, p.date
+                FROM post p JOIN person_followers pf ON pf.followees_id = p.uploader_id
+                WHERE p.uploader_id >= ?
+                ON CONFLICT DO NOTHING""", firstId);
+
+        jdbcTemplate.execute("ANALYZE");
+        return firstId;
+    }
+}
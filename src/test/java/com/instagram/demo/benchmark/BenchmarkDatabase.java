@@ -0,0 +1,72 @@
+package com.instagram.demo.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * PostgreSQL database the benchmarks run against.
+ * By default, an embedded PostgreSQL server is started in a temporary directory and destroyed with the benchmark.
+ * Setting {@code benchmark.db.url}, with {@code benchmark.db.username} and {@code benchmark.db.password},
+ * runs against an existing database instead, which is recreated like when the application starts.
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+    /**
+     * The embedded server, or null when running against an existing database.
+     */
+    private final EmbeddedPostgres embeddedPostgres;
+
+    /**
+     * The JDBC URL of the database.
+     */
+    private final String url;
+
+    /**
+     * The user connecting to the database.
+     */
+    private final String username;
+
+    /**
+     * The password of the user.
+     */
+    private final String password;
+
+    public BenchmarkDatabase() {
+        String configuredUrl = System.getProperty("benchmark.db.url", "");
+        if (configuredUrl.isBlank()) {
+            try {
+                embeddedPostgres = EmbeddedPostgres.builder().start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start the embedded PostgreSQL server", e);
+            }
+            url = embeddedPostgres.getJdbcUrl("postgres", "postgres");
+            username = "postgres";
+            password = "postgres";
+        } else {
+            embeddedPostgres = null;
+            url = configuredUrl;
+            username = System.getProperty("benchmark.db.username", "postgres");
+            password = System.getProperty("benchmark.db.password", "mysecretpassword");
+        }
+    }
+
+    /**
+     * @return The datasource properties of the application connecting to the database.
+     */
+    public Map<String, Object> properties() {
+        return Map.of(
+                "spring.datasource.url", url,
+                "spring.datasource.username", username,
+                "spring.datasource.password", password
+        );
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (embeddedPostgres != null) {
+            embeddedPostgres.close();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.instagram.demo.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scripted load test of a running application, whose database was filled by the {@link SocialGraphGenerator}.
+ * Each of {@code load.clients} virtual users logs in as a random generated user. Once all of them are logged in,
+ * each repeatedly performs an action drawn from {@code load.mix}, without think time,
+ * until {@code load.duration} seconds have elapsed after {@code load.warm-up} seconds of warm-up:
+ * <ul>
+ *     <li>{@code feed}: reads a page of the home feed, remembering the posts it holds;</li>
+ *     <li>{@code profile}: reads the information, statistics and first post previews of a random user;</li>
+ *     <li>{@code post}: reads a remembered post with its first comments;</li>
+ *     <li>{@code like}: toggles the like of a remembered post;</li>
+ *     <li>{@code comment}: comments on a remembered post.</li>
+ * </ul>
+ * An action on a post reads the feed instead until the feed returned a post. Once done, the throughput
+ * and the p50, p90 and p99 latencies of each action are reported, with the requests shed with 503 and the errors.
+ * <p>
+ * Run with {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.instagram.demo.benchmark.LoadClient -Dload.users=100000}.
+ */
+public class LoadClient {
+    /**
+     * The actions of the virtual users.
+     */
+    enum Action {
+        FEED, PROFILE, POST, LIKE, COMMENT
+    }
+
+    /**
+     * Maximum number of posts each virtual user remembers.
+     */
+    private static final int REMEMBERED_POSTS = 100;
+
+    /**
+     * Base URL of the application.
+     */
+    private final String baseUrl;
+
+    /**
+     * Number of concurrent virtual users.
+     */
+    private final int clients;
+
+    /**
+     * Number of generated users to log in as and to view the profile of.
+     */
+    private final int users;
+
+    /**
+     * Duration of the warm-up, whose requests are not measured.
+     */
+    private final Duration warmUp;
+
+    /**
+     * Duration of the measurement.
+     */
+    private final Duration duration;
+
+    /**
+     * Cumulative weights of the actions, in the order of {@link Action}.
+     */
+    private final int[] cumulativeWeights = new int[Action.values().length];
+
+    /**
+     * The measurements of each action.
+     */
+    private final Map<Action, Measurements> measurements = new EnumMap<>(Action.class);
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public LoadClient(String baseUrl, int clients, int users, Duration warmUp, Duration duration,
+                      Map<Action, Integer> mix) {
+        this.baseUrl = baseUrl;
+        this.clients = clients;
+        this.users = users;
+        this.warmUp = warmUp;
+        this.duration = duration;
+        int sum = 0;
+        for (Action action : Action.values()) {
+            sum += mix.getOrDefault(action, 0);
+            cumulativeWeights[action.ordinal()] = sum;
+            measurements.put(action, new Measurements());
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("The mix must weigh at least one action");
+        }
+    }
+
+    /**
+     * Runs the load test and prints its report.
+     */
+    public void run() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            long loginStart = System.nanoTime();
+            List<Future<VirtualUser>> logins = new ArrayList<>();
+            for (int client = 0; client < clients; client++) {
+                SplittableRandom random = new SplittableRandom(client);
+                logins.add(executor.submit(() -> {
+                    VirtualUser user = new VirtualUser(SocialGraphGenerator.username(1 + random.nextInt(users)), random);
+                    return user.login() ? user : null;
+                }));
+            }
+            List<VirtualUser> loggedIn = new ArrayList<>();
+            for (Future<VirtualUser> login : logins) {
+                if (login.get() != null) {
+                    loggedIn.add(login.get());
+                }
+            }
+            System.out.printf("%d of %d clients logged in in %.1f s%n",
+                    loggedIn.size(), clients, (System.nanoTime() - loginStart) / 1e9);
+
+            long measureFrom = System.nanoTime() + warmUp.toNanos();
+            long end = measureFrom + duration.toNanos();
+            List<Future<?>> futures = new ArrayList<>();
+            for (VirtualUser user : loggedIn) {
+                futures.add(executor.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        long sent = System.nanoTime();
+                        Action action = user.perform(draw(user.random));
+                        long received = System.nanoTime();
+                        if (sent >= measureFrom) {
+                            measurements.get(action).record(user.status, received - sent);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        report();
+    }
+
+    private Action draw(SplittableRandom random) {
+        int drawn = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (Action action : Action.values()) {
+            if (drawn < cumulativeWeights[action.ordinal()]) {
+                return action;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private void report() {
+        double seconds = duration.toNanos() / 1e9;
+        System.out.printf("%d clients, %d users, %.0f s measured after %d s of warm-up%n",
+                clients, users, seconds, warmUp.toSeconds());
+        System.out.printf("%-8s %9s %9s %8s %8s %8s %8s %7s %7s%n",
+                "action", "requests", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "shed", "errors");
+
+        Measurements total = new Measurements();
+        for (Map.Entry<Action, Measurements> entry : measurements.entrySet()) {
+            print(entry.getKey().name().toLowerCase(), entry.getValue(), seconds);
+            total.addAll(entry.getValue());
+        }
+        print("total", total, seconds);
+    }
+
+    private static void print(String name, Measurements measurement, double seconds) {
+        List<Long> sorted = measurement.sortedLatencies();
+        System.out.printf("%-8s %9d %9.0f %8.1f %8.1f %8.1f %8.1f %7d %7d%n",
+                name, sorted.size(), sorted.size() / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 1),
+                measurement.shed.get(), measurement.errors.get());
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        return sorted.get((int) Math.ceil(percentile * sorted.size()) - 1) / 1e6;
+    }
+
+    /**
+     * The latencies of the successful requests of an action, and the counts of the others.
+     */
+    private static class Measurements {
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+
+        private final AtomicInteger shed = new AtomicInteger();
+
+        private final AtomicInteger errors = new AtomicInteger();
+
+        void record(int status, long latency) {
+            if (status >= 200 && status < 300) {
+                latencies.add(latency);
+            } else if (status == 503) {
+                shed.incrementAndGet();
+            } else {
+                errors.incrementAndGet();
+            }
+        }
+
+        void addAll(Measurements other) {
+            latencies.addAll(other.latencies);
+            shed.addAndGet(other.shed.get());
+            errors.addAndGet(other.errors.get());
+        }
+
+        List<Long> sortedLatencies() {
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * A user logged in, with its authentication cookie and the posts its feed returned.
+     */
+    private class VirtualUser {
+        private final String username;
+
+        private final SplittableRandom random;
+
+        private final List<Long> posts = new ArrayList<>();
+
+        private String cookie;
+
+        /**
+         * Status of the last action: the first unsuccessful status of its requests, or 0 if one failed to be sent.
+         */
+        private int status;
+
+        VirtualUser(String username, SplittableRandom random) {
+            this.username = username;
+            this.random = random;
+        }
+
+        boolean login() throws InterruptedException {
+            String credentials = Base64.getEncoder()
+                    .encodeToString((username + ":" + SocialGraphGenerator.PASSWORD).getBytes(StandardCharsets.UTF_8));
+            send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                    .header(HttpHeaders.AUTHORIZATION, "Basic " + credentials));
+            return cookie != null;
+        }
+
+        /**
+         * Performs an action.
+         *
+         * @param action The action to perform.
+         * @return The action performed, which is {@link Action#FEED} if a post action was drawn before any post was known.
+         */
+        Action perform(Action action) throws InterruptedException {
+            status = 200;
+            if (action != Action.FEED && action != Action.PROFILE && posts.isEmpty()) {
+                action = Action.FEED;
+            }
+            switch (action) {
+                case FEED -> {
+                    String body = get("/posts/feed?pageNumber=" + random.nextInt(3) + "&pageSize=10");
+                    rememberPosts(body);
+                }
+                case PROFILE -> {
+                    String viewed = SocialGraphGenerator.username(1 + random.nextInt(users));
+                    get("/persons/info/" + viewed);
+                    get("/persons/stats/" + viewed);
+                    get("/posts/preview/" + viewed + "?pageNumber=0");
+                }
+                case POST -> get("/posts/" + post() + "?pageNumber=0");
+                case LIKE -> send(request("/posts/like/" + post())
+                        .POST(HttpRequest.BodyPublishers.noBody()));
+                case COMMENT -> send(request("/comments/" + post())
+                        .header(HttpHeaders.CONTENT_TYPE, "text/plain")
+                        .POST(HttpRequest.BodyPublishers.ofString("Comment of " + username)));
+            }
+            return action;
+        }
+
+        private long post() {
+            return posts.get(random.nextInt(posts.size()));
+        }
+
+        private void rememberPosts(String body) {
+            if (body == null) {
+                return;
+            }
+            try {
+                for (JsonNode postFeed : objectMapper.readTree(body).path("content")) {
+                    JsonNode id = postFeed.path("postFeedProjection").path("id");
+                    if (id.canConvertToLong()) {
+                        if (posts.size() == REMEMBERED_POSTS) {
+                            posts.remove(0);
+                        }
+                        posts.add(id.asLong());
+                    }
+                }
+            } catch (IOException e) {
+                status = 0;
+            }
+        }
+
+        private String get(String path) throws InterruptedException {
+            return send(request(path));
+        }
+
+        private HttpRequest.Builder request(String path) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path)).header(HttpHeaders.COOKIE, cookie);
+        }
+
+        /**
+         * Sends a request, keeping the cookie it may renew and recording its status if unsuccessful.
+         *
+         * @return The body of the response, or null if the request failed.
+         */
+        private String send(HttpRequest.Builder request) throws InterruptedException {
+            try {
+                HttpResponse<String> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+                response.headers()
+                        .firstValue(HttpHeaders.SET_COOKIE)
+                        .ifPresent(setCookie -> cookie = setCookie.split(";")[0]);
+                if (response.statusCode() >= 300) {
+                    status = status >= 300 || status == 0 ? status : response.statusCode();
+                    return null;
+                }
+                return response.body();
+            } catch (IOException e) {
+                status = 0;
+                return null;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<Action, Integer> mix = new LinkedHashMap<>();
+        for (String weight : System.getProperty("load.mix", "feed=50,profile=20,post=15,like=10,comment=5").split(",")) {
+            String[] parts = weight.split("=");
+            mix.put(Action.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        new LoadClient(
+                System.getProperty("load.url", "http://localhost:8080"),
+                Integer.getInteger("load.clients", 200),
+                Integer.getInteger("load.users", 100000),
+                Duration.ofSeconds(Long.getLong("load.warm-up", 10)),
+                Duration.ofSeconds(Long.getLong("load.duration", 60)),
+                mix
+        ).run();
+    }
+}
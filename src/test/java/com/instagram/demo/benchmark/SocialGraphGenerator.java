@@ -0,0 +1,607 @@
+package com.instagram.demo.benchmark;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generates a synthetic social graph of millions of rows, for the {@link LoadClient} to run against.
+ * Rows are streamed to PostgreSQL with {@code COPY ... FROM STDIN}, in batches of about a megabyte,
+ * so that neither the rows nor their IDs are held in memory.
+ * <p>
+ * The generated users are named {@code user_1} to {@code user_<generator.users>}, all with the password
+ * {@code password}. Their follower counts follow a power law: each user follows a log-normally distributed number
+ * of users, each drawn from a Zipf distribution over the users, so that {@code user_1} is the most followed one.
+ * The number of posts of each user is log-normally distributed as well, the likes of a post are proportional to the
+ * followers of its uploader, its comments to its likes, and its hashtags are drawn from a Zipf distribution
+ * over {@code generator.hashtags} hashtags. Timelines are filled in for every uploader below
+ * {@code generator.celebrity-threshold} followers, as the application would have.
+ * <p>
+ * Every post draws from its own random generator, seeded from {@code generator.seed} and its index,
+ * so that its likes, comments and hashtags are drawn again identically once the posts, which they reference,
+ * have been copied. The same seed always generates the same graph.
+ * <p>
+ * Run against a database freshly created by the application, with
+ * {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.instagram.demo.benchmark.SocialGraphGenerator -Dgenerator.users=100000}.
+ */
+public class SocialGraphGenerator {
+    /**
+     * Prefix of the usernames of the generated users.
+     */
+    public static final String USERNAME_PREFIX = "user_";
+
+    /**
+     * Password of the generated users.
+     */
+    public static final String PASSWORD = "password";
+
+    /**
+     * Standard deviation of the logarithm of the log-normally distributed follow and post counts.
+     */
+    private static final double LOG_NORMAL_SIGMA = 1.5;
+
+    /**
+     * Maximum number of posts of a user.
+     */
+    private static final int MAX_POSTS_PER_USER = 1000;
+
+    /**
+     * Period over which the posts are dated, in seconds.
+     */
+    private static final long POST_PERIOD = 365L * 24 * 60 * 60;
+
+    /**
+     * Period after its post over which a comment is dated, in seconds.
+     */
+    private static final long COMMENT_PERIOD = 7L * 24 * 60 * 60;
+
+    /**
+     * The JDBC URL of the database.
+     */
+    private final String url;
+
+    /**
+     * The user connecting to the database.
+     */
+    private final String username;
+
+    /**
+     * The password of the user.
+     */
+    private final String password;
+
+    /**
+     * Number of users to generate.
+     */
+    private final int users;
+
+    /**
+     * Mean number of users each user follows.
+     */
+    private final double meanFollows;
+
+    /**
+     * Exponent of the Zipf distribution of the followees.
+     */
+    private final double followExponent;
+
+    /**
+     * Mean number of posts of each user.
+     */
+    private final double meanPosts;
+
+    /**
+     * Mean fraction of the followers of its uploader liking a post.
+     */
+    private final double likeRate;
+
+    /**
+     * Maximum number of likes of a post.
+     */
+    private final int maxLikes;
+
+    /**
+     * Mean number of comments on a post per like.
+     */
+    private final double commentRate;
+
+    /**
+     * Number of distinct hashtags.
+     */
+    private final int hashtags;
+
+    /**
+     * Follower count from which an uploader's posts are pulled at read time rather than fanned out to timelines.
+     */
+    private final long celebrityThreshold;
+
+    /**
+     * Seed of the random generators.
+     */
+    private final long seed;
+
+    public SocialGraphGenerator(String url, String username, String password,
+                                int users, double meanFollows, double followExponent,
+                                double meanPosts, double likeRate, int maxLikes, double commentRate,
+                                int hashtags, long celebrityThreshold, long seed) {
+        if (users < 10) {
+            throw new IllegalArgumentException("At least 10 users must be generated");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.users = users;
+        this.meanFollows = meanFollows;
+        this.followExponent = followExponent;
+        this.meanPosts = meanPosts;
+        this.likeRate = likeRate;
+        this.maxLikes = maxLikes;
+        this.commentRate = commentRate;
+        this.hashtags = hashtags;
+        this.celebrityThreshold = celebrityThreshold;
+        this.seed = seed;
+    }
+
+    /**
+     * @param i The index of the user, from 1.
+     * @return The username of the user.
+     */
+    public static String username(int i) {
+        return USERNAME_PREFIX + i;
+    }
+
+    /**
+     * Generates the graph.
+     *
+     * @throws SQLException if the database already holds generated users, or if a statement fails.
+     */
+    public void generate() throws SQLException {
+        try (Connection connection = connect()) {
+            long firstUserId = copyPersons(connection);
+
+            int[] followerCounts = copyFollows(connection, firstUserId);
+
+            int[] postCounts = new int[users];
+            SplittableRandom random = new SplittableRandom(seed);
+            for (int u = 0; u < users; u++) {
+                postCounts[u] = logNormal(random, meanPosts, MAX_POSTS_PER_USER);
+            }
+            long firstPostId = copyPosts(connection, firstUserId, followerCounts, postCounts);
+
+            copyPostChildren(firstUserId, firstPostId, followerCounts, postCounts);
+
+            fillTimelines(connection, firstUserId, followerCounts);
+
+            long start = System.nanoTime();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE");
+            }
+            report("Analyzed the tables", -1, start);
+        }
+    }
+
+    /**
+     * Copies the users.
+     *
+     * @param connection The connection to the database.
+     * @return The ID of the first user, the others following contiguously.
+     */
+    private long copyPersons(Connection connection) throws SQLException {
+        if (queryLong(connection, "SELECT count(*) FROM person WHERE username = '" + username(1) + "'") > 0) {
+            throw new SQLException("The database already holds generated users, recreate it first");
+        }
+
+        long start = System.nanoTime();
+        try (CopyWriter writer = new CopyWriter(connection,
+                "person", "username, email, password, firstname, lastname, bio, validated, photo")) {
+            for (int i = 1; i <= users; i++) {
+                writer.row(username(i), username(i) + "@example.com", PASSWORD, "First" + i, "Last" + i,
+                        "Bio of user " + i, i % 10 == 0, "https://example.com/photos/" + i + ".jpg");
+            }
+            report("Copied the persons", writer.rows(), start);
+        }
+
+        return contiguousIds(connection, "person", "username LIKE '" + USERNAME_PREFIX + "%'", users);
+    }
+
+    /**
+     * Copies the follows. Each user follows a log-normally distributed number of distinct users,
+     * drawn from a Zipf distribution over the users in order.
+     *
+     * @param connection  The connection to the database.
+     * @param firstUserId The ID of the first user.
+     * @return The number of followers of each user, by index.
+     */
+    private int[] copyFollows(Connection connection, long firstUserId) throws SQLException {
+        double[] zipf = zipfDistribution(users, followExponent);
+        int maxFollows = Math.max(1, users / 10);
+        int[] followerCounts = new int[users];
+        SplittableRandom random = new SplittableRandom(seed - 1);
+
+        long start = System.nanoTime();
+        try (CopyWriter writer = new CopyWriter(connection, "person_followers", "followees_id, followers_id")) {
+            Set<Integer> followees = new HashSet<>();
+            for (int follower = 0; follower < users; follower++) {
+                int follows = logNormal(random, meanFollows, maxFollows);
+                followees.clear();
+                while (followees.size() < follows) {
+                    int followee = sample(random, zipf);
+                    if (followee != follower && followees.add(followee)) {
+                        followerCounts[followee]++;
+                        writer.row(firstUserId + followee, firstUserId + follower);
+                    }
+                }
+            }
+            report("Copied the follows", writer.rows(), start);
+        }
+
+        int[] sorted = followerCounts.clone();
+        Arrays.sort(sorted);
+        System.out.printf("Followers per user: median %d, p99 %d, max %d%n",
+                sorted[users / 2], sorted[(int) Math.ceil(0.99 * users) - 1], sorted[users - 1]);
+        return followerCounts;
+    }
+
+    /**
+     * Copies the posts, with their like and comment counters.
+     *
+     * @param connection     The connection to the database.
+     * @param firstUserId    The ID of the first user.
+     * @param followerCounts The number of followers of each user.
+     * @param postCounts     The number of posts of each user.
+     * @return The ID of the first post, the others following contiguously.
+     */
+    private long copyPosts(Connection connection, long firstUserId, int[] followerCounts, int[] postCounts)
+            throws SQLException {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        long start = System.nanoTime();
+        long postIndex = 0;
+        try (CopyWriter writer = new CopyWriter(connection,
+                "post", "description, image, date, uploader_id, like_count, comment_count")) {
+            for (int u = 0; u < users; u++) {
+                for (int p = 1; p <= postCounts[u]; p++, postIndex++) {
+                    PostPlan plan = new PostPlan(postIndex, followerCounts[u]);
+                    writer.row("Post " + p + " of " + username(u + 1),
+                            "https://example.com/images/" + (u + 1) + "/" + p + ".jpg",
+                            now.minusSeconds(plan.age), firstUserId + u, plan.likes, plan.comments);
+                }
+            }
+            report("Copied the posts", writer.rows(), start);
+        }
+
+        return contiguousIds(connection, "post", "uploader_id >= " + firstUserId, postIndex);
+    }
+
+    /**
+     * Copies the hashtags, the likes and the comments of the posts, each table on its own connection,
+     * in a single pass over the posts.
+     *
+     * @param firstUserId    The ID of the first user.
+     * @param firstPostId    The ID of the first post.
+     * @param followerCounts The number of followers of each user.
+     * @param postCounts     The number of posts of each user.
+     */
+    private void copyPostChildren(long firstUserId, long firstPostId, int[] followerCounts, int[] postCounts)
+            throws SQLException {
+        double[] hashtagZipf = zipfDistribution(hashtags, 1.0);
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        long start = System.nanoTime();
+        try (Connection hashtagConnection = connect();
+             Connection likeConnection = connect();
+             Connection commentConnection = connect();
+             CopyWriter hashtagWriter = new CopyWriter(hashtagConnection, "post_hashtags", "post_id, hashtags");
+             CopyWriter likeWriter = new CopyWriter(likeConnection, "person_liked_posts", "liked_posts_id, likers_id");
+             CopyWriter commentWriter = new CopyWriter(commentConnection, "comment", "comment, date, author_id, post_id")) {
+            Set<Integer> drawn = new HashSet<>();
+            long postIndex = 0;
+            for (int u = 0; u < users; u++) {
+                for (int p = 0; p < postCounts[u]; p++, postIndex++) {
+                    PostPlan plan = new PostPlan(postIndex, followerCounts[u]);
+                    long postId = firstPostId + postIndex;
+
+                    drawn.clear();
+                    int tags = plan.random.nextInt(4);
+                    while (drawn.size() < tags) {
+                        int tag = sample(plan.random, hashtagZipf);
+                        if (drawn.add(tag)) {
+                            hashtagWriter.row(postId, "tag" + (tag + 1));
+                        }
+                    }
+
+                    drawn.clear();
+                    while (drawn.size() < plan.likes) {
+                        int liker = plan.random.nextInt(users);
+                        if (drawn.add(liker)) {
+                            likeWriter.row(postId, firstUserId + liker);
+                        }
+                    }
+
+                    LocalDateTime postDate = now.minusSeconds(plan.age);
+                    for (int c = 1; c <= plan.comments; c++) {
+                        LocalDateTime date = postDate.plusSeconds(plan.random.nextLong(COMMENT_PERIOD));
+                        commentWriter.row("Comment " + c + " on post " + postId,
+                                date.isAfter(now) ? now : date,
+                                firstUserId + plan.random.nextInt(users), postId);
+                    }
+                }
+            }
+            report("Copied the hashtags", hashtagWriter.rows(), start);
+            report("Copied the likes", likeWriter.rows(), start);
+            report("Copied the comments", commentWriter.rows(), start);
+        }
+    }
+
+    /**
+     * Fans the posts of every uploader below the celebrity threshold out to the timelines of their followers.
+     * Checking the foreign keys and maintaining the indexes of the timeline row by row is far slower than checking
+     * and building them anew,
+     * so its foreign keys, unique constraints and secondary indexes are dropped and recreated around the insert,
+     * in the same transaction.
+     *
+     * @param connection     The connection to the database.
+     * @param firstUserId    The ID of the first user.
+     * @param followerCounts The number of followers of each user.
+     */
+    private void fillTimelines(Connection connection, long firstUserId, int[] followerCounts) throws SQLException {
+        Long[] celebrityIds = IntStream.range(0, users)
+                .filter(u -> followerCounts[u] >= celebrityThreshold)
+                .mapToObj(u -> firstUserId + u)
+                .toArray(Long[]::new);
+
+        long start = System.nanoTime();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement("""
+                     INSERT INTO timeline_entry (owner_id, post_id, date)
+                     SELECT pf.followers_id, p.id, p.date
+                     FROM post p JOIN person_followers pf ON pf.followees_id = p.uploader_id
+                     WHERE p.uploader_id >= ? AND p.uploader_id <> ALL (?)""")) {
+            List<String> recreations = new ArrayList<>();
+            try (ResultSet constraints = statement.executeQuery("""
+                    SELECT conname, pg_get_constraintdef(oid)
+                    FROM pg_constraint
+                    WHERE conrelid = 'timeline_entry'::regclass AND contype IN ('u', 'f')""")) {
+                while (constraints.next()) {
+                    recreations.add("ALTER TABLE timeline_entry DROP CONSTRAINT " + constraints.getString(1));
+                    recreations.add("ALTER TABLE timeline_entry ADD CONSTRAINT " + constraints.getString(1)
+                            + " " + constraints.getString(2));
+                }
+            }
+            try (ResultSet indexes = statement.executeQuery("""
+                    SELECT i.relname, pg_get_indexdef(i.oid)
+                    FROM pg_index x JOIN pg_class i ON i.oid = x.indexrelid
+                    WHERE x.indrelid = 'timeline_entry'::regclass
+                      AND NOT EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conindid = i.oid)""")) {
+                while (indexes.next()) {
+                    recreations.add("DROP INDEX " + indexes.getString(1));
+                    recreations.add(indexes.getString(2));
+                }
+            }
+
+            for (int i = 0; i < recreations.size(); i += 2) {
+                statement.execute(recreations.get(i));
+            }
+            insert.setLong(1, firstUserId);
+            insert.setArray(2, connection.createArrayOf("bigint", celebrityIds));
+            int entries = insert.executeUpdate();
+            for (int i = 1; i < recreations.size(); i += 2) {
+                statement.execute(recreations.get(i));
+            }
+            connection.commit();
+            report("Filled the timelines, " + celebrityIds.length + " celebrities left in pull mode", entries, start);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Checks that the rows just copied got contiguous IDs, which holds as long as nothing else inserts concurrently.
+     *
+     * @param connection The connection to the database.
+     * @param table      The table the rows were copied to.
+     * @param condition  The condition selecting the copied rows.
+     * @param rows       The number of copied rows.
+     * @return The ID of the first copied row.
+     */
+    private static long contiguousIds(Connection connection, String table, String condition, long rows)
+            throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT min(id), max(id), count(*) FROM " + table + " WHERE " + condition)) {
+            resultSet.next();
+            long first = resultSet.getLong(1);
+            if (resultSet.getLong(3) != rows || resultSet.getLong(2) - first + 1 != rows) {
+                throw new SQLException("The copied " + table + " rows did not get contiguous IDs");
+            }
+            return first;
+        }
+    }
+
+    private static long queryLong(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    /**
+     * Draws a log-normally distributed count.
+     *
+     * @param random The random generator.
+     * @param mean   The mean of the distribution.
+     * @param max    The maximum count.
+     * @return The count, between 0 and {@code max}.
+     */
+    private static int logNormal(SplittableRandom random, double mean, int max) {
+        double mu = Math.log(mean) - LOG_NORMAL_SIGMA * LOG_NORMAL_SIGMA / 2;
+        return (int) Math.min(max, Math.round(Math.exp(mu + LOG_NORMAL_SIGMA * random.nextGaussian())));
+    }
+
+    /**
+     * Builds the cumulative Zipf distribution over {@code n} ranks, rank {@code k} weighing {@code 1 / (k + 1)^s}.
+     *
+     * @param n        The number of ranks.
+     * @param exponent The exponent {@code s}.
+     * @return The cumulative probability of each rank.
+     */
+    private static double[] zipfDistribution(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Draws a rank from a cumulative distribution.
+     *
+     * @param random     The random generator.
+     * @param cumulative The cumulative probability of each rank.
+     * @return The rank.
+     */
+    private static int sample(SplittableRandom random, double[] cumulative) {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(rank < 0 ? -rank - 1 : rank, cumulative.length - 1);
+    }
+
+    private static void report(String phase, long rows, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (rows < 0) {
+            System.out.printf("%s in %.1f s%n", phase, seconds);
+        } else {
+            System.out.printf("%s: %,d rows in %.1f s (%,.0f rows/s)%n", phase, rows, seconds, rows / seconds);
+        }
+    }
+
+    /**
+     * What is drawn for a post before its children: its age and its like and comment counts.
+     * The random generator is left positioned to draw its children.
+     */
+    private class PostPlan {
+        private final SplittableRandom random;
+
+        private final long age;
+
+        private final int likes;
+
+        private final int comments;
+
+        PostPlan(long postIndex, int uploaderFollowers) {
+            random = new SplittableRandom(seed ^ (0x9E3779B97F4A7C15L * (postIndex + 1)));
+            age = random.nextLong(POST_PERIOD);
+            int cap = Math.min(maxLikes, users / 2);
+            likes = (int) Math.min(cap, Math.round(uploaderFollowers * likeRate * 2 * random.nextDouble()));
+            comments = (int) Math.round(likes * commentRate * 2 * random.nextDouble());
+        }
+    }
+
+    /**
+     * Streams CSV rows to a {@code COPY ... FROM STDIN} statement, flushing them about a megabyte at a time.
+     */
+    private static class CopyWriter implements AutoCloseable {
+        private static final int FLUSH_SIZE = 1 << 20;
+
+        private final CopyIn copyIn;
+
+        private final StringBuilder buffer = new StringBuilder(FLUSH_SIZE + 1024);
+
+        private long rows;
+
+        CopyWriter(Connection connection, String table, String columns) throws SQLException {
+            copyIn = connection.unwrap(PGConnection.class)
+                    .getCopyAPI()
+                    .copyIn("COPY " + table + " (" + columns + ") FROM STDIN WITH (FORMAT csv)");
+        }
+
+        void row(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    buffer.append(',');
+                }
+                String value = String.valueOf(values[i]);
+                if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+                    buffer.append('"').append(value.replace("\"", "\"\"")).append('"');
+                } else {
+                    buffer.append(value);
+                }
+            }
+            buffer.append('\n');
+            rows++;
+            if (buffer.length() >= FLUSH_SIZE) {
+                flush();
+            }
+        }
+
+        long rows() {
+            return rows;
+        }
+
+        private void flush() throws SQLException {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (copyIn.isActive()) {
+                flush();
+                copyIn.endCopy();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws SQLException {
+        int users = Integer.getInteger("generator.users", 100000);
+        SocialGraphGenerator generator = new SocialGraphGenerator(
+                System.getProperty("benchmark.db.url", "jdbc:postgresql://localhost:5432/postgres"),
+                System.getProperty("benchmark.db.username", "postgres"),
+                System.getProperty("benchmark.db.password", "mysecretpassword"),
+                users,
+                Double.parseDouble(System.getProperty("generator.mean-follows", "30")),
+                Double.parseDouble(System.getProperty("generator.follow-exponent", "1.0")),
+                Double.parseDouble(System.getProperty("generator.mean-posts", "10")),
+                Double.parseDouble(System.getProperty("generator.like-rate", "0.05")),
+                Integer.getInteger("generator.max-likes", 2000),
+                Double.parseDouble(System.getProperty("generator.comment-rate", "0.2")),
+                Integer.getInteger("generator.hashtags", 1000),
+                Long.getLong("generator.celebrity-threshold", 10000),
+                Long.getLong("generator.seed", 42)
+        );
+        long start = System.nanoTime();
+        generator.generate();
+        System.out.printf("Generated %,d users in %.1f s%n", users, (System.nanoTime() - start) / 1e9);
+    }
+}
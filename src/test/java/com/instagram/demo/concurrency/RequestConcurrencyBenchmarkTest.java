@@ -0,0 +1,162 @@
+package com.instagram.demo.concurrency;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark sending many concurrent requests to the {@code feed} and {@code post} endpoints,
+ * once on Tomcat's platform threads and once on virtual threads behind the connection pool bulkhead.
+ * Both report the throughput, the median and p99 latencies, and the number of requests shed with 503.
+ * Tagged {@code load}, it only runs with the {@code load-test} Maven profile.
+ */
+@Tag("load")
+class RequestConcurrencyBenchmarkTest {
+    /**
+     * Number of concurrent clients.
+     */
+    private static final int CLIENTS = 400;
+
+    /**
+     * Number of requests sent by each client to each endpoint.
+     */
+    private static final int REQUESTS_PER_CLIENT = 10;
+
+    /**
+     * Number of requests sent to each endpoint before measuring.
+     */
+    private static final int WARM_UP_REQUESTS = 200;
+
+    @SpringBootTest(
+            webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = {
+                    "logging.level.org.springframework=info",
+                    "logging.level.com.instagram.demo=info",
+                    "spring.jpa.properties.hibernate.show_sql=false"
+            }
+    )
+    @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+    abstract static class Scenario {
+        @LocalServerPort
+        int port;
+
+        final HttpClient httpClient = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        @Test
+        void feed() throws Exception {
+            run("feed", "/posts/feed?pageNumber=0&pageSize=10");
+        }
+
+        @Test
+        void post() throws Exception {
+            run("post", "/posts/1");
+        }
+
+        private void run(String endpoint, String path) throws Exception {
+            String cookie = login();
+            for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+                send(path, cookie);
+            }
+
+            List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger shed = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            long start = System.nanoTime();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int client = 0; client < CLIENTS; client++) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                            long sent = System.nanoTime();
+                            int status = send(path, cookie);
+                            if (status == 200) {
+                                latencies.add(System.nanoTime() - sent);
+                            } else if (status == 503) {
+                                shed.incrementAndGet();
+                            } else {
+                                failed.incrementAndGet();
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            System.out.printf("%s %s: %.0f req/sec, p50 %.1f ms, p99 %.1f ms, %d shed (%d clients, %d requests)%n",
+                    getClass().getSimpleName(), endpoint, sorted.size() / seconds,
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), shed.get(),
+                    CLIENTS, CLIENTS * REQUESTS_PER_CLIENT);
+
+            assertEquals(0, failed.get());
+            assertTrue(sorted.size() > 0);
+        }
+
+        private String login() throws Exception {
+            String credentials = Base64.getEncoder()
+                    .encodeToString("john_doe:password123".getBytes(StandardCharsets.UTF_8));
+            HttpResponse<Void> response = httpClient.send(
+                    request("/login").header(HttpHeaders.AUTHORIZATION, "Basic " + credentials).build(),
+                    HttpResponse.BodyHandlers.discarding()
+            );
+            return response.headers().firstValue(HttpHeaders.SET_COOKIE).orElseThrow().split(";")[0];
+        }
+
+        private int send(String path, String cookie) throws Exception {
+            return httpClient.send(
+                    request(path).header(HttpHeaders.COOKIE, cookie).build(),
+                    HttpResponse.BodyHandlers.discarding()
+            ).statusCode();
+        }
+
+        private HttpRequest.Builder request(String path) {
+            return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path));
+        }
+
+        private static double percentile(List<Long> sorted, double percentile) {
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            return sorted.get((int) Math.ceil(percentile * sorted.size()) - 1) / 1e6;
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = {"spring.threads.virtual.enabled=false", "concurrency.bulkhead.enabled=false"})
+    class PlatformThreads extends Scenario {
+    }
+
+    @Nested
+    @TestPropertySource(properties = {"spring.threads.virtual.enabled=true", "concurrency.bulkhead.enabled=true"})
+    class VirtualThreads extends Scenario {
+    }
+}
@@ -0,0 +1,87 @@
+package com.instagram.demo.controller.ui.post;
+
+import com.instagram.demo.benchmark.BenchmarkContext;
+import com.instagram.demo.data.projection.comment.CommentProjection;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the read paths of {@link PostController} against a seeded database, without the HTTP layer:
+ * the hydration of a feed page, the concurrent assembly of a post, the mapping of a page of post previews
+ * and the retrieval of a page of comments. Each invocation picks a random user or post among the seeded ones.
+ * {@code cacheType} {@code none} disables the Caffeine caches, to measure the database round trips they save.
+ * <p>
+ * Run with {@code ./mvnw verify -P benchmark -Dbenchmark.include=HotPathBenchmark}.
+ *
+ * @see BenchmarkContext
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotPathBenchmark {
+    @Param({"caffeine", "none"})
+    String cacheType;
+
+    private BenchmarkContext context;
+
+    private PostController postController;
+
+    private List<Long> postIds;
+
+    @Setup
+    public void setUp() {
+        context = new BenchmarkContext(Map.of("spring.cache.type", cacheType));
+        postController = context.getBean(PostController.class);
+        postIds = context.postIds();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Benchmark
+    public Slice<PostFeed> feedHydration() {
+        return postController.feed(context.authentication(randomUser()), 0, 10);
+    }
+
+    @Benchmark
+    public ResponseEntity<PostResponse> postDetailAssembly() {
+        return postController.post(randomPost(), 0, context.authentication(randomUser()));
+    }
+
+    @Benchmark
+    public Page<PostPreview> postPreviewMapping() {
+        return postController.postPreview(context.username(randomUser()), 0);
+    }
+
+    @Benchmark
+    public CursorPage<CommentProjection> commentPage() {
+        return postController.comments(randomPost(), null, 10);
+    }
+
+    private int randomUser() {
+        return ThreadLocalRandom.current().nextInt(1, context.scale() + 1);
+    }
+
+    private long randomPost() {
+        return postIds.get(ThreadLocalRandom.current().nextInt(postIds.size()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HotPathBenchmark.class.getSimpleName()).build()).run();
+    }
+}
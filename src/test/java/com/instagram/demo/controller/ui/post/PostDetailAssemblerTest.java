@@ -0,0 +1,167 @@
+package com.instagram.demo.controller.ui.post;
+
+import com.instagram.demo.data.projection.comment.CommentProjection;
+import com.instagram.demo.data.projection.post.PostProjection;
+import com.instagram.demo.data.repository.CommentRepository;
+import com.instagram.demo.data.repository.PostRepository;
+import com.instagram.demo.service.like.LikeAggregator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that the details of a post are assembled from lookups that may fail, time out or be rejected by the executor:
+ * the optional lookups fall back to empty defaults, while the post itself is required.
+ */
+class PostDetailAssemblerTest {
+    private static final long POST_ID = 1L;
+
+    private static final String USERNAME = "jane_smith";
+
+    private static final long TIMEOUT = 200;
+
+    private final Pageable commentPage = PageRequest.of(0, 2);
+
+    private final PostRepository postRepository = mock(PostRepository.class);
+
+    private final CommentRepository commentRepository = mock(CommentRepository.class);
+
+    private final LikeAggregator likeAggregator = mock(LikeAggregator.class);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private Page<CommentProjection> comments;
+
+    @BeforeEach
+    void setUp() {
+        PostProjection post = mock(PostProjection.class);
+        when(post.getTimeUntilNow()).thenReturn(3L);
+        when(post.getImage()).thenReturn("post.jpg");
+        when(post.getDescription()).thenReturn("Post");
+        when(post.getUploaderPhoto()).thenReturn("photo.jpg");
+        when(post.getLikeCount()).thenReturn(4L);
+        comments = new PageImpl<>(List.of(mock(CommentProjection.class)), commentPage, 1);
+
+        when(postRepository.findPostById(POST_ID)).thenReturn(Optional.of(post));
+        when(postRepository.findHashtagsByPostId(POST_ID)).thenReturn(Set.of("nature"));
+        when(commentRepository.findByPostIdOrderByDateDesc(POST_ID, commentPage)).thenReturn(comments);
+        when(postRepository.existsLikedPostByUser(POST_ID, USERNAME)).thenReturn(true);
+        when(likeAggregator.likeCount(anyLong(), anyLong())).thenAnswer(invocation -> invocation.getArgument(1));
+        when(likeAggregator.isLiked(anyLong(), anyString(), anyBoolean())).thenAnswer(invocation -> invocation.getArgument(2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void assemblesEveryLookup() {
+        PostResponse response = assembler(new TaskExecutorAdapter(executor)).assemble(POST_ID, commentPage, USERNAME).orElseThrow();
+
+        assertEquals(new PostResponse("photo.jpg", Set.of("nature"), "post.jpg", 3L, "Post", comments, 4L, true), response);
+    }
+
+    @Test
+    void failedOptionalLookupsFallBackToEmptyDefaults() {
+        when(postRepository.findHashtagsByPostId(POST_ID)).thenThrow(new QueryTimeoutException("hashtags"));
+        when(commentRepository.findByPostIdOrderByDateDesc(POST_ID, commentPage)).thenThrow(new QueryTimeoutException("comments"));
+        when(postRepository.existsLikedPostByUser(POST_ID, USERNAME)).thenThrow(new QueryTimeoutException("like status"));
+
+        PostResponse response = assembler(new TaskExecutorAdapter(executor)).assemble(POST_ID, commentPage, USERNAME).orElseThrow();
+
+        assertEquals(Set.of(), response.hashtags());
+        assertEquals(Page.empty(commentPage), response.comments());
+        assertEquals(false, response.like());
+        assertEquals("post.jpg", response.image());
+    }
+
+    @Test
+    void slowOptionalLookupTimesOutToItsDefault() {
+        when(postRepository.findHashtagsByPostId(POST_ID)).thenAnswer(invocation -> {
+            Thread.sleep(10 * TIMEOUT);
+            return Set.of("late");
+        });
+
+        long start = System.nanoTime();
+        PostResponse response = assembler(new TaskExecutorAdapter(executor)).assemble(POST_ID, commentPage, USERNAME).orElseThrow();
+
+        assertTrue(System.nanoTime() - start < 5 * TIMEOUT * 1_000_000, "Waited for the slow lookup");
+        assertEquals(Set.of(), response.hashtags());
+        assertEquals(comments, response.comments());
+    }
+
+    @Test
+    void slowPostIsUnavailable() {
+        when(postRepository.findPostById(POST_ID)).thenAnswer(invocation -> {
+            Thread.sleep(10 * TIMEOUT);
+            return Optional.empty();
+        });
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> assembler(new TaskExecutorAdapter(executor)).assemble(POST_ID, commentPage, USERNAME));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+    }
+
+    @Test
+    void failedPostLookupFailsTheRequest() {
+        QueryTimeoutException failure = new QueryTimeoutException("post");
+        when(postRepository.findPostById(POST_ID)).thenThrow(failure);
+
+        assertSame(failure, assertThrows(QueryTimeoutException.class,
+                () -> assembler(new TaskExecutorAdapter(executor)).assemble(POST_ID, commentPage, USERNAME)));
+    }
+
+    @Test
+    void missingPostIsEmpty() {
+        when(postRepository.findPostById(POST_ID)).thenReturn(Optional.empty());
+
+        assertEquals(Optional.empty(), assembler(new TaskExecutorAdapter(executor)).assemble(POST_ID, commentPage, USERNAME));
+    }
+
+    @Test
+    void rejectedLookupsRunOnTheCallingThread() {
+        AsyncTaskExecutor saturated = task -> {
+            throw new RejectedExecutionException("Saturated");
+        };
+        when(commentRepository.findByPostIdOrderByDateDesc(POST_ID, commentPage)).thenThrow(new QueryTimeoutException("comments"));
+
+        PostResponse response = assembler(saturated).assemble(POST_ID, commentPage, USERNAME).orElseThrow();
+
+        assertEquals(Set.of("nature"), response.hashtags());
+        assertEquals(Page.empty(commentPage), response.comments());
+        assertEquals(true, response.like());
+    }
+
+    private PostDetailAssembler assembler(AsyncTaskExecutor queryExecutor) {
+        return new PostDetailAssembler(postRepository, commentRepository, likeAggregator, queryExecutor,
+                TransactionOperations.withoutTransaction(), TIMEOUT);
+    }
+}
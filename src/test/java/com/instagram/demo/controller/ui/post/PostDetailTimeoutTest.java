@@ -0,0 +1,86 @@
+package com.instagram.demo.controller.ui.post;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instagram.demo.data.repository.PersonRepository;
+import com.instagram.demo.data.repository.PostRepository;
+import com.instagram.demo.data.schema.Person;
+import com.instagram.demo.data.schema.Post;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a lookup of the details of a post given up on is also cancelled by the database,
+ * rather than holding its connection until its query completes.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "post.detail.timeout=1000"
+)
+class PostDetailTimeoutTest {
+    private static final String PASSWORD = "password";
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PersonRepository personRepository;
+
+    @Autowired
+    PostRepository postRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void blockedLookupIsCancelledByTheDatabase() throws Exception {
+        String username = "timeout_" + System.nanoTime() % 100_000;
+        Person person = personRepository.save(new Person(username, username + "@timeout.test", PASSWORD, "Timeout", "Test"));
+        long postId = postRepository.save(new Post(new RequestPostBody("Timeout", new String[0], "timeout.jpg"), person)).getId();
+
+        try (Connection locker = dataSource.getConnection(); Statement lock = locker.createStatement()) {
+            locker.setAutoCommit(false);
+            // The hashtags lookup waits for this lock until it is cancelled
+            lock.execute("LOCK TABLE post_hashtags IN ACCESS EXCLUSIVE MODE");
+            try {
+                ResponseEntity<String> response = restTemplate.withBasicAuth(username, PASSWORD)
+                        .getForEntity("/posts/" + postId, String.class);
+                assertEquals(HttpStatus.OK, response.getStatusCode(), response.getBody());
+                assertEquals(0, objectMapper.readTree(response.getBody()).get("hashtags").size());
+
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (lockWaits() > 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(50);
+                }
+                assertEquals(0, lockWaits(), "The timed out lookup is still running");
+            } finally {
+                locker.rollback();
+            }
+        }
+        assertTrue(postRepository.findHashtagsByPostId(postId).isEmpty());
+    }
+
+    private long lockWaits() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_stat_activity WHERE datname = current_database() AND wait_event_type = 'Lock'",
+                Long.class);
+    }
+}
@@ -0,0 +1,205 @@
+package com.instagram.demo.controller.ui.post;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import com.instagram.demo.data.projection.comment.CommentProjection;
+import com.instagram.demo.data.projection.post.PostFeedProjection;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.projection.TargetAware;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the JSON serialization of a page of {@link PostFeed} and of a {@link PostResponse},
+ * with the Jackson {@link ObjectMapper} writing the responses of the controllers, and with Gson.
+ * The fixtures are the interface projection proxies Spring Data returns for native queries.
+ * Gson cannot serialize them as they are: the JDK proxies and {@link LocalDateTime} are not reflectively accessible,
+ * and a {@link Page} field, declared as an interface, is written as an empty object. So Gson is given the type adapters
+ * the application would need to switch to it, writing the same JSON as Jackson.
+ * Neither needs a database.
+ * <p>
+ * Run with {@code ./mvnw verify -P benchmark -Dbenchmark.include=SerializationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final Gson gson = new GsonBuilder()
+            .registerTypeHierarchyAdapter(TargetAware.class, projectionSerializer())
+            .registerTypeHierarchyAdapter(Page.class, pageSerializer())
+            .registerTypeAdapter(LocalDateTime.class,
+                    (JsonSerializer<LocalDateTime>) (date, type, context) -> new JsonPrimitive(date.toString()))
+            .create();
+
+    private Page<PostFeed> feedPage;
+
+    private PostResponse postResponse;
+
+    @Setup
+    public void setUp() {
+        SpelAwareProxyProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+        LocalDateTime now = LocalDateTime.now();
+
+        List<PostFeed> posts = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            PostFeedProjection projection = projectionFactory.createProjection(PostFeedProjection.class, Map.of(
+                    "id", id,
+                    "date", now.minusHours(id),
+                    "image", "https://example.com/images/" + id + ".jpg",
+                    "description", "Description of post " + id,
+                    "uploaderPhoto", "https://example.com/photos/" + id + ".jpg",
+                    "uploaderUsername", "user_" + id,
+                    "uploaderValidated", id % 2 == 0,
+                    "likeCount", id * 10,
+                    "commentCount", id
+            ));
+            posts.add(new PostFeed(projection, id * 10, id, id % 3 == 0));
+        }
+        feedPage = new PageImpl<>(posts, PageRequest.of(0, 10), 200);
+
+        List<CommentProjection> comments = new ArrayList<>();
+        for (long id = 1; id <= 2; id++) {
+            comments.add(projectionFactory.createProjection(CommentProjection.class, Map.of(
+                    "id", id,
+                    "date", now.minusMinutes(id),
+                    "comment", "Comment " + id,
+                    "authorUsername", "user_" + id,
+                    "authorPhoto", "https://example.com/photos/" + id + ".jpg"
+            )));
+        }
+        postResponse = new PostResponse(
+                "https://example.com/photos/1.jpg",
+                Set.of("tag1", "topic1"),
+                "https://example.com/images/1.jpg",
+                3L,
+                "Description of post 1",
+                new PageImpl<>(comments, PageRequest.of(0, 2), 5),
+                10L,
+                true
+        );
+    }
+
+    @Benchmark
+    public String feedJackson() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(feedPage);
+    }
+
+    @Benchmark
+    public String feedGson() {
+        return gson.toJson(feedPage);
+    }
+
+    @Benchmark
+    public String postJackson() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(postResponse);
+    }
+
+    @Benchmark
+    public String postGson() {
+        return gson.toJson(postResponse);
+    }
+
+    /**
+     * Serializes a projection proxy through the getters of its projection interface, as Jackson does.
+     *
+     * @return The serializer of projection proxies.
+     */
+    private static JsonSerializer<TargetAware> projectionSerializer() {
+        Map<Class<?>, List<Method>> getters = new ConcurrentHashMap<>();
+        return (projection, type, context) -> {
+            JsonObject json = new JsonObject();
+            for (Method getter : getters.computeIfAbsent(projection.getClass(), SerializationBenchmark::getters)) {
+                try {
+                    String name = getter.getName().substring(3);
+                    json.add(Character.toLowerCase(name.charAt(0)) + name.substring(1),
+                            context.serialize(getter.invoke(projection)));
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return json;
+        };
+    }
+
+    /**
+     * Serializes a page through its getters, as Jackson does.
+     *
+     * @return The serializer of pages.
+     */
+    private static JsonSerializer<Page<?>> pageSerializer() {
+        return (page, type, context) -> {
+            JsonObject json = new JsonObject();
+            json.add("content", context.serialize(page.getContent()));
+            JsonObject pageable = new JsonObject();
+            pageable.addProperty("pageNumber", page.getPageable().getPageNumber());
+            pageable.addProperty("pageSize", page.getPageable().getPageSize());
+            pageable.add("sort", sort(page.getPageable().getSort()));
+            pageable.addProperty("offset", page.getPageable().getOffset());
+            pageable.addProperty("paged", page.getPageable().isPaged());
+            pageable.addProperty("unpaged", page.getPageable().isUnpaged());
+            json.add("pageable", pageable);
+            json.addProperty("totalPages", page.getTotalPages());
+            json.addProperty("totalElements", page.getTotalElements());
+            json.addProperty("last", page.isLast());
+            json.addProperty("size", page.getSize());
+            json.addProperty("number", page.getNumber());
+            json.add("sort", sort(page.getSort()));
+            json.addProperty("numberOfElements", page.getNumberOfElements());
+            json.addProperty("first", page.isFirst());
+            json.addProperty("empty", page.isEmpty());
+            return json;
+        };
+    }
+
+    private static JsonObject sort(Sort sort) {
+        JsonObject json = new JsonObject();
+        json.addProperty("empty", sort.isEmpty());
+        json.addProperty("sorted", sort.isSorted());
+        json.addProperty("unsorted", sort.isUnsorted());
+        return json;
+    }
+
+    private static List<Method> getters(Class<?> proxyClass) {
+        // The projection interface comes first, before the Spring interfaces
+        return Arrays.stream(proxyClass.getInterfaces()[0].getMethods())
+                .filter(method -> method.getName().startsWith("get") && method.getParameterCount() == 0)
+                .filter(method -> !Modifier.isStatic(method.getModifiers()))
+                .toList();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SerializationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,71 @@
+package com.instagram.demo.controller.ui.search;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the searches against the people and posts seeded by {@code R__sample_data.sql}:
+ * John Doe, Jane Smith and Bob Jackson, and the first post of John tagged Instagram and Nature.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class SearchControllerTest {
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    void findsPeopleByAnyNamePrefixIgnoringCase() {
+        assertEquals(List.of("john_doe"), usernames("DO"));
+        assertEquals(List.of("bob_jackson"), usernames("jack"));
+    }
+
+    @Test
+    void ranksUsernameMatchesFirst() {
+        assertEquals(List.of("jane_smith", "john_doe", "bob_jackson"), usernames("j"));
+    }
+
+    @Test
+    void matchesWildcardsLiterally() {
+        assertTrue(usernames("%").isEmpty());
+        assertTrue(usernames("_").isEmpty());
+    }
+
+    @Test
+    void completesHashtags() {
+        assertEquals(List.of("instagram"), get("/search/hashtags?query={query}", new ParameterizedTypeReference<List<String>>() {
+        }, "#IN"));
+    }
+
+    @Test
+    void findsPostsByHashtagAndDescription() {
+        assertEquals(List.of(1), postIds("/search/posts/hashtag/{hashtag}", "#Nature"));
+        assertEquals(List.of(1), postIds("/search/posts?query={query}", "post by JOHN"));
+        assertTrue(postIds("/search/posts?query={query}", "by").isEmpty());
+    }
+
+    private List<Object> usernames(String query) {
+        return get("/search/users?query={query}", new ParameterizedTypeReference<List<Map<String, Object>>>() {
+        }, query).stream().map(person -> person.get("username")).toList();
+    }
+
+    private List<Object> postIds(String path, String variable) {
+        return get(path, new ParameterizedTypeReference<List<Map<String, Object>>>() {
+        }, variable).stream().map(post -> post.get("id")).toList();
+    }
+
+    private <T> T get(String path, ParameterizedTypeReference<T> type, String variable) {
+        return restTemplate
+                .withBasicAuth("john_doe", "password123")
+                .exchange(path, HttpMethod.GET, null, type, variable)
+                .getBody();
+    }
+}
@@ -0,0 +1,127 @@
+package com.instagram.demo.data.repository;
+
+import com.instagram.demo.controller.ui.post.RequestPostBody;
+import com.instagram.demo.data.schema.Person;
+import com.instagram.demo.data.schema.Post;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the contract of the single-statement toggles: 1 when the row is inserted, -1 when it is deleted,
+ * 0 when nothing changed, and a like count moving with the likes, including under concurrent toggles.
+ */
+@SpringBootTest
+class ToggleStatementTest {
+    private static final AtomicInteger PERSONS = new AtomicInteger();
+
+    @Autowired
+    PostRepository postRepository;
+
+    @Autowired
+    PersonRepository personRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void toggleLikeLikesThenUnlikes() {
+        Person liker = person();
+        long postId = post(person());
+
+        assertEquals(1, postRepository.toggleLike(postId, liker.getUsername()));
+        assertEquals(1, likeCount(postId));
+        assertEquals(1, likes(postId));
+
+        assertEquals(-1, postRepository.toggleLike(postId, liker.getUsername()));
+        assertEquals(0, likeCount(postId));
+        assertEquals(0, likes(postId));
+    }
+
+    @Test
+    void toggleLikeChangesNothingForAMissingPostOrUser() {
+        Person liker = person();
+        long postId = post(person());
+
+        assertEquals(0, postRepository.toggleLike(Long.MAX_VALUE, liker.getUsername()));
+        assertEquals(0, postRepository.toggleLike(postId, "missing_" + PERSONS.incrementAndGet()));
+        assertEquals(0, likeCount(postId));
+        assertEquals(0, likes(postId));
+    }
+
+    @Test
+    void concurrentToggleLikesKeepTheCountInStep() throws Exception {
+        Person liker = person();
+        long postId = post(person());
+        int toggles = 16;
+
+        ExecutorService executor = Executors.newFixedThreadPool(toggles);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < toggles; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return postRepository.toggleLike(postId, liker.getUsername());
+                }));
+            }
+            start.countDown();
+
+            long sum = 0;
+            for (Future<Long> result : results) {
+                sum += result.get();
+            }
+            // Toggles that lost a race return 0 and change nothing, so the results add up to the final state
+            assertEquals(likes(postId), sum);
+            assertEquals(likes(postId), likeCount(postId));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void toggleFollowFollowsThenUnfollows() {
+        Person follower = person();
+        Person followee = person();
+
+        assertEquals(1, personRepository.toggleFollow(follower.getId(), followee.getId()));
+        assertEquals(1, followships(follower, followee));
+        assertEquals(0, followships(followee, follower));
+
+        assertEquals(-1, personRepository.toggleFollow(follower.getId(), followee.getId()));
+        assertEquals(0, followships(follower, followee));
+    }
+
+    private Person person() {
+        String username = "toggle_" + System.nanoTime() % 100_000 + "_" + PERSONS.incrementAndGet();
+        return personRepository.save(new Person(username, username + "@toggle.test", "password", "Toggle", "Test"));
+    }
+
+    private long post(Person uploader) {
+        return postRepository.save(new Post(new RequestPostBody("Toggle", new String[0], "toggle.jpg"), uploader)).getId();
+    }
+
+    private long likeCount(long postId) {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM post WHERE id = ?", Long.class, postId);
+    }
+
+    private long followships(Person follower, Person followee) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person_followers WHERE followers_id = ? AND followees_id = ?",
+                Long.class, follower.getId(), followee.getId());
+    }
+
+    private long likes(long postId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person_liked_posts WHERE liked_posts_id = ?", Long.class, postId);
+    }
+}
@@ -0,0 +1,103 @@
+package com.instagram.demo.logging.filter;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LogSamplingFilterTest {
+    private final LoggerContext loggerContext = new LoggerContext();
+
+    private final Logger logger = loggerContext.getLogger(LogSamplingFilterTest.class);
+
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>() {
+        @Override
+        protected void append(ILoggingEvent event) {
+            // Captures the MDC while the request is still running
+            event.prepareForDeferredProcessing();
+            super.append(event);
+        }
+    };
+
+    private LogSamplingFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext.setMDCAdapter(MDC.getMDCAdapter());
+        loggerContext.addTurboFilter(new SampledOutTurboFilter());
+        logger.setLevel(Level.DEBUG);
+        appender.setContext(loggerContext);
+        appender.start();
+        logger.addAppender(appender);
+
+        Map<String, Double> rates = new LinkedHashMap<>();
+        rates.put("/posts/feed", 0.0);
+        rates.put("/posts/**", 1.0);
+        filter = new LogSamplingFilter(rates, 1.0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loggerContext.stop();
+    }
+
+    @Test
+    void sampledOutEndpointKeepsOnlyWarnings() throws Exception {
+        send("/posts/feed");
+
+        assertEquals(List.of("warn"), messages());
+        assertEquals("GET /posts/feed", appender.list.get(0).getMDCPropertyMap().get(LogSamplingFilter.ENDPOINT));
+    }
+
+    @Test
+    void sampledEndpointKeepsEverything() throws Exception {
+        send("/posts/1");
+
+        assertEquals(List.of("debug", "warn"), messages());
+        assertEquals("GET /posts/**", appender.list.get(0).getMDCPropertyMap().get(LogSamplingFilter.ENDPOINT));
+    }
+
+    @Test
+    void mdcIsClearedAfterTheRequest() throws Exception {
+        send("/posts/feed");
+        logger.debug("outside");
+
+        assertNull(MDC.get(LogSamplingFilter.SAMPLED));
+        assertEquals(List.of("warn", "outside"), messages());
+    }
+
+    private void send(String path) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                logger.debug("debug");
+                logger.warn("warn");
+            }
+        };
+        new MockFilterChain(servlet, filter).doFilter(request, new MockHttpServletResponse());
+    }
+
+    private List<String> messages() {
+        return appender.list.stream().map(ILoggingEvent::getMessage).toList();
+    }
+}
@@ -0,0 +1,215 @@
+package com.instagram.demo.query;
+
+import com.instagram.demo.data.repository.PostRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Counts the entities and collections Hibernate loads to serve the endpoints working on entities,
+ * which must load what their use case needs and none of the associations reachable from it:
+ * edits and deletions restricted to their owner run as single statements and load nothing.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class EntityLoadTest {
+    /**
+     * Entities and collections loaded while serving a request.
+     *
+     * @param entities    The number of entities loaded.
+     * @param collections The number of collections loaded.
+     */
+    record Loads(long entities, long collections) {
+    }
+
+    private static final String POST = "{\"description\":\"Loads\",\"image\":\"loads.jpg\",\"hashtags\":[\"loads\"]}";
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    PostRepository postRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void createPostLoadsTheUploader() {
+        assertEquals(new Loads(1, 0), measure(HttpStatus.CREATED, "bob_jackson", HttpMethod.POST, "/posts/", POST));
+    }
+
+    @Test
+    void missingPostIsNotFound() {
+        assertEquals(new Loads(0, 0), measure(HttpStatus.NOT_FOUND, "jane_smith", HttpMethod.GET, "/posts/" + Long.MAX_VALUE, null));
+    }
+
+    @Test
+    void editPostLoadsNothing() {
+        long postId = createPost();
+        assertEquals(new Loads(0, 0), measure(HttpStatus.OK, "bob_jackson", HttpMethod.PUT, "/posts/" + postId, POST));
+        assertEquals(new Loads(0, 0), measure(HttpStatus.FORBIDDEN, "jane_smith", HttpMethod.PUT, "/posts/" + postId, POST));
+        assertEquals(new Loads(0, 0), measure(HttpStatus.NOT_FOUND, "jane_smith", HttpMethod.PUT, "/posts/" + Long.MAX_VALUE, POST));
+    }
+
+    @Test
+    void editPostAppliesTheHashtagDifference() {
+        long postId = createPost();
+        String loadsRow = "SELECT ctid::text FROM post_hashtags WHERE post_id = ? AND hashtags = 'loads'";
+        String before = jdbcTemplate.queryForObject(loadsRow, String.class, postId);
+
+        String edit = "{\"description\":\"Loads\",\"image\":\"loads.jpg\",\"hashtags\":[\"loads\",\"diff\",\"diff\"]}";
+        assertEquals(new Loads(0, 0), measure(HttpStatus.OK, "bob_jackson", HttpMethod.PUT, "/posts/" + postId, edit));
+        assertEquals(List.of("diff", "loads"), jdbcTemplate.queryForList(
+                "SELECT hashtags FROM post_hashtags WHERE post_id = ? ORDER BY hashtags", String.class, postId));
+        assertEquals(before, jdbcTemplate.queryForObject(loadsRow, String.class, postId), "Kept hashtag rewritten");
+
+        String replace = "{\"description\":\"Loads\",\"image\":\"loads.jpg\",\"hashtags\":[\"other\"]}";
+        measure(HttpStatus.OK, "bob_jackson", HttpMethod.PUT, "/posts/" + postId, replace);
+        assertEquals(List.of("other"), jdbcTemplate.queryForList(
+                "SELECT hashtags FROM post_hashtags WHERE post_id = ?", String.class, postId));
+    }
+
+    @Test
+    void editPostWithoutHashtagsRemovesThem() {
+        long postId = createPost();
+        String nullHashtag = "{\"description\":\"Loads\",\"image\":\"loads.jpg\",\"hashtags\":[\"loads\",null]}";
+        measure(HttpStatus.BAD_REQUEST, "bob_jackson", HttpMethod.PUT, "/posts/" + postId, nullHashtag);
+        assertEquals(List.of("loads"), jdbcTemplate.queryForList(
+                "SELECT hashtags FROM post_hashtags WHERE post_id = ?", String.class, postId));
+
+        String nullHashtags = "{\"description\":\"Loads\",\"image\":\"loads.jpg\",\"hashtags\":null}";
+        measure(HttpStatus.OK, "bob_jackson", HttpMethod.PUT, "/posts/" + postId, nullHashtags);
+        assertEquals(List.of(), jdbcTemplate.queryForList(
+                "SELECT hashtags FROM post_hashtags WHERE post_id = ?", String.class, postId));
+
+        measure(HttpStatus.OK, "bob_jackson", HttpMethod.PUT, "/posts/" + postId, POST);
+        String missingHashtags = "{\"description\":\"Loads\",\"image\":\"loads.jpg\"}";
+        measure(HttpStatus.OK, "bob_jackson", HttpMethod.PUT, "/posts/" + postId, missingHashtags);
+        assertEquals(List.of(), jdbcTemplate.queryForList(
+                "SELECT hashtags FROM post_hashtags WHERE post_id = ?", String.class, postId));
+    }
+
+    @Test
+    void concurrentEditsAddAHashtagOnce() throws Exception {
+        long postId = createPost();
+        String edit = "{\"description\":\"Loads\",\"image\":\"loads.jpg\",\"hashtags\":[\"loads\",\"race\"]}";
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // The first edit has added the hashtag but not committed it yet when the second one adds it again
+            Future<Loads> concurrentEdit = transactionTemplate.execute(status -> {
+                postRepository.replaceHashtags(postId, new String[]{"loads", "race"});
+                Future<Loads> edited = executor.submit(
+                        () -> measure(HttpStatus.OK, "bob_jackson", HttpMethod.PUT, "/posts/" + postId, edit));
+                awaitLockWait(edited);
+                return edited;
+            });
+            concurrentEdit.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of("loads", "race"), jdbcTemplate.queryForList(
+                "SELECT hashtags FROM post_hashtags WHERE post_id = ? ORDER BY hashtags", String.class, postId));
+    }
+
+    @Test
+    void deletePostLoadsNothing() {
+        long postId = createPost();
+        measure(HttpStatus.CREATED, "jane_smith", HttpMethod.POST, "/comments/" + postId, "Gone soon");
+        jdbcTemplate.update("INSERT INTO person_liked_posts (likers_id, liked_posts_id) " +
+                "SELECT id, ? FROM person WHERE username = 'jane_smith'", postId);
+
+        assertEquals(new Loads(0, 0), measure(HttpStatus.FORBIDDEN, "jane_smith", HttpMethod.DELETE, "/posts/" + postId, null));
+        assertEquals(new Loads(0, 0), measure(HttpStatus.OK, "bob_jackson", HttpMethod.DELETE, "/posts/" + postId, null));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM post WHERE id = ?", Long.class, postId));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM comment WHERE post_id = ?", Long.class, postId));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person_liked_posts WHERE liked_posts_id = ?", Long.class, postId));
+    }
+
+    @Test
+    void commentsLoadOnlyWhatTheyCreate() {
+        long postId = createPost();
+        assertEquals(new Loads(2, 0), measure(HttpStatus.CREATED, "jane_smith", HttpMethod.POST, "/comments/" + postId, "Nice"));
+        long commentId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM comment WHERE post_id = ?", Long.class, postId);
+
+        assertEquals(new Loads(0, 0), measure(HttpStatus.OK, "jane_smith", HttpMethod.PUT, "/comments/" + commentId, "Nicer"));
+        assertEquals(new Loads(0, 0), measure(HttpStatus.FORBIDDEN, "bob_jackson", HttpMethod.DELETE, "/comments/" + commentId, null));
+        assertEquals(new Loads(0, 0), measure(HttpStatus.OK, "jane_smith", HttpMethod.DELETE, "/comments/" + commentId, null));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT comment_count FROM post WHERE id = ?", Integer.class, postId));
+    }
+
+    /**
+     * Waits until a concurrent request waits for a lock, or gives up after a while if it completed.
+     */
+    private void awaitLockWait(Future<?> request) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!request.isDone() && System.nanoTime() < deadline && jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_stat_activity WHERE datname = current_database() AND wait_event_type = 'Lock'",
+                Long.class) == 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private long createPost() {
+        measure(HttpStatus.CREATED, "bob_jackson", HttpMethod.POST, "/posts/", POST);
+        return jdbcTemplate.queryForObject(
+                "SELECT MAX(p.id) FROM post p JOIN person u ON u.id = p.uploader_id WHERE u.username = 'bob_jackson'",
+                Long.class
+        );
+    }
+
+    private Loads measure(HttpStatus expectedStatus, String username, HttpMethod method, String path, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String password = Map.of(
+                "john_doe", "password123",
+                "jane_smith", "password456",
+                "bob_jackson", "password789"
+        ).get(username);
+
+        statistics.clear();
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth(username, password)
+                .exchange(path, method, new HttpEntity<>(body, headers), String.class);
+        Loads loads = new Loads(statistics.getEntityLoadCount(), statistics.getCollectionLoadCount());
+
+        assertEquals(expectedStatus, response.getStatusCode(), response.getBody());
+        return loads;
+    }
+}
@@ -0,0 +1,168 @@
+package com.instagram.demo.query;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instagram.demo.data.repository.PersonRepository;
+import com.instagram.demo.data.schema.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Checks that the feed hydrates each post with its like count, comment count and like status,
+ * with a number of statements that does not depend on the page size.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class FeedHydrationTest {
+    /**
+     * A post of the feed as hydrated.
+     *
+     * @param likes    The number of likes.
+     * @param comments The number of comments.
+     * @param liked    Whether the viewer likes the post.
+     */
+    record Hydrated(long likes, long comments, boolean liked) {
+    }
+
+    private static final String PASSWORD = "password";
+
+    private static final AtomicInteger PERSONS = new AtomicInteger();
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PersonRepository personRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void hydratesCountsAndLikeStatuses() {
+        String uploader = person();
+        String viewer = person();
+        String other = person();
+        send(HttpStatus.CREATED, viewer, HttpMethod.POST, "/persons/follow/" + uploader, null);
+        List<Long> postIds = createPosts(uploader, 4);
+
+        Map<Long, Hydrated> expected = new HashMap<>();
+        send(HttpStatus.CREATED, viewer, HttpMethod.POST, "/posts/like/" + postIds.get(0), null);
+        send(HttpStatus.CREATED, other, HttpMethod.POST, "/posts/like/" + postIds.get(0), null);
+        send(HttpStatus.CREATED, other, HttpMethod.POST, "/posts/like/" + postIds.get(1), null);
+        send(HttpStatus.CREATED, other, HttpMethod.POST, "/comments/" + postIds.get(1), "First");
+        send(HttpStatus.CREATED, viewer, HttpMethod.POST, "/comments/" + postIds.get(1), "Second");
+        send(HttpStatus.CREATED, viewer, HttpMethod.POST, "/posts/like/" + postIds.get(2), null);
+        send(HttpStatus.CREATED, viewer, HttpMethod.POST, "/comments/" + postIds.get(3), "Only");
+        expected.put(postIds.get(0), new Hydrated(2, 0, true));
+        expected.put(postIds.get(1), new Hydrated(1, 2, false));
+        expected.put(postIds.get(2), new Hydrated(1, 0, true));
+        expected.put(postIds.get(3), new Hydrated(0, 1, false));
+
+        assertEquals(expected, hydrated(get(viewer, "/posts/feed/cursor?pageSize=10")));
+        assertEquals(expected, hydrated(get(viewer, "/posts/feed?pageNumber=0&pageSize=10")));
+    }
+
+    @Test
+    void statementsDoNotDependOnThePageSize() {
+        String uploader = person();
+        String viewer = person();
+        send(HttpStatus.CREATED, viewer, HttpMethod.POST, "/persons/follow/" + uploader, null);
+        List<Long> postIds = createPosts(uploader, 20);
+        for (int i = 0; i < postIds.size(); i += 2) {
+            send(HttpStatus.CREATED, viewer, HttpMethod.POST, "/posts/like/" + postIds.get(i), null);
+        }
+
+        for (String path : List.of("/posts/feed/cursor?pageSize=", "/posts/feed?pageNumber=0&pageSize=")) {
+            Set<String> counts = new HashSet<>();
+            for (int pageSize : List.of(1, 5, 20)) {
+                ResponseEntity<String> response = get(viewer, path + pageSize);
+                assertEquals(pageSize, readTree(response.getBody()).get("content").size());
+                assertNotNull(response.getHeaders().getFirst("X-Query-Count"));
+                counts.add(response.getHeaders().getFirst("X-Query-Count"));
+            }
+            assertEquals(1, counts.size(), path + " statements vary with the page size: " + counts);
+        }
+    }
+
+    /**
+     * Reads the hydrated values of the posts of a feed page.
+     *
+     * @return The hydrated values by post ID.
+     */
+    private Map<Long, Hydrated> hydrated(ResponseEntity<String> response) {
+        Map<Long, Hydrated> hydrated = new HashMap<>();
+        readTree(response.getBody()).get("content").forEach(post -> hydrated.put(
+                post.get("postFeedProjection").get("id").asLong(),
+                new Hydrated(post.get("likesCount").asLong(), post.get("commentCounts").asLong(), post.get("like").asBoolean())
+        ));
+        return hydrated;
+    }
+
+    /**
+     * Creates a person of its own for a test.
+     *
+     * @return The username of the person.
+     */
+    private String person() {
+        String username = "feed_" + System.nanoTime() % 100_000 + "_" + PERSONS.incrementAndGet();
+        personRepository.save(new Person(username, username + "@feed.test", PASSWORD, "Feed", "Test"));
+        return username;
+    }
+
+    private List<Long> createPosts(String uploader, int count) {
+        List<Long> postIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            send(HttpStatus.CREATED, uploader, HttpMethod.POST, "/posts/",
+                    "{\"description\":\"Feed\",\"image\":\"feed.jpg\",\"hashtags\":[]}");
+            postIds.add(jdbcTemplate.queryForObject(
+                    "SELECT MAX(p.id) FROM post p JOIN person u ON u.id = p.uploader_id WHERE u.username = ?",
+                    Long.class, uploader));
+        }
+        return postIds;
+    }
+
+    private JsonNode readTree(String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ResponseEntity<String> get(String username, String path) {
+        ResponseEntity<String> response = restTemplate.withBasicAuth(username, PASSWORD).getForEntity(path, String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode(), response.getBody());
+        return response;
+    }
+
+    private void send(HttpStatus expectedStatus, String username, HttpMethod method, String path, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth(username, PASSWORD)
+                .exchange(path, method, new HttpEntity<>(body, headers), String.class);
+        assertEquals(expectedStatus, response.getStatusCode(), response.getBody());
+    }
+}
@@ -0,0 +1,276 @@
+package com.instagram.demo.query;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instagram.demo.data.projection.person.PersonFeed;
+import com.instagram.demo.data.repository.PersonRepository;
+import com.instagram.demo.data.repository.TimelineRepository;
+import com.instagram.demo.data.schema.Person;
+import com.instagram.demo.service.timeline.HomeTimelineService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the contents of the materialized home timelines after each event maintaining them,
+ * and the feed merging them with the posts of celebrities served in pull mode.
+ * Every test works on persons of its own, so that it does not depend on the sample data or on the other tests.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "timeline.celebrity-threshold=3",
+                "timeline.celebrity-refresh-interval=3600000",
+                "timeline.backfill-size=5",
+                "timeline.fan-out-batch-size=2"
+        }
+)
+class HomeTimelineTest {
+    private static final String PASSWORD = "password";
+
+    private static final AtomicInteger PERSONS = new AtomicInteger();
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PersonRepository personRepository;
+
+    @Autowired
+    TimelineRepository timelineRepository;
+
+    @Autowired
+    HomeTimelineService homeTimelineService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ApplicationContext applicationContext;
+
+    @Test
+    void createdPostIsFannedOutToFollowersOnly() {
+        String uploader = person();
+        String follower = person();
+        String stranger = person();
+        follow(follower, uploader);
+
+        long postId = createPost(uploader);
+
+        assertEquals(List.of(postId), timeline(follower));
+        assertEquals(List.of(), timeline(stranger));
+        assertEquals(List.of(postId), feed(follower, 10));
+    }
+
+    @Test
+    void followBackfillsTheRecentPostsAndUnfollowRemovesThem() {
+        String uploader = person();
+        String follower = person();
+        List<Long> postIds = createPosts(uploader, 7);
+
+        follow(follower, uploader);
+        assertEquals(postIds.subList(0, 5), timeline(follower));
+
+        unfollow(follower, uploader);
+        assertEquals(List.of(), timeline(follower));
+    }
+
+    @Test
+    void deletedPostLeavesTheTimelines() {
+        String uploader = person();
+        String follower = person();
+        follow(follower, uploader);
+        List<Long> postIds = createPosts(uploader, 2);
+
+        send(HttpStatus.OK, uploader, HttpMethod.DELETE, "/posts/" + postIds.get(0), null);
+
+        assertEquals(postIds.subList(1, 2), timeline(follower));
+    }
+
+    @Test
+    void deletedPersonTakesTheirTimelineAndTheirPostsWithThem() {
+        String uploader = person();
+        String follower = person();
+        String other = person();
+        follow(follower, uploader);
+        follow(follower, other);
+        follow(uploader, other);
+        long otherPostId = createPost(other);
+        createPosts(uploader, 2);
+
+        send(HttpStatus.OK, uploader, HttpMethod.DELETE, "/persons/", null);
+
+        assertEquals(List.of(otherPostId), timeline(follower));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM timeline_entry t JOIN person p ON p.id = t.owner_id WHERE p.username = ?",
+                Long.class, uploader));
+    }
+
+    @Test
+    void celebrityPostsArePulledAndFannedOutAgainOnDemotion() {
+        String celebrity = person();
+        String uploader = person();
+        String follower = person();
+        String second = person();
+        String third = person();
+        follow(follower, celebrity);
+        follow(follower, uploader);
+        follow(second, celebrity);
+        follow(third, celebrity);
+        List<Long> olderPostIds = createPosts(celebrity, 2);
+        homeTimelineService.refreshCelebrities();
+
+        // Pull mode: the posts of the celebrity are not written, but are merged into the feed
+        List<Long> pulledPostIds = createPosts(celebrity, 5);
+        long uploaderPostId = createPost(uploader);
+        List<Long> newestPostIds = createPosts(celebrity, 1);
+        assertEquals(List.of(uploaderPostId), timeline(follower).subList(0, 1));
+
+        List<Long> expected = new ArrayList<>(newestPostIds);
+        expected.add(uploaderPostId);
+        expected.addAll(pulledPostIds);
+        expected.addAll(olderPostIds);
+        assertEquals(expected, feed(follower, 10));
+        assertEquals(expected, feed(follower, 3));
+
+        // Demotion: the most recent posts of the former celebrity are written again, and only those
+        unfollow(third, celebrity);
+        jdbcTemplate.update("DELETE FROM timeline_entry WHERE owner_id = (SELECT id FROM person WHERE username = ?)", second);
+        homeTimelineService.refreshCelebrities();
+
+        List<Long> recentPostIds = new ArrayList<>(newestPostIds);
+        recentPostIds.addAll(pulledPostIds.subList(0, 4));
+        assertEquals(recentPostIds, timeline(second));
+        assertEquals(expected.subList(0, 6), timeline(follower).subList(0, 6));
+        assertEquals(List.of(), timeline(third));
+    }
+
+    @Test
+    void celebritiesArePulledFromStartup() {
+        String celebrity = person();
+        for (int i = 0; i < 3; i++) {
+            follow(person(), celebrity);
+        }
+        createPosts(celebrity, 2);
+        String follower = person();
+
+        // A service initialized now, without the scheduler, serves the celebrity in pull mode before any refresh
+        HomeTimelineService started = (HomeTimelineService) applicationContext.getAutowireCapableBeanFactory()
+                .applyBeanPostProcessorsBeforeInitialization(
+                        new HomeTimelineService(timelineRepository, personRepository, 3, 5, 2), "startedHomeTimelineService");
+        started.onFollow(id(follower), id(celebrity));
+
+        assertEquals(List.of(), timeline(follower));
+    }
+
+    /**
+     * Creates a person of its own for a test.
+     *
+     * @return The username of the person.
+     */
+    private String person() {
+        String username = "timeline_" + System.nanoTime() % 100_000 + "_" + PERSONS.incrementAndGet();
+        personRepository.save(new Person(username, username + "@timeline.test", PASSWORD, "Timeline", "Test"));
+        return username;
+    }
+
+    private Long id(String username) {
+        return personRepository.findIdByUsername(username).map(PersonFeed::getId).orElseThrow();
+    }
+
+    private void follow(String follower, String followee) {
+        send(HttpStatus.CREATED, follower, HttpMethod.POST, "/persons/follow/" + followee, null);
+    }
+
+    private void unfollow(String follower, String followee) {
+        send(HttpStatus.OK, follower, HttpMethod.POST, "/persons/follow/" + followee, null);
+    }
+
+    private long createPost(String uploader) {
+        send(HttpStatus.CREATED, uploader, HttpMethod.POST, "/posts/",
+                "{\"description\":\"Timeline\",\"image\":\"timeline.jpg\",\"hashtags\":[]}");
+        return jdbcTemplate.queryForObject(
+                "SELECT MAX(p.id) FROM post p JOIN person u ON u.id = p.uploader_id WHERE u.username = ?",
+                Long.class, uploader);
+    }
+
+    /**
+     * Creates posts in sequence.
+     *
+     * @return The IDs of the posts, the most recent first.
+     */
+    private List<Long> createPosts(String uploader, int count) {
+        List<Long> postIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            postIds.add(0, createPost(uploader));
+        }
+        return postIds;
+    }
+
+    /**
+     * Reads the materialized timeline of a person.
+     *
+     * @return The IDs of the posts in the timeline, the most recent first.
+     */
+    private List<Long> timeline(String owner) {
+        return jdbcTemplate.queryForList(
+                "SELECT t.post_id FROM timeline_entry t JOIN person p ON p.id = t.owner_id " +
+                        "WHERE p.username = ? ORDER BY t.date DESC, t.post_id DESC",
+                Long.class, owner);
+    }
+
+    /**
+     * Reads the whole feed of a person by following the cursors.
+     *
+     * @return The IDs of the posts in the feed, the most recent first.
+     */
+    private List<Long> feed(String owner, int pageSize) {
+        List<Long> postIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            String path = "/posts/feed/cursor?pageSize=" + pageSize + (cursor == null ? "" : "&cursor=" + cursor);
+            JsonNode page = readTree(send(HttpStatus.OK, owner, HttpMethod.GET, path, null));
+            assertTrue(page.get("content").size() <= pageSize);
+            page.get("content").forEach(post -> postIds.add(post.get("postFeedProjection").get("id").asLong()));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+        } while (cursor != null);
+        return postIds;
+    }
+
+    private JsonNode readTree(String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String send(HttpStatus expectedStatus, String username, HttpMethod method, String path, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth(username, PASSWORD)
+                .exchange(path, method, new HttpEntity<>(body, headers), String.class);
+        assertEquals(expectedStatus, response.getStatusCode(), response.getBody());
+        return response.getBody();
+    }
+}
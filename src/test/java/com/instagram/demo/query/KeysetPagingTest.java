@@ -0,0 +1,230 @@
+package com.instagram.demo.query;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instagram.demo.data.repository.PersonRepository;
+import com.instagram.demo.data.schema.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Walks the keyset-paginated listings of comments, feed and post previews page by page:
+ * every element must be returned exactly once in date and ID order, even when dates are equal,
+ * and the last page must be detected without an extra empty page.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class KeysetPagingTest {
+    /**
+     * The pages of a listing walked by following the cursors.
+     *
+     * @param ids   The IDs of the elements, in the order they were returned.
+     * @param pages The number of pages read.
+     */
+    record Walk(List<Long> ids, int pages) {
+    }
+
+    private static final String PASSWORD = "password";
+
+    private static final String TIED_DATE = "2024-01-01 12:00:00";
+
+    private static final AtomicInteger PERSONS = new AtomicInteger();
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PersonRepository personRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void commentsWithEqualDatesArePagedByID() {
+        String author = person();
+        long postId = createPosts(author, 1).get(0);
+        List<Long> commentIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            send(HttpStatus.CREATED, author, HttpMethod.POST, "/comments/" + postId, "Tied " + i);
+            commentIds.add(0, jdbcTemplate.queryForObject("SELECT MAX(id) FROM comment WHERE post_id = ?", Long.class, postId));
+        }
+        jdbcTemplate.update("UPDATE comment SET date = ?::timestamp WHERE post_id = ?", TIED_DATE, postId);
+
+        assertEquals(new Walk(commentIds, 3), walk(author, "/posts/" + postId + "/comments", 2));
+
+        // A last page holding exactly the requested number of comments is not followed by an empty one
+        send(HttpStatus.OK, author, HttpMethod.DELETE, "/comments/" + commentIds.get(4), null);
+        assertEquals(new Walk(commentIds.subList(0, 4), 2), walk(author, "/posts/" + postId + "/comments", 2));
+    }
+
+    @Test
+    void feedWithEqualDatesIsPagedByID() {
+        String uploader = person();
+        String follower = person();
+        send(HttpStatus.CREATED, follower, HttpMethod.POST, "/persons/follow/" + uploader, null);
+        List<Long> postIds = createPosts(uploader, 4);
+        jdbcTemplate.update("UPDATE post SET date = ?::timestamp WHERE id IN (?, ?, ?, ?)",
+                TIED_DATE, postIds.get(0), postIds.get(1), postIds.get(2), postIds.get(3));
+        jdbcTemplate.update("UPDATE timeline_entry SET date = ?::timestamp WHERE post_id IN (?, ?, ?, ?)",
+                TIED_DATE, postIds.get(0), postIds.get(1), postIds.get(2), postIds.get(3));
+
+        assertEquals(new Walk(postIds, 2), walk(follower, "/posts/feed/cursor", 2));
+        assertEquals(new Walk(postIds, 4), walk(follower, "/posts/feed/cursor", 1));
+        assertEquals(new Walk(postIds, 1), walk(follower, "/posts/feed/cursor", 5));
+    }
+
+    @Test
+    void previewsWithEqualDatesArePagedByID() {
+        String uploader = person();
+        List<Long> postIds = createPosts(uploader, 6);
+        jdbcTemplate.update("UPDATE post SET date = ?::timestamp WHERE uploader_id = " +
+                "(SELECT id FROM person WHERE username = ?)", TIED_DATE, uploader);
+
+        assertEquals(new Walk(postIds, 2), walk(uploader, "/posts/preview/" + uploader + "/cursor", 3));
+        assertEquals(new Walk(postIds, 3), walk(uploader, "/posts/preview/" + uploader + "/cursor", 2));
+    }
+
+    @Test
+    void missingOrBlankCursorStartsFromTheFirstElement() {
+        String uploader = person();
+        List<Long> postIds = createPosts(uploader, 2);
+        // The most recent date a post can have still comes after the FIRST sentinel
+        jdbcTemplate.update("UPDATE post SET date = '9999-12-31 23:59:59' WHERE id = ?", postIds.get(1));
+
+        String path = "/posts/preview/" + uploader + "/cursor?pageSize=10";
+        assertEquals(List.of(postIds.get(1), postIds.get(0)), ids(page(uploader, path)));
+        assertEquals(List.of(postIds.get(1), postIds.get(0)), ids(page(uploader, path + "&cursor=")));
+        assertTrue(page(uploader, path).get("nextCursor").isNull());
+
+        String empty = "/posts/preview/" + person() + "/cursor";
+        assertEquals(List.of(), ids(page(uploader, empty)));
+        assertTrue(page(uploader, empty).get("nextCursor").isNull());
+    }
+
+    @Test
+    void invalidCursorIsABadRequest() {
+        String username = person();
+        long postId = createPosts(username, 1).get(0);
+        List<String> cursors = List.of(
+                "not base64!",
+                "%%%",
+                encode("garbage"),
+                encode("2024-01-01T12:00_"),
+                encode("2024-01-01T12:00_notanumber"),
+                encode("2024-13-01T12:00_1"),
+                encode("+999999999-01-01T00:00_1"),
+                encode("-999999999-01-01T00:00_1")
+        );
+        for (String path : List.of("/posts/" + postId + "/comments", "/posts/feed/cursor", "/posts/preview/" + username + "/cursor")) {
+            for (String cursor : cursors) {
+                ResponseEntity<String> response = restTemplate
+                        .withBasicAuth(username, PASSWORD)
+                        .getForEntity(path + "?cursor={cursor}", String.class, cursor);
+                assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode(), path + " with cursor " + cursor);
+            }
+        }
+    }
+
+    /**
+     * Creates a person of its own for a test.
+     *
+     * @return The username of the person.
+     */
+    private String person() {
+        String username = "keyset_" + System.nanoTime() % 100_000 + "_" + PERSONS.incrementAndGet();
+        personRepository.save(new Person(username, username + "@keyset.test", PASSWORD, "Keyset", "Test"));
+        return username;
+    }
+
+    /**
+     * Creates posts in sequence.
+     *
+     * @return The IDs of the posts, the most recent first.
+     */
+    private List<Long> createPosts(String uploader, int count) {
+        List<Long> postIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            send(HttpStatus.CREATED, uploader, HttpMethod.POST, "/posts/",
+                    "{\"description\":\"Keyset\",\"image\":\"keyset.jpg\",\"hashtags\":[]}");
+            postIds.add(0, jdbcTemplate.queryForObject(
+                    "SELECT MAX(p.id) FROM post p JOIN person u ON u.id = p.uploader_id WHERE u.username = ?",
+                    Long.class, uploader));
+        }
+        return postIds;
+    }
+
+    /**
+     * Reads a whole listing by following the cursors, checking that no page is empty or larger than requested
+     * and that a page shorter than requested comes without a next cursor.
+     */
+    private Walk walk(String username, String path, int pageSize) {
+        List<Long> ids = new ArrayList<>();
+        int pages = 0;
+        String cursor = null;
+        do {
+            JsonNode page = page(username, path + "?pageSize=" + pageSize + (cursor == null ? "" : "&cursor=" + cursor));
+            pages++;
+            List<Long> pageIds = ids(page);
+            assertFalse(pageIds.isEmpty(), "Empty page read at " + path);
+            assertTrue(pageIds.size() <= pageSize);
+            ids.addAll(pageIds);
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            if (pageIds.size() < pageSize) {
+                assertNull(cursor, "Next cursor after a short page at " + path);
+            }
+        } while (cursor != null);
+        return new Walk(ids, pages);
+    }
+
+    private JsonNode page(String username, String path) {
+        try {
+            return objectMapper.readTree(send(HttpStatus.OK, username, HttpMethod.GET, path, null));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Long> ids(JsonNode page) {
+        List<Long> ids = new ArrayList<>();
+        page.get("content").forEach(element -> ids.add(element.has("postFeedProjection")
+                ? element.get("postFeedProjection").get("id").asLong()
+                : element.get("id").asLong()));
+        return ids;
+    }
+
+    private static String encode(String cursor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String send(HttpStatus expectedStatus, String username, HttpMethod method, String path, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth(username, PASSWORD)
+                .exchange(path, method, new HttpEntity<>(body, headers), String.class);
+        assertEquals(expectedStatus, response.getStatusCode(), response.getBody());
+        return response.getBody();
+    }
+}
@@ -0,0 +1,54 @@
+package com.instagram.demo.query;
+
+import com.instagram.demo.query.filter.QueryCountFilter;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Fails when a read endpoint executes more SQL statements than its budget ({@code query.count.budgets}),
+ * or executes any statement twice, which is how N+1 patterns show up.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"query.count.enabled=true", "query.count.headers=true", "query.count.fail-on-budget=true"}
+)
+class QueryBudgetTest {
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "/login",
+            "/posts/feed?pageNumber=0&pageSize=10",
+            "/posts/feed/cursor",
+            "/posts/1",
+            "/posts/1/comments?pageSize=10",
+            "/posts/1/comments?pageSize=10&cursor=MjEwMC0wMS0wMVQwMDowMF8xMDAw",
+            "/posts/preview/jane_smith?pageNumber=0&pageSize=10",
+            "/posts/preview/jane_smith/cursor",
+            "/persons/info/jane_smith",
+            "/persons/stats/jane_smith",
+            "/persons/suggestions",
+            "/search/users?query=j",
+            "/search/hashtags?query=in",
+            "/search/posts/hashtag/instagram",
+            "/search/posts?query=post",
+            "/trending/hashtags?window=day"
+    })
+    void staysWithinBudget(String path) {
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth("john_doe", "password123")
+                .getForEntity(path, String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode(), response.getBody());
+        assertEquals("0", response.getHeaders().getFirst(QueryCountFilter.QUERY_DUPLICATES_HEADER),
+                "Duplicate statements, N+1?");
+    }
+}
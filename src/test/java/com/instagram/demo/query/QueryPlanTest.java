@@ -0,0 +1,227 @@
+package com.instagram.demo.query;
+
+import com.instagram.demo.data.repository.CommentRepository;
+import com.instagram.demo.data.repository.PersonRepository;
+import com.instagram.demo.data.repository.PostRepository;
+import com.instagram.demo.data.repository.TimelineRepository;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.ChainListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fails when a hot repository query cannot be served by the index migrated for it.
+ * Each repository method is called in a rolled-back transaction while the statement it sends through the
+ * datasource-proxy is captured, then that statement is explained with the parameters it was bound to,
+ * so that the plan checked is the plan of the SQL Hibernate actually generates.
+ * The sample data is so small that the planner prefers sequential scans, which are disabled while explaining,
+ * so that a plan reading the expected index shows the index matches the shape of the query.
+ */
+@SpringBootTest
+class QueryPlanTest {
+    /**
+     * Statements captured on the current thread, or {@code null} when not capturing.
+     */
+    private static final ThreadLocal<List<QueryInfo>> CAPTURED = new ThreadLocal<>();
+
+    private static final QueryExecutionListener CAPTURE = new QueryExecutionListener() {
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            List<QueryInfo> captured = CAPTURED.get();
+            if (captured != null) {
+                captured.addAll(queryInfoList);
+            }
+        }
+    };
+
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    PersonRepository personRepository;
+
+    @Autowired
+    PostRepository postRepository;
+
+    @Autowired
+    CommentRepository commentRepository;
+
+    @Autowired
+    TimelineRepository timelineRepository;
+
+    static Stream<Arguments> hotQueries() {
+        return Stream.of(
+                hotQuery("findCredentialsByUsername",
+                        test -> test.personRepository.findCredentialsByUsername("jane_smith"),
+                        "person_username_key"),
+                hotQuery("searchByNamePrefix",
+                        test -> test.personRepository.searchByNamePrefix("j%", 10),
+                        "person_username_search_idx", "person_firstname_search_idx", "person_lastname_search_idx"),
+                hotQuery("countFollowersByUsername",
+                        test -> test.personRepository.countFollowersByUsername("john_doe"),
+                        "person_followers_pkey"),
+                hotQuery("findFolloweeIdsAmong",
+                        test -> test.personRepository.findFolloweeIdsAmong(1L, Set.of(2L, 3L)),
+                        "person_followers_follower_idx"),
+                hotQuery("toggleFollow",
+                        test -> test.personRepository.toggleFollow(2L, 3L),
+                        "person_followers_follower_idx"),
+                hotQuery("findPostsByUploaderUsernameBefore",
+                        test -> test.postRepository.findPostsByUploaderUsernameBefore(
+                                "bob_jackson", LATEST, Long.MAX_VALUE, PageRequest.ofSize(10)),
+                        "post_uploader_date_idx"),
+                hotQuery("findLikedPostIdsByUser",
+                        test -> test.postRepository.findLikedPostIdsByUser(List.of(1L, 2L), "jane_smith"),
+                        "person_liked_posts_liker_idx"),
+                hotQuery("countLikersByPostId",
+                        test -> test.personRepository.countLikersByPostId(2L),
+                        "person_liked_posts_pkey"),
+                hotQuery("toggleLike",
+                        test -> test.postRepository.toggleLike(2L, "jane_smith"),
+                        "person_username_key", "person_liked_posts_liker_idx", "post_pkey"),
+                hotQuery("deleteOwnedPost",
+                        test -> test.postRepository.deleteOwnedPost(1L, "jane_smith"),
+                        "post_pkey"),
+                hotQuery("replaceHashtags",
+                        test -> test.postRepository.replaceHashtags(1L, new String[]{"nature"}),
+                        "post_hashtags_post_idx"),
+                hotQuery("searchHashtagsByPrefix",
+                        test -> test.postRepository.searchHashtagsByPrefix("na%", 10),
+                        "post_hashtags_search_idx"),
+                hotQuery("searchByHashtag",
+                        test -> test.postRepository.searchByHashtag("nature", 10),
+                        "post_hashtags_search_idx"),
+                hotQuery("searchByDescription",
+                        test -> test.postRepository.searchByDescription("%journey%", 10),
+                        "post_description_search_idx"),
+                hotQuery("decrementCommentCountsByAuthorId",
+                        test -> test.postRepository.decrementCommentCountsByAuthorId(1L),
+                        "comment_author_idx"),
+                hotQuery("findByPostIdBefore",
+                        test -> test.commentRepository.findByPostIdBefore(3L, LATEST, Long.MAX_VALUE, PageRequest.ofSize(10)),
+                        "comment_post_date_idx"),
+                hotQuery("findTimelineByOwnerIdBefore",
+                        test -> test.timelineRepository.findTimelineByOwnerIdBefore(
+                                1L, LATEST, Long.MAX_VALUE, PageRequest.ofSize(10)),
+                        "timeline_entry_owner_date_idx"),
+                hotQuery("findHybridTimelineByOwnerIdBefore",
+                        test -> test.timelineRepository.findHybridTimelineByOwnerIdBefore(
+                                1L, Set.of(3L), LATEST, Long.MAX_VALUE, 0, 11),
+                        "timeline_entry_owner_date_idx", "post_uploader_date_idx")
+        );
+    }
+
+    private static Arguments hotQuery(String name, Consumer<QueryPlanTest> call, String... indexes) {
+        return Arguments.of(name, call, List.of(indexes));
+    }
+
+    @BeforeEach
+    void captureStatements() {
+        ChainListener listeners = ((ProxyDataSource) dataSource).getProxyConfig().getQueryListener();
+        if (!listeners.getListeners().contains(CAPTURE)) {
+            listeners.addListener(CAPTURE);
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void usesIndexes(String name, Consumer<QueryPlanTest> call, List<String> indexes) {
+        List<QueryInfo> statements = capture(call);
+        assertEquals(1, statements.size(), name + " sent " + statements.size() + " statements");
+
+        String plan = explain(statements.get(0));
+        for (String index : indexes) {
+            // Index scans read "using <index> on <table>", bitmap index scans "on <index>"
+            assertTrue(plan.contains("using " + index + " ") || plan.contains("on " + index + " "),
+                    "Expected a scan of " + index + " for " + name + ":\n" + statements.get(0).getQuery() + "\n" + plan);
+        }
+    }
+
+    /**
+     * Calls repository methods in a transaction rolled back afterward, so that modifying queries leave the data as is.
+     *
+     * @return The statements sent by the call.
+     */
+    private List<QueryInfo> capture(Consumer<QueryPlanTest> call) {
+        List<QueryInfo> statements = new ArrayList<>();
+        CAPTURED.set(statements);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                call.accept(this);
+                status.setRollbackOnly();
+            });
+        } finally {
+            CAPTURED.remove();
+        }
+        return statements;
+    }
+
+    /**
+     * Explains a captured statement, binding the parameters it was executed with.
+     *
+     * @return The lines of the plan.
+     */
+    private String explain(QueryInfo statement) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (Statement settings = connection.createStatement()) {
+                settings.execute("SET enable_seqscan = off");
+                try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + statement.getQuery())) {
+                    for (List<ParameterSetOperation> parameters : statement.getParametersList()) {
+                        for (ParameterSetOperation parameter : parameters) {
+                            parameter.getMethod().invoke(explain, parameter.getArgs());
+                        }
+                    }
+                    StringBuilder lines = new StringBuilder();
+                    try (ResultSet resultSet = explain.executeQuery()) {
+                        while (resultSet.next()) {
+                            lines.append(resultSet.getString(1)).append('\n');
+                        }
+                    }
+                    return lines.toString();
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    settings.execute("RESET enable_seqscan");
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,103 @@
+package com.instagram.demo.security.authentication;
+
+import com.instagram.demo.security.user.CustomUserDetails;
+import com.instagram.demo.security.user.CustomUserDetailsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that hashed passwords are verified on the bounded hashing executor, which rejects logins once saturated.
+ */
+class CustomAuthenticationProviderTest {
+    private static final BCryptPasswordEncoder BCRYPT = new BCryptPasswordEncoder(4);
+
+    private static final String HASH = BCRYPT.encode("password123");
+
+    @Test
+    void verifiesHashedPasswordsOnTheHashingExecutor() {
+        List<String> threads = new ArrayList<>();
+        PasswordEncoder encoder = new BCryptPasswordEncoder(4) {
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                threads.add(Thread.currentThread().getName());
+                return super.matches(rawPassword, encodedPassword);
+            }
+        };
+        CustomAuthenticationProvider provider = new CustomAuthenticationProvider(userDetailsService(), encoder, 1, 10, 5000);
+        try {
+            assertTrue(provider.authenticate(login("password123")).isAuthenticated());
+            assertThrows(BadCredentialsException.class, () -> provider.authenticate(login("wrong")));
+            assertEquals(List.of("password-hashing-1", "password-hashing-1"), threads);
+        } finally {
+            provider.close();
+        }
+    }
+
+    @Test
+    void rejectsLoginsOnceTheHashingExecutorIsSaturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder encoder = new BCryptPasswordEncoder(4) {
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.matches(rawPassword, encodedPassword);
+            }
+        };
+        CustomAuthenticationProvider provider = new CustomAuthenticationProvider(userDetailsService(), encoder, 1, 1, 5000);
+        ExecutorService logins = Executors.newFixedThreadPool(2);
+        try {
+            // One login verifying, one queued
+            CompletableFuture<?> verifying = CompletableFuture.runAsync(() -> provider.authenticate(login("password123")), logins);
+            CompletableFuture<?> queued = CompletableFuture.runAsync(() -> provider.authenticate(login("password123")), logins);
+            while (started.getCount() == 2 || provider.queuedVerifications() == 0) {
+                Thread.onSpinWait();
+            }
+
+            assertThrows(AuthenticationServiceException.class, () -> provider.authenticate(login("password123")));
+
+            release.countDown();
+            started.await();
+            verifying.get();
+            queued.get();
+        } finally {
+            release.countDown();
+            logins.shutdownNow();
+            provider.close();
+        }
+    }
+
+    private static UsernamePasswordAuthenticationToken login(String password) {
+        return new UsernamePasswordAuthenticationToken("john_doe", password);
+    }
+
+    private static CustomUserDetailsService userDetailsService() {
+        return new CustomUserDetailsService(null) {
+            @Override
+            public UserDetails loadUserByUsername(String username) {
+                return new CustomUserDetails("john.doe@example.com", HASH);
+            }
+        };
+    }
+}
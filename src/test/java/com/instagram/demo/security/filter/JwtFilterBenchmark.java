@@ -0,0 +1,97 @@
+package com.instagram.demo.security.filter;
+
+import com.instagram.demo.security.token.JwtTokenService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServlet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the JWT filters, run as they are chained for an authenticated API request carrying the cookie,
+ * and of the validator alone.
+ * {@code cacheSize} 0 disables the cache of verified tokens, so that every request parses and verifies its token.
+ * {@code slidingSession} false issues a new token on every request, as the generator did before sliding sessions.
+ * {@link #legacyVerification()} measures what the validator did before the key and the parser were shared.
+ * <p>
+ * Run with {@code ./mvnw verify -P benchmark -Dbenchmark.include=JwtFilterBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtFilterBenchmark {
+    @Param({"0", "10000"})
+    long cacheSize;
+
+    @Param({"false", "true"})
+    boolean slidingSession;
+
+    private JWTTokenValidatorFilter validatorFilter;
+
+    private JWTTokenGeneratorFilter generatorFilter;
+
+    private String token;
+
+    private final HttpServlet servlet = new HttpServlet() {
+    };
+
+    @Setup
+    public void setUp() {
+        JwtTokenService jwtTokenService = new JwtTokenService(cacheSize, JwtTokenService.VALIDITY / 2);
+        validatorFilter = new JWTTokenValidatorFilter(jwtTokenService);
+        generatorFilter = new JWTTokenGeneratorFilter(jwtTokenService, slidingSession);
+        token = jwtTokenService.issue("john_doe");
+    }
+
+    @Benchmark
+    public MockHttpServletResponse filterChain() throws Exception {
+        return run(new MockFilterChain(servlet, validatorFilter, generatorFilter));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse validatorFilter() throws Exception {
+        return run(new MockFilterChain(servlet, validatorFilter));
+    }
+
+    @Benchmark
+    public Claims legacyVerification() {
+        SecretKey key = Keys.hmacShaKeyFor(JwtTokenService.JWT_KEY.getBytes(StandardCharsets.UTF_8));
+        return Jwts.parser()
+                .verifyWith(key)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    private MockHttpServletResponse run(MockFilterChain filterChain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/posts/1");
+        request.setServletPath("/posts/1");
+        request.setCookies(new Cookie(JWTTokenValidatorFilter.JWT_COOKIE_NAME, token));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,150 @@
+package com.instagram.demo.service.cache;
+
+import com.instagram.demo.data.configuration.CacheConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.autoconfigure.gson.GsonAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Starts two lightweight application contexts in the same JVM, standing for two nodes, and checks that
+ * an eviction made through one of them reaches the cache of the other, with each {@link InvalidationChannel}.
+ */
+class CacheInvalidationBusTest {
+    /**
+     * Maximum time in milliseconds for an invalidation to reach the other node.
+     */
+    private static final long TIMEOUT = 5000;
+
+    /**
+     * A node holding only the cache, its invalidator and the channels, plus what the channels need.
+     */
+    @Configuration
+    @Import({
+            CacheConfiguration.class,
+            CacheInvalidator.class,
+            InProcessInvalidationChannel.class,
+            PostgresInvalidationChannel.class
+    })
+    @ImportAutoConfiguration({
+            CacheAutoConfiguration.class,
+            DataSourceAutoConfiguration.class,
+            DataSourceTransactionManagerAutoConfiguration.class,
+            JdbcTemplateAutoConfiguration.class,
+            TransactionAutoConfiguration.class,
+            GsonAutoConfiguration.class
+    })
+    static class Node {
+    }
+
+    abstract static class Scenario {
+        ConfigurableApplicationContext first;
+
+        ConfigurableApplicationContext second;
+
+        abstract String channel();
+
+        @BeforeEach
+        void startNodes() {
+            first = startNode();
+            second = startNode();
+        }
+
+        @AfterEach
+        void stopNodes() {
+            first.close();
+            second.close();
+        }
+
+        @Test
+        void evictionsReachTheOtherNode() {
+            Cache postDetail = cache(second, CacheConfiguration.POST_DETAIL);
+            Cache personInfo = cache(second, CacheConfiguration.PERSON_INFO);
+            Cache personStats = cache(second, CacheConfiguration.PERSON_STATS);
+            postDetail.put(1L, "first post");
+            postDetail.put(2L, "second post");
+            personInfo.put("john_doe", "John");
+            personStats.put("followers:jane_smith", 1L);
+
+            CacheInvalidator invalidator = first.getBean(CacheInvalidator.class);
+            invalidator.evictPost(1L);
+            invalidator.evictPerson("john_doe");
+            invalidator.evictPersonStats("jane_smith");
+
+            awaitEvicted(postDetail, 1L);
+            awaitEvicted(personInfo, "john_doe");
+            awaitEvicted(personStats, "followers:jane_smith");
+            assertNotNull(postDetail.get(2L), "Only the invalidated post should be evicted");
+        }
+
+        @Test
+        void clearingPostDetailsReachesTheOtherNode() {
+            Cache postDetail = cache(second, CacheConfiguration.POST_DETAIL);
+            postDetail.put(1L, "first post");
+            postDetail.put(2L, "second post");
+
+            first.getBean(CacheInvalidator.class).evictAllPostDetails();
+
+            awaitEvicted(postDetail, 1L);
+            awaitEvicted(postDetail, 2L);
+        }
+
+        private ConfigurableApplicationContext startNode() {
+            return new SpringApplicationBuilder(Node.class)
+                    .web(WebApplicationType.NONE)
+                    .properties(
+                            "cache.invalidation.channel=" + channel(),
+                            "logging.level.org.springframework=info",
+                            "logging.level.com.instagram.demo=info"
+                    )
+                    .run();
+        }
+
+        private static Cache cache(ConfigurableApplicationContext context, String name) {
+            return context.getBean(CacheManager.class).getCache(name);
+        }
+
+        private static void awaitEvicted(Cache cache, Object key) {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (cache.get(key) != null) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail(key + " was not evicted from " + cache.getName() + " within " + TIMEOUT + " ms");
+                }
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    @Nested
+    class InProcess extends Scenario {
+        @Override
+        String channel() {
+            return "in-process";
+        }
+    }
+
+    @Nested
+    class Postgres extends Scenario {
+        @Override
+        String channel() {
+            return "postgres";
+        }
+    }
+}
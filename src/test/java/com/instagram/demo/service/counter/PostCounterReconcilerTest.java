@@ -0,0 +1,218 @@
+package com.instagram.demo.service.counter;
+
+import com.instagram.demo.data.repository.PersonRepository;
+import com.instagram.demo.data.repository.PostRepository;
+import com.instagram.demo.data.schema.Person;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the denormalized like and comment counts of posts follow every write changing them,
+ * that the reconciler repairs counts that drifted in a single pass over ID ranges smaller than the post table,
+ * and that it does not overwrite a like committed while it runs.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "counters.reconcile-interval=3600000",
+                "counters.reconcile-batch-size=3"
+        }
+)
+class PostCounterReconcilerTest {
+    /**
+     * The counts of a post.
+     *
+     * @param likes    The number of likes.
+     * @param comments The number of comments.
+     */
+    record Counts(long likes, long comments) {
+    }
+
+    private static final String PASSWORD = "password";
+
+    private static final AtomicInteger PERSONS = new AtomicInteger();
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PersonRepository personRepository;
+
+    @Autowired
+    PostRepository postRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    PostCounterReconciler postCounterReconciler;
+
+    @Test
+    void countersFollowLikesCommentsAndDeletions() {
+        String uploader = person();
+        String liker = person();
+        String commenter = person();
+        long postId = createPost(uploader);
+
+        send(HttpStatus.CREATED, liker, HttpMethod.POST, "/posts/like/" + postId, null);
+        send(HttpStatus.CREATED, commenter, HttpMethod.POST, "/posts/like/" + postId, null);
+        send(HttpStatus.OK, commenter, HttpMethod.POST, "/posts/like/" + postId, null);
+        send(HttpStatus.CREATED, commenter, HttpMethod.POST, "/posts/like/" + postId, null);
+        assertCounts(new Counts(2, 0), postId);
+
+        send(HttpStatus.CREATED, liker, HttpMethod.POST, "/comments/" + postId, "First");
+        send(HttpStatus.CREATED, commenter, HttpMethod.POST, "/comments/" + postId, "Second");
+        send(HttpStatus.CREATED, commenter, HttpMethod.POST, "/comments/" + postId, "Third");
+        assertCounts(new Counts(2, 3), postId);
+
+        long commentId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM comment WHERE post_id = ?", Long.class, postId);
+        send(HttpStatus.OK, commenter, HttpMethod.DELETE, "/comments/" + commentId, null);
+        assertCounts(new Counts(2, 2), postId);
+
+        // Deleting a person takes their likes and comments, and the counts with them
+        send(HttpStatus.OK, commenter, HttpMethod.DELETE, "/persons/", null);
+        assertCounts(new Counts(1, 1), postId);
+    }
+
+    @Test
+    void reconcilerRepairsDriftedCountersInOnePass() {
+        String uploader = person();
+        String liker = person();
+        List<Long> postIds = List.of(createPost(uploader), createPost(uploader), createPost(uploader), createPost(uploader));
+        send(HttpStatus.CREATED, liker, HttpMethod.POST, "/posts/like/" + postIds.get(0), null);
+        send(HttpStatus.CREATED, liker, HttpMethod.POST, "/comments/" + postIds.get(0), "Drift");
+        send(HttpStatus.CREATED, liker, HttpMethod.POST, "/comments/" + postIds.get(3), "Drift");
+        postCounterReconciler.reconcile();
+
+        jdbcTemplate.update("UPDATE post SET like_count = 42 WHERE id = ?", postIds.get(0));
+        jdbcTemplate.update("UPDATE post SET comment_count = -1 WHERE id = ?", postIds.get(1));
+        jdbcTemplate.update("UPDATE post SET like_count = 7, comment_count = 7 WHERE id = ?", postIds.get(3));
+
+        assertEquals(3, postCounterReconciler.reconcile());
+        assertCounts(new Counts(1, 1), postIds.get(0));
+        assertCounts(new Counts(0, 0), postIds.get(1));
+        assertCounts(new Counts(0, 0), postIds.get(2));
+        assertCounts(new Counts(0, 1), postIds.get(3));
+        assertEquals(0, postCounterReconciler.reconcile());
+    }
+
+    @Test
+    void reconcilerKeepsALikeCommittedWhileItRuns() throws Exception {
+        String uploader = person();
+        String liker = person();
+        long postId = createPost(uploader);
+        jdbcTemplate.update("UPDATE post SET like_count = 5 WHERE id = ?", postId);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch liked = new CountDownLatch(1);
+            CountDownLatch commit = new CountDownLatch(1);
+            // The like is written but not committed yet when the reconciler reaches the drifted post,
+            // so the repair must count it once it is committed rather than rewrite the count read before
+            Future<?> like = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                postRepository.toggleLike(postId, liker);
+                liked.countDown();
+                try {
+                    commit.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            assertTrue(liked.await(10, TimeUnit.SECONDS));
+
+            Future<Integer> reconcile = executor.submit(postCounterReconciler::reconcile);
+            awaitLockWait();
+            assertFalse(reconcile.isDone());
+            commit.countDown();
+            like.get(10, TimeUnit.SECONDS);
+            reconcile.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertCounts(new Counts(1, 0), postId);
+    }
+
+    /**
+     * Checks the denormalized counts of a post against the expected ones and against the rows they count.
+     */
+    private void assertCounts(Counts expected, long postId) {
+        assertEquals(expected, jdbcTemplate.queryForObject(
+                "SELECT like_count, comment_count FROM post WHERE id = ?",
+                (resultSet, row) -> new Counts(resultSet.getLong(1), resultSet.getLong(2)),
+                postId));
+        assertEquals(expected, jdbcTemplate.queryForObject(
+                "SELECT (SELECT COUNT(*) FROM person_liked_posts WHERE liked_posts_id = ?), " +
+                        "(SELECT COUNT(*) FROM comment WHERE post_id = ?)",
+                (resultSet, row) -> new Counts(resultSet.getLong(1), resultSet.getLong(2)),
+                postId, postId));
+    }
+
+    /**
+     * Creates a person of its own for a test.
+     *
+     * @return The username of the person.
+     */
+    private String person() {
+        String username = "counter_" + System.nanoTime() % 100_000 + "_" + PERSONS.incrementAndGet();
+        personRepository.save(new Person(username, username + "@counter.test", PASSWORD, "Counter", "Test"));
+        return username;
+    }
+
+    private long createPost(String uploader) {
+        send(HttpStatus.CREATED, uploader, HttpMethod.POST, "/posts/",
+                "{\"description\":\"Counter\",\"image\":\"counter.jpg\",\"hashtags\":[]}");
+        return jdbcTemplate.queryForObject(
+                "SELECT MAX(p.id) FROM post p JOIN person u ON u.id = p.uploader_id WHERE u.username = ?",
+                Long.class, uploader);
+    }
+
+    /**
+     * Waits until a session of the test database is blocked on a lock.
+     */
+    private void awaitLockWait() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_stat_activity WHERE datname = current_database() AND wait_event_type = 'Lock'",
+                Long.class) == 0) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("No session waited for a lock");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private void send(HttpStatus expectedStatus, String username, HttpMethod method, String path, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<String> response = restTemplate
+                .withBasicAuth(username, PASSWORD)
+                .exchange(path, method, new HttpEntity<>(body, headers), String.class);
+        assertEquals(expectedStatus, response.getStatusCode(), response.getBody());
+    }
+}
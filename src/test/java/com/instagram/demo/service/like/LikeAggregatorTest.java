@@ -0,0 +1,55 @@
+package com.instagram.demo.service.like;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the {@link LikeAggregator} overlays its pending toggles until they are flushed,
+ * and stops tracking the deltas of the posts it has flushed.
+ */
+@SpringBootTest(properties = {"likes.write-behind.enabled=true", "likes.flush-interval=3600000"})
+class LikeAggregatorTest {
+    /**
+     * ID of a post seeded by {@code R__sample_data.sql}, liked by nobody.
+     */
+    private static final long POST_ID = 3L;
+
+    @Autowired
+    LikeAggregator likeAggregator;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void flushesTogglesAndForgetsTheirDeltas() {
+        likeAggregator.flush();
+        long likeCount = likeCount();
+
+        assertTrue(likeAggregator.toggle(POST_ID, "john_doe"));
+        assertTrue(likeAggregator.toggle(POST_ID, "jane_smith"));
+        assertFalse(likeAggregator.toggle(POST_ID, "jane_smith"));
+        assertEquals(likeCount + 1, likeAggregator.likeCount(POST_ID, likeCount));
+        assertTrue(likeAggregator.isLiked(POST_ID, "john_doe", false));
+        assertEquals(likeCount, likeCount(), "Written before the flush");
+
+        likeAggregator.flush();
+        assertEquals(likeCount + 1, likeCount());
+        assertEquals(0, likeAggregator.trackedDeltas());
+        assertEquals(likeCount + 1, likeAggregator.likeCount(POST_ID, likeCount()));
+
+        assertFalse(likeAggregator.toggle(POST_ID, "john_doe"));
+        likeAggregator.flush();
+        assertEquals(likeCount, likeCount());
+        assertEquals(0, likeAggregator.trackedDeltas());
+    }
+
+    private long likeCount() {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM post WHERE id = ?", Long.class, POST_ID);
+    }
+}
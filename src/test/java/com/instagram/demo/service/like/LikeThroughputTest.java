@@ -0,0 +1,131 @@
+package com.instagram.demo.service.like;
+
+import com.instagram.demo.data.repository.PersonRepository;
+import com.instagram.demo.data.schema.Person;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Load test toggling likes on a single hot post from many concurrent users,
+ * once with the single-statement write-through path and once with the {@link LikeAggregator}.
+ * Both report the number of likes per second they sustained.
+ * Tagged {@code load}, it only runs with the {@code load-test} Maven profile.
+ */
+@Tag("load")
+class LikeThroughputTest {
+    /**
+     * ID of the hot post, seeded by {@code R__sample_data.sql}.
+     */
+    private static final long HOT_POST_ID = 1L;
+
+    /**
+     * Number of concurrent users toggling likes.
+     */
+    private static final int USERS = 32;
+
+    /**
+     * Number of toggles sent by each user.
+     */
+    private static final int TOGGLES_PER_USER = 50;
+
+    @SpringBootTest(
+            webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = {
+                    "logging.level.org.springframework=info",
+                    "logging.level.com.instagram.demo=info",
+                    "spring.jpa.properties.hibernate.show_sql=false"
+            }
+    )
+    @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+    abstract static class Scenario {
+        @Autowired
+        TestRestTemplate restTemplate;
+
+        @Autowired
+        PersonRepository personRepository;
+
+        @Autowired
+        JdbcTemplate jdbcTemplate;
+
+        @Autowired
+        LikeAggregator likeAggregator;
+
+        @Test
+        void hotPostLikes() throws Exception {
+            List<String> cookies = new ArrayList<>();
+            for (int i = 0; i < USERS; i++) {
+                String username = "liker" + i;
+                personRepository.save(new Person(username, username + "@example.com", "password", "Liker", "Load"));
+                cookies.add(login(username));
+            }
+
+            long start = System.nanoTime();
+            try (ExecutorService executor = Executors.newFixedThreadPool(USERS)) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (String cookie : cookies) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < TOGGLES_PER_USER; i++) {
+                            toggle(cookie);
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s: %.0f likes/sec on a single hot post (%d users, %d toggles)%n",
+                    getClass().getSimpleName(), USERS * TOGGLES_PER_USER / seconds, USERS, USERS * TOGGLES_PER_USER);
+
+            likeAggregator.flush();
+            Long likeCount = jdbcTemplate.queryForObject(
+                    "SELECT like_count FROM post WHERE id = ?", Long.class, HOT_POST_ID);
+            Long likers = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM person_liked_posts WHERE liked_posts_id = ?", Long.class, HOT_POST_ID);
+            assertEquals(likers, likeCount);
+            assertEquals(0, likeAggregator.trackedDeltas(), "Flushed deltas still tracked");
+        }
+
+        private String login(String username) {
+            ResponseEntity<String> response = restTemplate
+                    .withBasicAuth(username, "password")
+                    .getForEntity("/login", String.class);
+            return response.getHeaders().getFirst(HttpHeaders.SET_COOKIE).split(";")[0];
+        }
+
+        private void toggle(String cookie) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.add(HttpHeaders.COOKIE, cookie);
+            restTemplate.exchange("/posts/like/" + HOT_POST_ID, HttpMethod.POST, new HttpEntity<>(headers), String.class);
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = "likes.write-behind.enabled=false")
+    class WriteThrough extends Scenario {
+    }
+
+    @Nested
+    @TestPropertySource(properties = "likes.write-behind.enabled=true")
+    class WriteBehind extends Scenario {
+    }
+}
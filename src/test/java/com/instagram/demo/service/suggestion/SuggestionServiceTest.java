@@ -0,0 +1,58 @@
+package com.instagram.demo.service.suggestion;
+
+import com.instagram.demo.data.projection.person.PersonSuggestion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the suggestions drawn from the graph seeded by {@code R__sample_data.sql}:
+ * John follows Jane and Bob, Jane follows John, and Bob follows nobody.
+ */
+@SpringBootTest
+class SuggestionServiceTest {
+    @Autowired
+    SuggestionService suggestionService;
+
+    @BeforeEach
+    void setUp() {
+        suggestionService.refreshPopular();
+        for (String username : List.of("john_doe", "jane_smith", "bob_jackson")) {
+            suggestionService.evictPerson(username);
+        }
+    }
+
+    @Test
+    void suggestsFriendsOfFriends() {
+        assertEquals(List.of("bob_jackson"), usernames("jane_smith"));
+    }
+
+    @Test
+    void fillsWithPeopleNotFollowed() {
+        assertEquals(Set.of("john_doe", "jane_smith"), Set.copyOf(usernames("bob_jackson")));
+    }
+
+    @Test
+    void suggestsNobodyOnceEveryoneIsFollowed() {
+        assertTrue(usernames("john_doe").isEmpty());
+    }
+
+    @Test
+    void removesFollowedPersonAtOnce() {
+        usernames("bob_jackson");
+        suggestionService.onFollow("bob_jackson", "john_doe");
+
+        assertEquals(List.of("jane_smith"), usernames("bob_jackson"));
+    }
+
+    private List<String> usernames(String username) {
+        return suggestionService.suggest(username, 3).stream().map(PersonSuggestion::getUsername).toList();
+    }
+}
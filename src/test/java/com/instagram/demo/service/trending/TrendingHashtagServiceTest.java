@@ -0,0 +1,146 @@
+package com.instagram.demo.service.trending;
+
+import com.instagram.demo.data.repository.PostRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the ranking, the expiry and the snapshots of the trending hashtags, on a clock moved by hand.
+ */
+class TrendingHashtagServiceTest {
+    private final MutableClock clock = new MutableClock();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void ranksNormalizedHashtagsByCount() {
+        TrendingHashtagService service = service(null);
+        service.recordHashtags(List.of("#Nature", "Coding"));
+        service.recordHashtags(List.of("nature "));
+
+        assertEquals(List.of(new TrendingHashtag("nature", 2), new TrendingHashtag("coding", 1)),
+                service.top(TrendingWindow.HOUR, 10));
+        assertEquals(List.of(new TrendingHashtag("nature", 2)), service.top(TrendingWindow.DAY, 1));
+    }
+
+    @Test
+    void expiresHashtagsOutOfTheWindow() {
+        TrendingHashtagService service = service(null);
+        service.recordHashtags(List.of("sunset"));
+
+        clock.advance(Duration.ofMinutes(61));
+        service.recordHashtags(List.of("sunrise"));
+
+        assertEquals(List.of(new TrendingHashtag("sunrise", 1)), service.top(TrendingWindow.HOUR, 10));
+        assertEquals(2, service.top(TrendingWindow.DAY, 10).size());
+
+        clock.advance(Duration.ofHours(24));
+        assertTrue(service.top(TrendingWindow.DAY, 10).isEmpty());
+    }
+
+    @Test
+    void keepsHeavyHittersAmongManyRareHashtags() {
+        TrendingHashtagService service = service(null);
+        for (int i = 0; i < 5000; i++) {
+            service.recordHashtags(List.of("tag" + i));
+            if (i % 100 == 0) {
+                service.recordHashtags(List.of("viral"));
+            }
+        }
+
+        TrendingHashtag top = service.top(TrendingWindow.HOUR, 1).get(0);
+        assertEquals("viral", top.hashtag());
+        assertTrue(top.count() >= 50);
+    }
+
+    @Test
+    void countsALikeOncePerBucket() {
+        PostRepository postRepository = mock(PostRepository.class);
+        when(postRepository.findHashtagsByPostId(1L)).thenReturn(Set.of("#Nature"));
+        TrendingHashtagService service = new TrendingHashtagService(postRepository, clock, 1024, 4, 10, null);
+
+        // Liking, unliking and liking again is one like
+        service.recordLike(1L, "jane_smith");
+        service.recordLike(1L, "jane_smith");
+        service.recordLike(1L, "john_doe");
+        assertEquals(List.of(new TrendingHashtag("nature", 2)), service.top(TrendingWindow.HOUR, 10));
+
+        clock.advance(Duration.ofMinutes(5));
+        service.recordLike(1L, "jane_smith");
+        assertEquals(List.of(new TrendingHashtag("nature", 3)), service.top(TrendingWindow.HOUR, 10));
+        assertEquals(List.of(new TrendingHashtag("nature", 2)), service.top(TrendingWindow.DAY, 10));
+    }
+
+    @Test
+    void countsLikesOfUsersAndPostsWithCollidingHashCodes() {
+        long farPostId = (1L << 32) + 1;
+        PostRepository postRepository = mock(PostRepository.class);
+        when(postRepository.findHashtagsByPostId(1L)).thenReturn(Set.of("nature"));
+        when(postRepository.findHashtagsByPostId(farPostId)).thenReturn(Set.of("nature"));
+        TrendingHashtagService service = new TrendingHashtagService(postRepository, clock, 1024, 4, 10, null);
+
+        // "Aa" and "BB" have the same hash code, and post IDs 1 and 2^32 + 1 the same low bits
+        service.recordLike(1L, "Aa");
+        service.recordLike(1L, "BB");
+        service.recordLike(farPostId, "Aa");
+        assertEquals(List.of(new TrendingHashtag("nature", 3)), service.top(TrendingWindow.HOUR, 10));
+    }
+
+    @Test
+    void restoresTheLastSnapshot() {
+        Path snapshot = directory.resolve("trending.bin");
+        TrendingHashtagService service = service(snapshot);
+        service.recordHashtags(List.of("nature", "coding"));
+        service.recordHashtags(List.of("nature"));
+        service.snapshot();
+
+        clock.advance(Duration.ofMinutes(30));
+        TrendingHashtagService restarted = service(snapshot);
+        restarted.restore();
+
+        assertEquals(service.top(TrendingWindow.HOUR, 10), restarted.top(TrendingWindow.HOUR, 10));
+        assertEquals(service.top(TrendingWindow.DAY, 10), restarted.top(TrendingWindow.DAY, 10));
+    }
+
+    private TrendingHashtagService service(Path snapshotPath) {
+        return new TrendingHashtagService(null, clock, 1024, 4, 10, snapshotPath);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant = Instant.parse("2024-03-01T12:00:00Z");
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}